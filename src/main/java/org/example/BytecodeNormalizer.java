@@ -0,0 +1,673 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * 字节码规范化：计算一个类“结构”的哈希，该哈希与常量池顺序和调试信息无关。
+ * <p>
+ * 参与哈希的内容包括访问标志、类层次、成员及其描述符、指令流（常量池引用被解析为其实际内容，
+ * 跳转目标被换算为指令序号）、异常表以及注解等语义属性。
+ * 行号表、局部变量表、源文件名等调试属性以及可由指令流推导出的StackMapTable不参与结构哈希，
+ * 而是单独计入调试哈希，用于说明差异的来源。
+ * <p>
+ * 重新构建后只有这些非语义部分发生变化的类，无需反编译即可判定为非逻辑性差异。
+ * 对于确有结构变化的类，逐个比较成员哈希即可定位到具体变化的字段和方法，并把未变化的方法排除在反编译之外。
+ */
+public class BytecodeNormalizer {
+
+    /** 不影响语义的属性 */
+    static final Set<String> IGNORED_ATTRIBUTES = Set.of(
+            "LineNumberTable", "LocalVariableTable", "LocalVariableTypeTable",
+            "SourceFile", "SourceDebugExtension", "StackMapTable");
+
+    /**
+     * 一个类的规范化指纹。除整体哈希外，还分别记录了类声明部分和每个成员的哈希，用于定位具体发生变化的成员。
+     */
+    public static final class Fingerprint {
+        private final byte[] structureHash;
+        private final byte[] debugHash;
+        private final byte[] constantPoolHash;
+        private final byte[] headerHash;
+        private final Map<String, byte[]> memberHashes;
+
+        Fingerprint(byte[] structureHash, byte[] debugHash, byte[] constantPoolHash,
+                    byte[] headerHash, Map<String, byte[]> memberHashes) {
+            this.structureHash = structureHash;
+            this.debugHash = debugHash;
+            this.constantPoolHash = constantPoolHash;
+            this.headerHash = headerHash;
+            this.memberHashes = memberHashes;
+        }
+
+        public byte[] getStructureHash() {
+            return structureHash;
+        }
+
+        public byte[] getDebugHash() {
+            return debugHash;
+        }
+
+        public byte[] getConstantPoolHash() {
+            return constantPoolHash;
+        }
+
+        /**
+         * @return 类声明部分（访问标志、类层次、类级属性）的哈希
+         */
+        public byte[] getHeaderHash() {
+            return headerHash;
+        }
+
+        /**
+         * @return 成员标识（见 {@link ClassFile.Member#getKey()}）到成员结构哈希的映射，按声明顺序排列
+         */
+        public Map<String, byte[]> getMemberHashes() {
+            return memberHashes;
+        }
+    }
+
+    /**
+     * 一组类的成员级分析结果。
+     */
+    public static final class Analysis {
+        private final String nonLogicalReason;
+        private final List<MemberChange> memberChanges;
+        private final ClassGroup oldGroup;
+        private final ClassGroup newGroup;
+        private final int omittedMethods;
+
+        Analysis(String nonLogicalReason, List<MemberChange> memberChanges,
+                 ClassGroup oldGroup, ClassGroup newGroup, int omittedMethods) {
+            this.nonLogicalReason = nonLogicalReason;
+            this.memberChanges = memberChanges;
+            this.oldGroup = oldGroup;
+            this.newGroup = newGroup;
+            this.omittedMethods = omittedMethods;
+        }
+
+        /**
+         * @return 非逻辑性差异的原因说明；存在逻辑差异时为null
+         */
+        public String getNonLogicalReason() {
+            return nonLogicalReason;
+        }
+
+        /**
+         * @return 发生变化的成员，按类名和声明顺序排列
+         */
+        public List<MemberChange> getMemberChanges() {
+            return memberChanges;
+        }
+
+        /**
+         * @return 需要交给反编译器的旧版本类组；启用方法裁剪时不再包含未变化的方法
+         */
+        public ClassGroup getOldGroup() {
+            return oldGroup;
+        }
+
+        public ClassGroup getNewGroup() {
+            return newGroup;
+        }
+
+        /**
+         * @return 每一侧被裁剪掉的未变化方法数量
+         */
+        public int getOmittedMethods() {
+            return omittedMethods;
+        }
+    }
+
+    /**
+     * 计算一个类的规范化指纹。
+     * @throws IllegalArgumentException 字节内容不是合法的class文件
+     */
+    public Fingerprint fingerprint(byte[] classBytes) {
+        ClassFile cf = ClassFile.parse(classBytes);
+        try {
+            return fingerprint(cf, classBytes);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // 常量池引用和指令在这里才被解析，格式错误同样按无法解析处理，只让这一个类退回到反编译比对
+            throw new IllegalArgumentException("class文件格式错误: " + e, e);
+        }
+    }
+
+    private Fingerprint fingerprint(ClassFile cf, byte[] classBytes) {
+        Canon header = new Canon();
+        Canon debug = new Canon();
+
+        header.integer(cf.getMajorVersion());
+        header.integer(cf.getAccessFlags());
+        header.string(cf.getThisClass());
+        header.string(cf.getSuperClass() != null ? cf.getSuperClass() : "");
+        header.integer(cf.getInterfaces().size());
+        for (String anInterface : cf.getInterfaces()) {
+            header.string(anInterface);
+        }
+        attributes(cf, cf.getAttributes(), header, debug);
+        byte[] headerHash = header.digest();
+
+        // 整体哈希由类声明哈希和按声明顺序排列的成员哈希组成，成员的重新排序同样视为结构变化
+        Map<String, byte[]> memberHashes = new LinkedHashMap<>();
+        Canon structure = new Canon();
+        structure.raw(headerHash);
+        structure.integer(cf.getFields().size());
+        for (ClassFile.Member field : cf.getFields()) {
+            memberHash(cf, field, structure, debug, memberHashes);
+        }
+        structure.integer(cf.getMethods().size());
+        for (ClassFile.Member method : cf.getMethods()) {
+            memberHash(cf, method, structure, debug, memberHashes);
+        }
+
+        Canon constantPool = new Canon();
+        constantPool.raw(classBytes, 8, cf.getConstantPoolEnd() - 8);
+        return new Fingerprint(structure.digest(), debug.digest(), constantPool.digest(), headerHash, memberHashes);
+    }
+
+    /**
+     * 判断两组类之间的差异是否全部是非逻辑性的。
+     *
+     * @return 非逻辑性差异的原因说明；存在逻辑差异、成员不一致或无法解析时返回null
+     */
+    public String explainNonLogicalChange(ClassGroup oldGroup, ClassGroup newGroup) {
+        Analysis analysis = analyze(oldGroup, newGroup, false);
+        return analysis != null ? analysis.getNonLogicalReason() : null;
+    }
+
+    /**
+     * 生成一组类的字节码骨架：类声明和每个成员各占一行，行尾是该成员的规范化结构哈希的前几个字节。
+     * 反编译失败时用它代替源码进行比对，至少能定位到发生变化的成员，且与常量池顺序和调试信息无关。
+     *
+     * @return 骨架文本；字节码无法解析的类只输出一行说明
+     */
+    public String skeleton(ClassGroup group) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, byte[]> entry : group.getClasses().entrySet()) {
+            ClassFile cf;
+            Fingerprint fingerprint;
+            try {
+                cf = ClassFile.parse(entry.getValue());
+                fingerprint = fingerprint(entry.getValue());
+            } catch (IllegalArgumentException e) {
+                sb.append("// ").append(entry.getKey()).append(": 无法解析字节码 (").append(e.getMessage()).append(")\n");
+                continue;
+            }
+            sb.append(String.format("class %s extends %s", cf.getThisClass(), cf.getSuperClass() != null ? cf.getSuperClass() : "-"));
+            if (!cf.getInterfaces().isEmpty()) {
+                sb.append(" implements ").append(String.join(", ", cf.getInterfaces()));
+            }
+            sb.append(String.format(" [flags 0x%04x, version %d] #%s {\n", cf.getAccessFlags(), cf.getMajorVersion(), shortHash(fingerprint.getHeaderHash())));
+            for (ClassFile.Member field : cf.getFields()) {
+                sb.append(String.format("    field %s %s [flags 0x%04x] #%s\n", field.getName(), field.getDescriptor(),
+                        field.getAccessFlags(), shortHash(fingerprint.getMemberHashes().get(field.getKey()))));
+            }
+            for (ClassFile.Member method : cf.getMethods()) {
+                ClassFile.Code code = method.getCode();
+                sb.append(String.format("    method %s%s [flags 0x%04x, %s] #%s\n", method.getName(), method.getDescriptor(),
+                        method.getAccessFlags(), code != null ? code.getCode().length + " bytes" : "no code",
+                        shortHash(fingerprint.getMemberHashes().get(method.getKey()))));
+            }
+            sb.append("}\n");
+        }
+        return sb.toString();
+    }
+
+    private static String shortHash(byte[] hash) {
+        if (hash == null) return "-";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4 && i < hash.length; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 在成员粒度上比较两组类：找出新增、删除和修改的字段与方法，并可选地把两侧都未变化的方法从字节码中裁剪掉，
+     * 使反编译只需处理真正发生变化的部分。
+     * <p>
+     * 编译器生成的合成方法和桥接方法始终保留，因为变化方法中的lambda、内部类访问等可能依赖它们才能被正确还原。
+     *
+     * @param scope 是否裁剪未变化的方法
+     * @return 分析结果；字节码无法解析时返回null，此时应按整个类处理
+     */
+    public Analysis analyze(ClassGroup oldGroup, ClassGroup newGroup, boolean scope) {
+        Map<String, byte[]> oldClasses = oldGroup.getClasses();
+        Map<String, byte[]> newClasses = newGroup.getClasses();
+        Set<String> entries = new TreeSet<>(oldClasses.keySet());
+        entries.addAll(newClasses.keySet());
+
+        List<MemberChange> changes = new ArrayList<>();
+        Map<String, Set<String>> unchangedMethods = new HashMap<>();
+        boolean structureDiffers = false;
+        boolean debugDiffers = false;
+        boolean constantPoolDiffers = false;
+        try {
+            for (String entry : entries) {
+                byte[] oldBytes = oldClasses.get(entry);
+                byte[] newBytes = newClasses.get(entry);
+                String owner = ownerName(entry);
+                if (oldBytes == null || newBytes == null) {
+                    structureDiffers = true;
+                    changes.add(new MemberChange(owner, MemberChange.Kind.CLASS, null, null,
+                            oldBytes == null ? MemberChange.ChangeType.ADDED : MemberChange.ChangeType.REMOVED));
+                    continue;
+                }
+                if (Arrays.equals(oldBytes, newBytes)) {
+                    if (scope) {
+                        unchangedMethods.put(entry, null);
+                    }
+                    continue;
+                }
+                Fingerprint oldPrint = fingerprint(oldBytes);
+                Fingerprint newPrint = fingerprint(newBytes);
+                if (Arrays.equals(oldPrint.getStructureHash(), newPrint.getStructureHash())) {
+                    debugDiffers |= !Arrays.equals(oldPrint.getDebugHash(), newPrint.getDebugHash());
+                    constantPoolDiffers |= !Arrays.equals(oldPrint.getConstantPoolHash(), newPrint.getConstantPoolHash());
+                    if (scope) {
+                        unchangedMethods.put(entry, null);
+                    }
+                    continue;
+                }
+                structureDiffers = true;
+                Set<String> unchanged = new HashSet<>();
+                compareMembers(owner, oldPrint, newPrint, changes, unchanged);
+                unchangedMethods.put(entry, unchanged);
+            }
+        } catch (IllegalArgumentException e) {
+            Log.warn("警告: 无法解析 " + oldGroup.getPrimaryEntry() + " 的字节码，将按普通方式反编译比对: " + e.getMessage());
+            return null;
+        }
+
+        if (!structureDiffers) {
+            return new Analysis(describeNonLogicalChange(debugDiffers, constantPoolDiffers), changes, oldGroup, newGroup, 0);
+        }
+        if (!scope) {
+            return new Analysis(null, changes, oldGroup, newGroup, 0);
+        }
+
+        ClassGroup scopedOld = new ClassGroup(oldGroup.getPrimaryEntry());
+        ClassGroup scopedNew = new ClassGroup(newGroup.getPrimaryEntry());
+        int omitted = 0;
+        for (String entry : entries) {
+            byte[] oldBytes = oldClasses.get(entry);
+            byte[] newBytes = newClasses.get(entry);
+            if (oldBytes == null || newBytes == null || !unchangedMethods.containsKey(entry)) {
+                if (oldBytes != null) scopedOld.add(entry, oldBytes, null);
+                if (newBytes != null) scopedNew.add(entry, newBytes, null);
+                continue;
+            }
+            // null表示整个类没有结构变化，其全部方法都可以裁剪
+            Set<String> unchanged = unchangedMethods.get(entry);
+            ClassFile oldClass = ClassFile.parse(oldBytes);
+            Predicate<ClassFile.Member> keep = method -> isCompilerGenerated(method)
+                    || (unchanged != null && !unchanged.contains(method.getKey()));
+            int removed = 0;
+            for (ClassFile.Member method : oldClass.getMethods()) {
+                if (!keep.test(method)) removed++;
+            }
+            if (removed == 0) {
+                scopedOld.add(entry, oldBytes, null);
+                scopedNew.add(entry, newBytes, null);
+                continue;
+            }
+            omitted += removed;
+            scopedOld.add(entry, oldClass.withMethods(keep), null);
+            scopedNew.add(entry, ClassFile.parse(newBytes).withMethods(keep), null);
+        }
+        if (omitted == 0) {
+            return new Analysis(null, changes, oldGroup, newGroup, 0);
+        }
+        return new Analysis(null, changes, scopedOld, scopedNew, omitted);
+    }
+
+    private void compareMembers(String owner, Fingerprint oldPrint, Fingerprint newPrint,
+                                List<MemberChange> changes, Set<String> unchangedMethods) {
+        if (!Arrays.equals(oldPrint.getHeaderHash(), newPrint.getHeaderHash())) {
+            changes.add(new MemberChange(owner, MemberChange.Kind.CLASS, null, null, MemberChange.ChangeType.MODIFIED));
+        }
+        Map<String, byte[]> oldMembers = oldPrint.getMemberHashes();
+        Map<String, byte[]> newMembers = newPrint.getMemberHashes();
+        for (Map.Entry<String, byte[]> member : oldMembers.entrySet()) {
+            byte[] newHash = newMembers.get(member.getKey());
+            if (newHash == null) {
+                changes.add(memberChange(owner, member.getKey(), MemberChange.ChangeType.REMOVED));
+            } else if (!Arrays.equals(member.getValue(), newHash)) {
+                changes.add(memberChange(owner, member.getKey(), MemberChange.ChangeType.MODIFIED));
+            } else if (member.getKey().startsWith("M:")) {
+                unchangedMethods.add(member.getKey());
+            }
+        }
+        for (String key : newMembers.keySet()) {
+            if (!oldMembers.containsKey(key)) {
+                changes.add(memberChange(owner, key, MemberChange.ChangeType.ADDED));
+            }
+        }
+    }
+
+    private MemberChange memberChange(String owner, String key, MemberChange.ChangeType changeType) {
+        if (key.startsWith("M:")) {
+            int descriptorStart = key.indexOf('(');
+            return new MemberChange(owner, MemberChange.Kind.METHOD,
+                    key.substring(2, descriptorStart), key.substring(descriptorStart), changeType);
+        }
+        int separator = key.indexOf(':', 2);
+        return new MemberChange(owner, MemberChange.Kind.FIELD,
+                key.substring(2, separator), key.substring(separator + 1), changeType);
+    }
+
+    private String describeNonLogicalChange(boolean debugDiffers, boolean constantPoolDiffers) {
+        List<String> reasons = new ArrayList<>();
+        if (debugDiffers) {
+            reasons.add("调试属性不同（LineNumberTable/LocalVariableTable/SourceFile等）");
+        }
+        if (constantPoolDiffers) {
+            reasons.add("常量池的顺序或排列不同");
+        }
+        if (reasons.isEmpty()) {
+            reasons.add("仅存在其它不影响语义的字节码差异（如StackMapTable）");
+        }
+        return "字节码规范化后结构完全一致，已跳过反编译。差异来源: " + String.join("；", reasons);
+    }
+
+    private static boolean isCompilerGenerated(ClassFile.Member method) {
+        return (method.getAccessFlags() & (ClassFile.ACC_SYNTHETIC | ClassFile.ACC_BRIDGE)) != 0;
+    }
+
+    private static String ownerName(String entry) {
+        return entry.replace(".class", "").replace('/', '.');
+    }
+
+    private void memberHash(ClassFile cf, ClassFile.Member member, Canon structure, Canon debug,
+                            Map<String, byte[]> memberHashes) {
+        Canon canon = new Canon();
+        member(cf, member, canon, debug);
+        byte[] hash = canon.digest();
+        memberHashes.put(member.getKey(), hash);
+        structure.string(member.getKey());
+        structure.raw(hash);
+    }
+
+    private void member(ClassFile cf, ClassFile.Member member, Canon structure, Canon debug) {
+        structure.integer(member.getAccessFlags());
+        structure.string(member.getName());
+        structure.string(member.getDescriptor());
+        attributes(cf, member.getAttributes(), structure, debug);
+    }
+
+    private void attributes(ClassFile cf, List<ClassFile.Attribute> attributes, Canon structure, Canon debug) {
+        for (ClassFile.Attribute attribute : attributes) {
+            String name = attribute.getName();
+            if (IGNORED_ATTRIBUTES.contains(name)) {
+                debug.string(name);
+                debug.raw(attribute.getContent());
+                continue;
+            }
+            structure.string(name);
+            ClassFile.Reader in = attribute.reader();
+            switch (name) {
+                case "Code":
+                    code(cf, attribute.asCode(), structure, debug);
+                    break;
+                case "ConstantValue":
+                case "Signature":
+                case "NestHost":
+                    structure.string(cf.resolve(in.u2()));
+                    break;
+                case "Exceptions":
+                case "NestMembers":
+                case "PermittedSubclasses": {
+                    int count = in.u2();
+                    structure.integer(count);
+                    for (int i = 0; i < count; i++) {
+                        structure.string(cf.resolve(in.u2()));
+                    }
+                    break;
+                }
+                case "InnerClasses": {
+                    int count = in.u2();
+                    structure.integer(count);
+                    for (int i = 0; i < count; i++) {
+                        structure.string(resolveOptional(cf, in.u2()));
+                        structure.string(resolveOptional(cf, in.u2()));
+                        structure.string(resolveOptional(cf, in.u2()));
+                        structure.integer(in.u2());
+                    }
+                    break;
+                }
+                case "EnclosingMethod":
+                    structure.string(cf.resolve(in.u2()));
+                    structure.string(resolveOptional(cf, in.u2()));
+                    break;
+                case "MethodParameters": {
+                    int count = in.u1();
+                    structure.integer(count);
+                    for (int i = 0; i < count; i++) {
+                        structure.string(resolveOptional(cf, in.u2()));
+                        structure.integer(in.u2());
+                    }
+                    break;
+                }
+                case "RuntimeVisibleAnnotations":
+                case "RuntimeInvisibleAnnotations":
+                    annotations(cf, in, structure);
+                    break;
+                case "RuntimeVisibleParameterAnnotations":
+                case "RuntimeInvisibleParameterAnnotations": {
+                    int parameters = in.u1();
+                    structure.integer(parameters);
+                    for (int i = 0; i < parameters; i++) {
+                        annotations(cf, in, structure);
+                    }
+                    break;
+                }
+                case "AnnotationDefault":
+                    elementValue(cf, in, structure);
+                    break;
+                case "BootstrapMethods":
+                    // 引导方法在解析invokedynamic指令时已经展开，表本身的顺序无关紧要
+                    break;
+                default:
+                    // 未识别的属性可能包含常量池索引，按原始字节比较，宁可多报也不漏报
+                    structure.raw(attribute.getContent());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 规范化指令流：常量池引用替换为解析后的内容，跳转目标换算为指令序号，
+     * 因而常量池重排导致的ldc/ldc_w互换和偏移变化都不会影响哈希。
+     */
+    private void code(ClassFile cf, ClassFile.Code code, Canon structure, Canon debug) {
+        byte[] bytecode = code.getCode();
+        int[] indexAt = new int[bytecode.length + 1];
+        Arrays.fill(indexAt, -1);
+        int instructionCount = 0;
+        for (int offset = 0; offset < bytecode.length; offset += Opcodes.length(bytecode, offset)) {
+            indexAt[offset] = instructionCount++;
+        }
+        indexAt[bytecode.length] = instructionCount;
+
+        structure.integer(code.getMaxStack());
+        structure.integer(code.getMaxLocals());
+        structure.integer(instructionCount);
+        for (int offset = 0; offset < bytecode.length; ) {
+            int opcode = bytecode[offset] & 0xFF;
+            int length = Opcodes.length(bytecode, offset);
+            switch (Opcodes.kind(opcode)) {
+                case Opcodes.KIND_CP1:
+                    structure.integer(Opcodes.LDC_W);
+                    structure.string(cf.resolve(bytecode[offset + 1] & 0xFF));
+                    break;
+                case Opcodes.KIND_CP2:
+                    structure.integer(opcode);
+                    structure.string(cf.resolve(Opcodes.readUnsignedShort(bytecode, offset + 1)));
+                    for (int i = 3; i < length; i++) {
+                        structure.integer(bytecode[offset + i] & 0xFF);
+                    }
+                    break;
+                case Opcodes.KIND_BRANCH2:
+                    structure.integer(opcode);
+                    structure.integer(target(indexAt, offset + Opcodes.readShort(bytecode, offset + 1)));
+                    break;
+                case Opcodes.KIND_BRANCH4:
+                    structure.integer(opcode == Opcodes.GOTO_W ? Opcodes.GOTO : Opcodes.JSR);
+                    structure.integer(target(indexAt, offset + Opcodes.readInt(bytecode, offset + 1)));
+                    break;
+                case Opcodes.KIND_TABLESWITCH: {
+                    int base = Opcodes.switchBase(offset);
+                    int low = Opcodes.readInt(bytecode, base + 4);
+                    int high = Opcodes.readInt(bytecode, base + 8);
+                    structure.integer(opcode);
+                    structure.integer(target(indexAt, offset + Opcodes.readInt(bytecode, base)));
+                    structure.integer(low);
+                    structure.integer(high);
+                    for (int i = 0; i <= high - low; i++) {
+                        structure.integer(target(indexAt, offset + Opcodes.readInt(bytecode, base + 12 + i * 4)));
+                    }
+                    break;
+                }
+                case Opcodes.KIND_LOOKUPSWITCH: {
+                    int base = Opcodes.switchBase(offset);
+                    int pairs = Opcodes.readInt(bytecode, base + 4);
+                    structure.integer(opcode);
+                    structure.integer(target(indexAt, offset + Opcodes.readInt(bytecode, base)));
+                    structure.integer(pairs);
+                    for (int i = 0; i < pairs; i++) {
+                        structure.integer(Opcodes.readInt(bytecode, base + 8 + i * 8));
+                        structure.integer(target(indexAt, offset + Opcodes.readInt(bytecode, base + 12 + i * 8)));
+                    }
+                    break;
+                }
+                default:
+                    // 普通指令（包括wide）：操作码与立即数均按原样参与哈希
+                    structure.raw(bytecode, offset, length);
+                    break;
+            }
+            offset += length;
+        }
+
+        structure.integer(code.getExceptionTable().size());
+        for (int[] handler : code.getExceptionTable()) {
+            structure.integer(target(indexAt, handler[0]));
+            structure.integer(target(indexAt, handler[1]));
+            structure.integer(target(indexAt, handler[2]));
+            structure.string(handler[3] == 0 ? "any" : cf.resolve(handler[3]));
+        }
+        attributes(cf, code.getAttributes(), structure, debug);
+    }
+
+    private int target(int[] indexAt, int offset) {
+        if (offset < 0 || offset >= indexAt.length || indexAt[offset] < 0) {
+            throw new IllegalArgumentException("跳转目标不在指令边界上: " + offset);
+        }
+        return indexAt[offset];
+    }
+
+    private void annotations(ClassFile cf, ClassFile.Reader in, Canon structure) {
+        int count = in.u2();
+        structure.integer(count);
+        for (int i = 0; i < count; i++) {
+            annotation(cf, in, structure);
+        }
+    }
+
+    private void annotation(ClassFile cf, ClassFile.Reader in, Canon structure) {
+        structure.string(cf.utf8(in.u2()));
+        int pairs = in.u2();
+        structure.integer(pairs);
+        for (int i = 0; i < pairs; i++) {
+            structure.string(cf.utf8(in.u2()));
+            elementValue(cf, in, structure);
+        }
+    }
+
+    private void elementValue(ClassFile cf, ClassFile.Reader in, Canon structure) {
+        int tag = in.u1();
+        structure.integer(tag);
+        switch (tag) {
+            case 'e':
+                structure.string(cf.utf8(in.u2()));
+                structure.string(cf.utf8(in.u2()));
+                break;
+            case 'c':
+                structure.string(cf.utf8(in.u2()));
+                break;
+            case '@':
+                annotation(cf, in, structure);
+                break;
+            case '[': {
+                int count = in.u2();
+                structure.integer(count);
+                for (int i = 0; i < count; i++) {
+                    elementValue(cf, in, structure);
+                }
+                break;
+            }
+            default:
+                // B C D F I J S Z s：常量值
+                structure.string(cf.resolve(in.u2()));
+                break;
+        }
+    }
+
+    private String resolveOptional(ClassFile cf, int index) {
+        return index == 0 ? "" : cf.resolve(index);
+    }
+
+    /**
+     * 以无歧义的方式把规范化内容写入摘要：整数定长编码，字符串带长度前缀。
+     */
+    static final class Canon {
+        private final MessageDigest digest;
+
+        Canon() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("当前JRE不支持SHA-256", e);
+            }
+        }
+
+        void integer(int value) {
+            digest.update((byte) (value >>> 24));
+            digest.update((byte) (value >>> 16));
+            digest.update((byte) (value >>> 8));
+            digest.update((byte) value);
+        }
+
+        void string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            integer(utf8.length);
+            digest.update(utf8);
+        }
+
+        void raw(byte[] bytes) {
+            raw(bytes, 0, bytes.length);
+        }
+
+        void raw(byte[] bytes, int offset, int length) {
+            integer(length);
+            digest.update(bytes, offset, length);
+        }
+
+        byte[] digest() {
+            return digest.digest();
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 轻量级的class文件解析器，只解析比较所需的结构：常量池、成员、属性和Code属性中的指令流。
+ * 属性内容不做拷贝，只记录其在原始字节数组中的位置，按需读取。
+ * <p>
+ * 格式参考《Java虚拟机规范》第4章。遇到格式错误时抛出 {@link IllegalArgumentException}。
+ */
+public class ClassFile {
+
+    /** 访问标志：编译器生成的成员 */
+    public static final int ACC_SYNTHETIC = 0x1000;
+    /** 访问标志：桥接方法 */
+    public static final int ACC_BRIDGE = 0x0040;
+
+    // 常量池标签
+    static final int CONSTANT_UTF8 = 1;
+    static final int CONSTANT_INTEGER = 3;
+    static final int CONSTANT_FLOAT = 4;
+    static final int CONSTANT_LONG = 5;
+    static final int CONSTANT_DOUBLE = 6;
+    static final int CONSTANT_CLASS = 7;
+    static final int CONSTANT_STRING = 8;
+    static final int CONSTANT_FIELDREF = 9;
+    static final int CONSTANT_METHODREF = 10;
+    static final int CONSTANT_INTERFACE_METHODREF = 11;
+    static final int CONSTANT_NAME_AND_TYPE = 12;
+    static final int CONSTANT_METHOD_HANDLE = 15;
+    static final int CONSTANT_METHOD_TYPE = 16;
+    static final int CONSTANT_DYNAMIC = 17;
+    static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    static final int CONSTANT_MODULE = 19;
+    static final int CONSTANT_PACKAGE = 20;
+
+    private final byte[] bytes;
+    private final int minorVersion;
+    private final int majorVersion;
+    private final int[] tags;
+    private final int[] refs1;
+    private final int[] refs2;
+    private final Object[] values;
+    private final int constantPoolEnd;
+    private final int accessFlags;
+    private final String thisClass;
+    private final String superClass;
+    private final List<String> interfaces;
+    private final List<Member> fields;
+    private final List<Member> methods;
+    private final int methodsStart;
+    private final int methodsEnd;
+    private final List<Attribute> attributes;
+    private List<int[]> bootstrapMethods;
+
+    private ClassFile(byte[] bytes) {
+        this.bytes = bytes;
+        Reader in = new Reader(bytes, 0);
+        if (in.u4() != 0xCAFEBABE) {
+            throw new IllegalArgumentException("不是有效的class文件（魔数错误）");
+        }
+        minorVersion = in.u2();
+        majorVersion = in.u2();
+
+        int count = in.u2();
+        tags = new int[count];
+        refs1 = new int[count];
+        refs2 = new int[count];
+        values = new Object[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.u1();
+            tags[i] = tag;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    int length = in.u2();
+                    values[i] = decodeUtf8(bytes, in.position - 2, length);
+                    in.skip(length);
+                    break;
+                case CONSTANT_INTEGER:
+                    values[i] = in.u4();
+                    break;
+                case CONSTANT_FLOAT:
+                    values[i] = Float.intBitsToFloat(in.u4());
+                    break;
+                case CONSTANT_LONG:
+                    values[i] = in.u8();
+                    i++;
+                    break;
+                case CONSTANT_DOUBLE:
+                    values[i] = Double.longBitsToDouble(in.u8());
+                    i++;
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    refs1[i] = in.u2();
+                    break;
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    refs1[i] = in.u2();
+                    refs2[i] = in.u2();
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    refs1[i] = in.u1();
+                    refs2[i] = in.u2();
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的常量池标签 " + tag + "，位置 #" + i);
+            }
+        }
+        constantPoolEnd = in.position;
+
+        accessFlags = in.u2();
+        thisClass = className(in.u2());
+        int superIndex = in.u2();
+        superClass = superIndex == 0 ? null : className(superIndex);
+        int interfaceCount = in.u2();
+        List<String> interfaceNames = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaceNames.add(className(in.u2()));
+        }
+        interfaces = Collections.unmodifiableList(interfaceNames);
+        fields = readMembers(in);
+        methodsStart = in.position;
+        methods = readMembers(in);
+        methodsEnd = in.position;
+        attributes = readAttributes(in);
+    }
+
+    /**
+     * 解析class文件。
+     * @throws IllegalArgumentException 字节内容不是合法的class文件
+     */
+    public static ClassFile parse(byte[] classBytes) {
+        try {
+            return new ClassFile(classBytes);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // 截断的字节、越界的常量池索引和类型不符的常量池条目会以各种运行时异常的形式出现
+            throw new IllegalArgumentException("class文件被截断或格式错误", e);
+        }
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public int getAccessFlags() {
+        return accessFlags;
+    }
+
+    public String getThisClass() {
+        return thisClass;
+    }
+
+    public String getSuperClass() {
+        return superClass;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    public List<Member> getFields() {
+        return fields;
+    }
+
+    public List<Member> getMethods() {
+        return methods;
+    }
+
+    public List<Attribute> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * 生成一个只保留部分方法的新class文件，其余部分（常量池、字段、类属性）原样保留。
+     * 常量池中因此不再被引用的条目不会被清理，这不影响class文件的合法性。
+     *
+     * @param keep 返回true的方法会被保留
+     * @return 新的class文件字节
+     */
+    public byte[] withMethods(Predicate<Member> keep) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        out.write(bytes, 0, methodsStart);
+        List<Member> kept = new ArrayList<>();
+        for (Member method : methods) {
+            if (keep.test(method)) {
+                kept.add(method);
+            }
+        }
+        out.write(kept.size() >>> 8);
+        out.write(kept.size());
+        for (Member method : kept) {
+            out.write(bytes, method.getStart(), method.getEnd() - method.getStart());
+        }
+        out.write(bytes, methodsEnd, bytes.length - methodsEnd);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return 常量池在原始字节中的结束位置（常量池从第10个字节开始）
+     */
+    int getConstantPoolEnd() {
+        return constantPoolEnd;
+    }
+
+    int getTag(int index) {
+        return tags[index];
+    }
+
+    String utf8(int index) {
+        if (tag(index) != CONSTANT_UTF8) {
+            throw new IllegalArgumentException("常量池 #" + index + " 不是UTF8常量");
+        }
+        return (String) values[index];
+    }
+
+    String className(int index) {
+        if (tag(index) != CONSTANT_CLASS) {
+            throw new IllegalArgumentException("常量池 #" + index + " 不是类常量");
+        }
+        return utf8(refs1[index]);
+    }
+
+    /**
+     * 将常量池条目解析为与其在常量池中的位置无关的规范文本，用于哈希和展示。
+     */
+    String resolve(int index) {
+        switch (tag(index)) {
+            case CONSTANT_UTF8:
+                return (String) values[index];
+            case CONSTANT_INTEGER:
+                return "int " + values[index];
+            case CONSTANT_FLOAT:
+                return "float " + Float.floatToRawIntBits((Float) values[index]);
+            case CONSTANT_LONG:
+                return "long " + values[index];
+            case CONSTANT_DOUBLE:
+                return "double " + Double.doubleToRawLongBits((Double) values[index]);
+            case CONSTANT_CLASS:
+                return "class " + utf8(refs1[index]);
+            case CONSTANT_STRING:
+                return "String \"" + utf8(refs1[index]) + "\"";
+            case CONSTANT_METHOD_TYPE:
+                return "MethodType " + utf8(refs1[index]);
+            case CONSTANT_MODULE:
+                return "module " + utf8(refs1[index]);
+            case CONSTANT_PACKAGE:
+                return "package " + utf8(refs1[index]);
+            case CONSTANT_FIELDREF:
+                return "Field " + className(refs1[index]) + "." + nameAndType(refs2[index]);
+            case CONSTANT_METHODREF:
+                return "Method " + className(refs1[index]) + "." + nameAndType(refs2[index]);
+            case CONSTANT_INTERFACE_METHODREF:
+                return "InterfaceMethod " + className(refs1[index]) + "." + nameAndType(refs2[index]);
+            case CONSTANT_NAME_AND_TYPE:
+                return nameAndType(index);
+            case CONSTANT_METHOD_HANDLE:
+                return "MethodHandle " + refs1[index] + ":" + resolve(refs2[index]);
+            case CONSTANT_DYNAMIC:
+                return "Dynamic " + bootstrap(refs1[index]) + ":" + nameAndType(refs2[index]);
+            case CONSTANT_INVOKE_DYNAMIC:
+                return "InvokeDynamic " + bootstrap(refs1[index]) + ":" + nameAndType(refs2[index]);
+            default:
+                throw new IllegalArgumentException("常量池 #" + index + " 不可解析");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException 索引不在常量池范围内
+     */
+    private int tag(int index) {
+        if (index <= 0 || index >= tags.length) {
+            throw new IllegalArgumentException("常量池索引越界: #" + index);
+        }
+        return tags[index];
+    }
+
+    private String nameAndType(int index) {
+        if (tag(index) != CONSTANT_NAME_AND_TYPE) {
+            throw new IllegalArgumentException("常量池 #" + index + " 不是名称和类型常量");
+        }
+        return utf8(refs1[index]) + ":" + utf8(refs2[index]);
+    }
+
+    /**
+     * 解析BootstrapMethods属性中的一项：引导方法句柄及其静态参数。
+     */
+    private String bootstrap(int bootstrapIndex) {
+        if (bootstrapMethods == null) {
+            List<int[]> table = new ArrayList<>();
+            for (Attribute attribute : attributes) {
+                if ("BootstrapMethods".equals(attribute.getName())) {
+                    Reader in = attribute.reader();
+                    int count = in.u2();
+                    for (int i = 0; i < count; i++) {
+                        int methodRef = in.u2();
+                        int argumentCount = in.u2();
+                        int[] entry = new int[argumentCount + 1];
+                        entry[0] = methodRef;
+                        for (int j = 1; j <= argumentCount; j++) {
+                            entry[j] = in.u2();
+                        }
+                        table.add(entry);
+                    }
+                }
+            }
+            bootstrapMethods = table;
+        }
+        if (bootstrapIndex < 0 || bootstrapIndex >= bootstrapMethods.size()) {
+            throw new IllegalArgumentException("引导方法索引越界: " + bootstrapIndex);
+        }
+        int[] entry = bootstrapMethods.get(bootstrapIndex);
+        StringBuilder sb = new StringBuilder(resolve(entry[0])).append('(');
+        for (int i = 1; i < entry.length; i++) {
+            if (i > 1) sb.append(", ");
+            sb.append(resolve(entry[i]));
+        }
+        return sb.append(')').toString();
+    }
+
+    private List<Member> readMembers(Reader in) {
+        int count = in.u2();
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int start = in.position;
+            int access = in.u2();
+            String name = utf8(in.u2());
+            String descriptor = utf8(in.u2());
+            List<Attribute> memberAttributes = readAttributes(in);
+            members.add(new Member(access, name, descriptor, memberAttributes, start, in.position));
+        }
+        return Collections.unmodifiableList(members);
+    }
+
+    private List<Attribute> readAttributes(Reader in) {
+        int count = in.u2();
+        List<Attribute> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = utf8(in.u2());
+            int length = in.u4();
+            if (length < 0 || in.position + length > bytes.length) {
+                throw new IllegalArgumentException("属性 " + name + " 长度越界");
+            }
+            list.add(new Attribute(name, in.position, length));
+            in.skip(length);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private static String decodeUtf8(byte[] bytes, int offset, int length) {
+        try {
+            // class文件使用“改进的UTF-8”编码，与DataInput.readUTF的格式一致（含2字节长度前缀）
+            return new DataInputStream(new ByteArrayInputStream(bytes, offset, length + 2)).readUTF();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无效的UTF8常量", e);
+        }
+    }
+
+    /**
+     * 字段或方法。
+     */
+    public final class Member {
+        private final int accessFlags;
+        private final String name;
+        private final String descriptor;
+        private final List<Attribute> attributes;
+        private final int start;
+        private final int end;
+
+        Member(int accessFlags, String name, String descriptor, List<Attribute> attributes, int start, int end) {
+            this.accessFlags = accessFlags;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.attributes = attributes;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getAccessFlags() {
+            return accessFlags;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        public List<Attribute> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * @return 成员的唯一标识：字段为 "F:名称:描述符"，方法为 "M:名称描述符"
+         */
+        public String getKey() {
+            return descriptor.startsWith("(") ? "M:" + name + descriptor : "F:" + name + ":" + descriptor;
+        }
+
+        /**
+         * @return 成员在原始字节中的起始位置（含）
+         */
+        int getStart() {
+            return start;
+        }
+
+        /**
+         * @return 成员在原始字节中的结束位置（不含）
+         */
+        int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return 方法的Code属性；字段、抽象方法和本地方法返回null
+         */
+        public Code getCode() {
+            for (Attribute attribute : attributes) {
+                if ("Code".equals(attribute.getName())) {
+                    return attribute.asCode();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 属性，内容仍然位于原始字节数组中。
+     */
+    public final class Attribute {
+        private final String name;
+        private final int offset;
+        private final int length;
+
+        Attribute(String name, int offset, int length) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public byte[] getContent() {
+            return Arrays.copyOfRange(bytes, offset, offset + length);
+        }
+
+        /**
+         * 将该属性按Code属性解析。
+         */
+        public Code asCode() {
+            return new Code(this);
+        }
+
+        Reader reader() {
+            return new Reader(bytes, offset);
+        }
+    }
+
+    /**
+     * 方法的Code属性。
+     */
+    public final class Code {
+        private final int maxStack;
+        private final int maxLocals;
+        private final byte[] code;
+        /** 每项为 {start_pc, end_pc, handler_pc, catch_type} */
+        private final List<int[]> exceptionTable;
+        private final List<Attribute> attributes;
+
+        Code(Attribute attribute) {
+            Reader in = attribute.reader();
+            maxStack = in.u2();
+            maxLocals = in.u2();
+            int codeLength = in.u4();
+            code = Arrays.copyOfRange(bytes, in.position, in.position + codeLength);
+            in.skip(codeLength);
+            int handlerCount = in.u2();
+            List<int[]> handlers = new ArrayList<>(handlerCount);
+            for (int i = 0; i < handlerCount; i++) {
+                handlers.add(new int[]{in.u2(), in.u2(), in.u2(), in.u2()});
+            }
+            exceptionTable = Collections.unmodifiableList(handlers);
+            attributes = readAttributes(in);
+        }
+
+        public int getMaxStack() {
+            return maxStack;
+        }
+
+        public int getMaxLocals() {
+            return maxLocals;
+        }
+
+        public byte[] getCode() {
+            return code;
+        }
+
+        public List<int[]> getExceptionTable() {
+            return exceptionTable;
+        }
+
+        public List<Attribute> getAttributes() {
+            return attributes;
+        }
+    }
+
+    /**
+     * 大端序的顺序读取器。
+     */
+    static final class Reader {
+        private final byte[] data;
+        int position;
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int u1() {
+            return data[position++] & 0xFF;
+        }
+
+        int u2() {
+            int value = ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+            position += 2;
+            return value;
+        }
+
+        int u4() {
+            int value = ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16)
+                    | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        long u8() {
+            long high = u4() & 0xFFFFFFFFL;
+            long low = u4() & 0xFFFFFFFFL;
+            return (high << 32) | low;
+        }
+
+        void skip(int count) {
+            position += count;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 需要在同一个反编译上下文中处理的一组类：一个顶层类及其所有内部类。
+ * Fernflower会把内部类合并进外部类的源码中，因此一组类最终只对应一份源码，以顶层类的条目名作为标识。
+ */
+public class ClassGroup {
+
+    private final String primaryEntry;
+    /** 条目名 -> 字节码，按条目名排序，保证内容哈希与添加顺序无关 */
+    private final Map<String, byte[]> classes = new TreeMap<>();
+    private final Map<String, byte[]> hashes = new TreeMap<>();
+    private byte[] contentHash;
+
+    /**
+     * @param primaryEntry 顶层类的条目名，eg: "com/example/MyClass.class"
+     */
+    public ClassGroup(String primaryEntry) {
+        this.primaryEntry = primaryEntry;
+    }
+
+    /**
+     * 创建只包含单个类的分组。
+     */
+    public static ClassGroup of(String entryName, byte[] classBytes, byte[] classHash) {
+        ClassGroup group = new ClassGroup(entryName);
+        group.add(entryName, classBytes, classHash);
+        return group;
+    }
+
+    /**
+     * @param entryName  条目名
+     * @param classBytes 字节码
+     * @param classHash  字节码的SHA-256，为null时按需计算
+     */
+    public void add(String entryName, byte[] classBytes, byte[] classHash) {
+        classes.put(entryName, classBytes);
+        hashes.put(entryName, classHash != null ? classHash : sha256(classBytes));
+        contentHash = null;
+    }
+
+    public String getPrimaryEntry() {
+        return primaryEntry;
+    }
+
+    public Map<String, byte[]> getClasses() {
+        return Collections.unmodifiableMap(classes);
+    }
+
+    /**
+     * @return 组内所有类的字节码总长度
+     */
+    public long getSize() {
+        long size = 0;
+        for (byte[] bytes : classes.values()) {
+            size += bytes.length;
+        }
+        return size;
+    }
+
+    /**
+     * 整组内容的哈希，用作反编译缓存键的一部分。
+     * 单个类的分组直接使用该类字节码的SHA-256；多个类的分组对各成员的条目名和哈希再做一次SHA-256。
+     */
+    public synchronized byte[] getContentHash() {
+        if (contentHash == null) {
+            if (hashes.size() == 1) {
+                contentHash = hashes.values().iterator().next();
+            } else {
+                MessageDigest digest = newDigest();
+                for (Map.Entry<String, byte[]> entry : hashes.entrySet()) {
+                    digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(entry.getValue());
+                }
+                contentHash = digest.digest();
+            }
+        }
+        return contentHash;
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        return newDigest().digest(bytes);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JRE不支持SHA-256", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 粗粒度的行级差异：只去掉两侧相同的首尾行，中间部分整体视为一次替换。
+ * 耗时与行数成线性关系，不受预算限制，用作精确算法超出预算后的兜底。
+ */
+public class CoarseDiffEngine implements DiffEngine {
+
+    @Override
+    public List<LineEdit> diff(List<String> oldLines, List<String> newLines, DiffBudget budget) {
+        int oldSize = oldLines.size();
+        int newSize = newLines.size();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize && oldLines.get(prefix).equals(newLines.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && oldLines.get(oldSize - 1 - suffix).equals(newLines.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+
+        List<LineEdit> edits = new ArrayList<>(3);
+        if (prefix > 0) {
+            edits.add(new LineEdit(LineEdit.Type.EQUAL, 0, prefix, 0, prefix));
+        }
+        int oldMiddleEnd = oldSize - suffix;
+        int newMiddleEnd = newSize - suffix;
+        if (oldMiddleEnd > prefix || newMiddleEnd > prefix) {
+            LineEdit.Type type = oldMiddleEnd == prefix ? LineEdit.Type.INSERT
+                    : newMiddleEnd == prefix ? LineEdit.Type.DELETE : LineEdit.Type.CHANGE;
+            edits.add(new LineEdit(type, prefix, oldMiddleEnd, prefix, newMiddleEnd));
+        }
+        if (suffix > 0) {
+            edits.add(new LineEdit(LineEdit.Type.EQUAL, oldMiddleEnd, oldSize, newMiddleEnd, newSize));
+        }
+        return edits;
+    }
+}
@@ -0,0 +1,413 @@
+package org.example;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 命令行参数。解析失败时抛出 {@link IllegalArgumentException}，消息可直接展示给用户。
+ */
+class CommandLine {
+
+    /**
+     * 输出格式。
+     */
+    enum Format {
+        /** 核心差异与非逻辑性差异两份HTML报告 */
+        HTML,
+        /** 索引页加按JAR分片的HTML报告 */
+        SHARDED,
+        /** JSON Lines，每个JAR和每个差异一条记录 */
+        JSONL
+    }
+
+    static final int DEFAULT_PORT = 17321;
+    static final int DEFAULT_MAX_JOBS = 2;
+    static final int DEFAULT_WATCH_QUIET_MILLIS = 2000;
+    static final int DEFAULT_WATCH_IDLE_SECONDS = 60;
+
+    static final String USAGE = String.join("\n",
+            "用法: java -jar javaDecompiler.jar [选项] <旧版本目录> <新版本目录>",
+            "      java -jar javaDecompiler.jar --timeline [--first-to-last] [选项] <版本1目录> <版本2目录> ... <版本N目录>",
+            "      java -jar javaDecompiler.jar --gui",
+            "      java -jar javaDecompiler.jar --daemon [--port <端口>] [--max-jobs <n>] [选项]",
+            "      java -jar javaDecompiler.jar --submit [--wait] [--port <端口>] [选项] <旧版本目录> <新版本目录>",
+            "      java -jar javaDecompiler.jar --status <作业编号> [--port <端口>]",
+            "",
+            "选项:",
+            "  --old <目录>                旧版本 (V1) 的JAR包所在文件夹",
+            "  --new <目录>                新版本 (V2) 的JAR包所在文件夹",
+            "  --out <目录>                报告输出目录，默认为新版本目录的父目录",
+            "  --format <格式,...>         html、sharded、jsonl 中的一个或多个，默认 html",
+            "  --jsonl-output <文件|->     JSONL输出位置，- 表示标准输出（此时进度信息写入标准错误）",
+            "  --jsonl-hunks               JSONL类记录中包含差异块的行范围",
+            "  --fail-on <类型,...>        出现 LOGICAL_CHANGE 或 ERROR 时以非0退出码结束",
+            "  --threads <n>               反编译阶段的线程数",
+            "  --diff-threads <n>          源码比对阶段的线程数",
+            "  --class-parallelism <n>     单个JAR内按类并行的并行度",
+            "  --cache-dir <目录>          反编译缓存目录",
+            "  --no-cache                  不使用反编译缓存",
+            "  --result-cache-dir <目录>   按JAR复用比较结果的缓存目录",
+            "  --no-result-cache           不复用以前的比较结果，所有JAR都重新比较",
+            "  --include <glob>            只比较文件名匹配的JAR，可重复指定",
+            "  --exclude <glob>            跳过文件名匹配的JAR，可重复指定",
+            "  --backend <后端>            反编译后端：fernflower（完整反编译，默认）或 disassembler（字节码反汇编，用于快速筛查）",
+            "  --backend-for <glob>=<后端> 文件名匹配的JAR使用指定的后端，可重复指定，先出现的规则优先",
+            "  --decompile-timeout <秒>    单个类反编译的时限，超时的类转入隔离的工作进程重试，默认 60",
+            "  --workers <n>               隔离反编译工作进程（子JVM）的数量，0 表示不启动子进程，默认 2",
+            "  --worker-heap <MB>          每个隔离工作进程的最大堆，即单个类反编译的内存上限，默认 1024",
+            "  --paranoid                  不信任ZIP中的CRC信息，逐字节比较每个类",
+            "  --profile <文件>            比较结束后把各阶段的耗时直方图、最慢的类、吞吐量和峰值堆写成JSON文件",
+            "  --log-level <级别>          控制台日志级别：error、warn、info（默认）或 debug，debug 时输出每个类的进度和Fernflower的日志",
+            "  --watch                     监视新版本目录，JAR写入完成后立即比较，目录空闲后输出报告",
+            "  --watch-quiet <毫秒>        JAR文件保持不变多久后认为写入完成，默认 " + DEFAULT_WATCH_QUIET_MILLIS,
+            "  --watch-idle <秒>           新版本目录保持不变多久后结束监视，默认 " + DEFAULT_WATCH_IDLE_SECONDS,
+            "  --timeline                  依次比较按顺序给出的多个版本目录中每一对相邻版本，并生成每个类的变更历史",
+            "  --first-to-last             时间线模式下额外比较第一个和最后一个版本",
+            "  --no-normalization          关闭字节码规范化比较",
+            "  --no-method-scoping         关闭按方法裁剪反编译范围",
+            "  --gui                       使用图形界面选择文件夹",
+            "  --daemon                    以常驻进程方式运行，在本机回环地址上接受比较作业",
+            "  --port <端口>               守护进程监听的端口，默认 " + DEFAULT_PORT,
+            "  --max-jobs <n>              守护进程同时运行的作业数，默认 " + DEFAULT_MAX_JOBS,
+            "  --submit                    把比较作业提交给守护进程，而不是在本进程中比较",
+            "  --wait                      提交后等待作业结束，并以作业的退出码退出",
+            "  --status <作业编号>         查询守护进程中作业的状态",
+            "  -h, --help                  显示本帮助",
+            "",
+            "退出码: 0 通过，1 存在逻辑性差异，2 存在比较错误，3 参数错误，4 运行失败");
+
+    private final ComparisonOptions options = new ComparisonOptions();
+    private final Set<Format> formats = EnumSet.noneOf(Format.class);
+    private final Set<DiffDetail.DiffType> failOn = EnumSet.noneOf(DiffDetail.DiffType.class);
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> backendRules = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    /** 去掉客户端专用选项后的参数，提交给守护进程时原样发送 */
+    private final List<String> jobArguments = new ArrayList<>();
+    private final Path baseDir;
+    private File oldDir;
+    private File newDir;
+    private Path outputDir;
+    private String jsonlOutput;
+    private Path profileOutput;
+    private Log.Level logLevel = Log.Level.INFO;
+    private boolean jsonlHunks;
+    private boolean gui;
+    private boolean help;
+    private boolean daemon;
+    private boolean submit;
+    private boolean waitForJob;
+    private Long statusJobId;
+    private int port = DEFAULT_PORT;
+    private int maxJobs = DEFAULT_MAX_JOBS;
+    private boolean watch;
+    private boolean timeline;
+    private boolean firstToLast;
+    private final List<File> versionDirs = new ArrayList<>();
+    private int watchQuietMillis = DEFAULT_WATCH_QUIET_MILLIS;
+    private int watchIdleSeconds = DEFAULT_WATCH_IDLE_SECONDS;
+
+    private CommandLine(Path baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    static CommandLine parse(String[] args) {
+        return parse(args, Paths.get(""));
+    }
+
+    /**
+     * @param baseDir 解析相对路径时使用的目录；守护进程按提交作业的客户端的工作目录解析
+     */
+    static CommandLine parse(String[] args, Path baseDir) {
+        CommandLine line = new CommandLine(baseDir.toAbsolutePath());
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--daemon": line.daemon = true; continue;
+                case "--submit": line.submit = true; continue;
+                case "--wait": line.waitForJob = true; continue;
+                case "--port": line.port = intValue(args, ++i, arg); continue;
+                case "--max-jobs": line.maxJobs = intValue(args, ++i, arg); continue;
+                case "--status": line.statusJobId = (long) intValue(args, ++i, arg); continue;
+                case "--log-level": line.logLevel = Log.parseLevel(value(args, ++i, arg)); continue;
+                default: break;
+            }
+            int start = i;
+            switch (arg) {
+                case "--old": line.oldDir = line.resolve(value(args, ++i, arg)).toFile(); break;
+                case "--new": line.newDir = line.resolve(value(args, ++i, arg)).toFile(); break;
+                case "--out": line.outputDir = line.resolve(value(args, ++i, arg)); break;
+                case "--format": line.parseFormats(value(args, ++i, arg)); break;
+                case "--jsonl-output": line.jsonlOutput = value(args, ++i, arg); break;
+                case "--jsonl-hunks": line.jsonlHunks = true; break;
+                case "--fail-on": line.parseFailOn(value(args, ++i, arg)); break;
+                case "--threads": line.options.setDecompileThreads(intValue(args, ++i, arg)); break;
+                case "--diff-threads": line.options.setDiffThreads(intValue(args, ++i, arg)); break;
+                case "--class-parallelism": line.options.setClassParallelism(intValue(args, ++i, arg)); break;
+                case "--cache-dir": line.options.setDecompileCacheDir(line.resolve(value(args, ++i, arg))); break;
+                case "--no-cache": line.options.setDecompileCacheDir(null); break;
+                case "--result-cache-dir": line.options.setResultCacheDir(line.resolve(value(args, ++i, arg))); break;
+                case "--no-result-cache": line.options.setResultCacheDir(null); break;
+                case "--include": line.includes.add(value(args, ++i, arg)); break;
+                case "--exclude": line.excludes.add(value(args, ++i, arg)); break;
+                case "--backend": line.options.setDecompilerBackend(value(args, ++i, arg)); break;
+                case "--backend-for": line.backendRules.add(value(args, ++i, arg)); break;
+                case "--decompile-timeout": line.options.setDecompileTimeoutMillis(intValue(args, ++i, arg) * 1000L); break;
+                case "--workers": line.options.setDecompileWorkers(intValue(args, ++i, arg)); break;
+                case "--worker-heap": line.options.setDecompileWorkerHeapMegabytes(intValue(args, ++i, arg)); break;
+                case "--paranoid": line.options.setParanoid(true); break;
+                case "--profile": line.profileOutput = line.resolve(value(args, ++i, arg)); break;
+                case "--watch": line.watch = true; break;
+                case "--watch-quiet": line.watchQuietMillis = intValue(args, ++i, arg); break;
+                case "--watch-idle": line.watchIdleSeconds = intValue(args, ++i, arg); break;
+                case "--timeline": line.timeline = true; break;
+                case "--first-to-last": line.firstToLast = true; break;
+                case "--no-normalization": line.options.setBytecodeNormalization(false); break;
+                case "--no-method-scoping": line.options.setMethodScoping(false); break;
+                case "--gui": line.gui = true; break;
+                case "-h":
+                case "--help": line.help = true; break;
+                default:
+                    if (arg.startsWith("-") && !arg.equals("-")) {
+                        throw new IllegalArgumentException("未知选项: " + arg);
+                    }
+                    positional.add(arg);
+            }
+            for (int j = start; j <= i; j++) {
+                line.jobArguments.add(args[j]);
+            }
+        }
+        if (line.port < 1 || line.port > 65535) {
+            throw new IllegalArgumentException("端口必须在 1~65535 之间，当前值: " + line.port);
+        }
+        if (line.maxJobs < 1) {
+            throw new IllegalArgumentException("--max-jobs 必须大于0，当前值: " + line.maxJobs);
+        }
+        if (line.watchQuietMillis < 0 || line.watchIdleSeconds < 1) {
+            throw new IllegalArgumentException("--watch-quiet 不能为负数，--watch-idle 必须大于0");
+        }
+        if (line.help || line.gui || line.daemon || line.statusJobId != null) {
+            return line;
+        }
+
+        if (line.timeline) {
+            if (line.watch || line.oldDir != null || line.newDir != null) {
+                throw new IllegalArgumentException("--timeline 不能与 --watch、--old、--new 同时使用");
+            }
+            if (positional.size() < 2) {
+                throw new IllegalArgumentException("--timeline 至少需要两个版本目录");
+            }
+            for (String dir : positional) {
+                line.versionDirs.add(line.resolve(dir).toFile());
+            }
+            positional.clear();
+            line.oldDir = line.versionDirs.get(0);
+            line.newDir = line.versionDirs.get(line.versionDirs.size() - 1);
+        } else if (line.firstToLast) {
+            throw new IllegalArgumentException("--first-to-last 只能与 --timeline 一起使用");
+        }
+        if (!positional.isEmpty() && (line.oldDir != null || line.newDir != null) || positional.size() > 2) {
+            throw new IllegalArgumentException("多余的参数: " + positional);
+        }
+        if (positional.size() == 2) {
+            line.oldDir = line.resolve(positional.get(0)).toFile();
+            line.newDir = line.resolve(positional.get(1)).toFile();
+        }
+        if (line.oldDir == null || line.newDir == null) {
+            throw new IllegalArgumentException("必须同时指定旧版本目录和新版本目录");
+        }
+        requireDirectory(line.oldDir);
+        requireDirectory(line.newDir);
+        for (File versionDir : line.versionDirs) {
+            requireDirectory(versionDir);
+        }
+
+        if (line.formats.isEmpty()) {
+            line.formats.add(line.jsonlOutput != null ? Format.JSONL : Format.HTML);
+        }
+        if (line.jsonlOutput != null && !"-".equals(line.jsonlOutput)) {
+            line.jsonlOutput = line.resolve(line.jsonlOutput).toString();
+        }
+        if (line.outputDir == null) {
+            line.outputDir = line.newDir.getAbsoluteFile().getParentFile().toPath();
+        }
+        line.options.setBackendRules(line.backendRules);
+        line.options.setJarIncludes(line.includes);
+        line.options.setJarExcludes(line.excludes);
+        return line;
+    }
+
+    private Path resolve(String path) {
+        return baseDir.resolve(path);
+    }
+
+    private void parseFormats(String value) {
+        for (String name : value.split(",")) {
+            try {
+                formats.add(Format.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("未知的输出格式: " + name + "，可选值: " + Arrays.toString(Format.values()));
+            }
+        }
+    }
+
+    private void parseFailOn(String value) {
+        for (String name : value.split(",")) {
+            DiffDetail.DiffType type;
+            try {
+                type = DiffDetail.DiffType.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                type = null;
+            }
+            if (type != DiffDetail.DiffType.LOGICAL_CHANGE && type != DiffDetail.DiffType.ERROR) {
+                throw new IllegalArgumentException("--fail-on 只支持 LOGICAL_CHANGE 和 ERROR，当前值: " + name);
+            }
+            failOn.add(type);
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("选项 " + option + " 缺少参数值");
+        }
+        return args[index];
+    }
+
+    private static int intValue(String[] args, int index, String option) {
+        String value = value(args, index, option);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("选项 " + option + " 需要整数参数，当前值: " + value);
+        }
+    }
+
+    private static void requireDirectory(File dir) {
+        if (!dir.isDirectory()) {
+            throw new IllegalArgumentException("目录不存在: " + dir.getAbsolutePath());
+        }
+    }
+
+    ComparisonOptions getOptions() {
+        return options;
+    }
+
+    Set<Format> getFormats() {
+        return formats;
+    }
+
+    Set<DiffDetail.DiffType> getFailOn() {
+        return failOn;
+    }
+
+    File getOldDir() {
+        return oldDir;
+    }
+
+    File getNewDir() {
+        return newDir;
+    }
+
+    Path getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * @return JSONL输出位置，"-" 表示标准输出，为null时写入输出目录下带时间戳的文件
+     */
+    String getJsonlOutput() {
+        return jsonlOutput;
+    }
+
+    /**
+     * @return 性能统计的输出文件，未指定 --profile 时为null
+     */
+    Path getProfileOutput() {
+        return profileOutput;
+    }
+
+    /**
+     * @return 本进程的控制台日志级别，只对命令行所在的进程生效，不随作业提交给守护进程
+     */
+    Log.Level getLogLevel() {
+        return logLevel;
+    }
+
+    boolean isJsonlHunks() {
+        return jsonlHunks;
+    }
+
+    boolean isGui() {
+        return gui;
+    }
+
+    boolean isHelp() {
+        return help;
+    }
+
+    boolean isDaemon() {
+        return daemon;
+    }
+
+    boolean isSubmit() {
+        return submit;
+    }
+
+    boolean isWaitForJob() {
+        return waitForJob;
+    }
+
+    /**
+     * @return 要查询状态的作业编号，未指定 --status 时为null
+     */
+    Long getStatusJobId() {
+        return statusJobId;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    int getMaxJobs() {
+        return maxJobs;
+    }
+
+    boolean isWatch() {
+        return watch;
+    }
+
+    int getWatchQuietMillis() {
+        return watchQuietMillis;
+    }
+
+    int getWatchIdleSeconds() {
+        return watchIdleSeconds;
+    }
+
+    boolean isTimeline() {
+        return timeline;
+    }
+
+    boolean isFirstToLast() {
+        return firstToLast;
+    }
+
+    /**
+     * @return 时间线模式下按顺序给出的各版本目录，其他模式下为空
+     */
+    List<File> getVersionDirs() {
+        return versionDirs;
+    }
+
+    List<String> getJobArguments() {
+        return jobArguments;
+    }
+}
@@ -0,0 +1,344 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻的比较服务：在本机回环地址上提供HTTP接口，接受比较作业并排队执行。
+ * <p>
+ * 所有作业共用同一个反编译器（连同持久化缓存和开启了内存层的缓存）和同一个源码比对器，
+ * JIT预热和缓存在作业之间保留；每个作业仍使用自己的 {@link JarComparator}，
+ * 作业结束后释放其线程池与源码段文件。
+ * <ul>
+ *     <li>{@code POST /jobs}：请求体为每行一个的命令行参数，请求头 {@code X-Working-Directory} 指定解析相对路径的目录</li>
+ *     <li>{@code GET /jobs}：列出所有作业的状态</li>
+ *     <li>{@code GET /jobs/<编号>}：查询一个作业的状态、进度、退出码和输出文件位置</li>
+ * </ul>
+ * 反编译缓存目录和源码比对预算在守护进程启动时确定，作业中的 --cache-dir/--no-cache 不生效。
+ */
+public class ComparisonDaemon implements Closeable {
+
+    /** 作业状态 */
+    enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    static final String WORKING_DIRECTORY_HEADER = "X-Working-Directory";
+
+    /** 排队等待的作业上限，超出后拒绝提交 */
+    private static final int MAX_QUEUED_JOBS = 64;
+    /** 最多保留的已结束作业数量，更早的作业无法再查询 */
+    private static final int MAX_FINISHED_JOBS = 1000;
+    /** 反编译缓存内存层的容量（字符数） */
+    private static final long MEMORY_CACHE_CHARS = 128L * 1024 * 1024;
+
+    private final JarDecompiler decompiler;
+    private final SourceCodeDiff diff;
+    private final ThreadPoolExecutor jobExecutor;
+    private final ExecutorService httpExecutor;
+    private final HttpServer server;
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+
+    /**
+     * @param options 决定共享组件的参数：反编译缓存、反编译看门狗与源码比对预算
+     * @param port    监听的本机端口
+     * @param maxJobs 同时运行的作业数
+     * @throws IOException 端口无法绑定
+     */
+    public ComparisonDaemon(ComparisonOptions options, int port, int maxJobs) throws IOException {
+        DecompilationCache cache = JarComparator.openDecompilationCache(options);
+        if (cache != null) {
+            cache.setMemoryCapacity(MEMORY_CACHE_CHARS);
+        }
+        this.decompiler = new JarDecompiler(cache, new DecompileWatchdog(options));
+        this.diff = new SourceCodeDiff(new MyersDiffEngine(), options.toDiffBudget());
+
+        AtomicInteger jobThreads = new AtomicInteger();
+        this.jobExecutor = new ThreadPoolExecutor(maxJobs, maxJobs, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_JOBS),
+                runnable -> new Thread(runnable, "daemon-job-" + jobThreads.incrementAndGet()));
+        this.httpExecutor = Executors.newFixedThreadPool(2);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/jobs", this::handle);
+        this.server.setExecutor(httpExecutor);
+    }
+
+    public void start() {
+        server.start();
+        Log.info("守护进程已启动，监听 http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/jobs");
+    }
+
+    /**
+     * 停止接受请求，等待运行中的作业结束。
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        httpExecutor.shutdown();
+        jobExecutor.shutdown();
+        try {
+            jobExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        decompiler.close();
+    }
+
+    /**
+     * 把作业放入队列。
+     * @throws RejectedExecutionException 排队的作业已达上限
+     */
+    Job submit(CommandLine line) {
+        Job job = new Job(nextJobId.getAndIncrement(), line);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            pruneFinishedJobs();
+        }
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            throw e;
+        }
+        Log.info("作业 " + job.id + " 已提交: " + line.getOldDir() + " -> " + line.getNewDir());
+        return job;
+    }
+
+    private void run(Job job) {
+        job.startedAt = Instant.now();
+        job.state = State.RUNNING;
+        Log.info("作业 " + job.id + " 开始运行");
+        try (JarComparator jarComparator = new JarComparator(decompiler, diff, job.line.getOptions())) {
+            ComparisonRun run = new ComparisonRun(job.line, jarComparator);
+            job.run = run;
+            job.exitCode = run.execute(System.out);
+            job.state = State.SUCCEEDED;
+        } catch (Exception e) {
+            Log.error("作业 " + job.id + " 运行失败:", e);
+            job.error = e.toString();
+            job.exitCode = Main.EXIT_FAILURE;
+            job.state = State.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            Log.info("作业 " + job.id + " 结束，状态 " + job.state + "，退出码 " + job.exitCode);
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        int finished = 0;
+        for (Job job : jobs.values()) {
+            if (job.isFinished()) finished++;
+        }
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/jobs") || path.equals("/jobs/")) {
+                if ("POST".equals(method)) {
+                    handleSubmit(exchange);
+                } else if ("GET".equals(method)) {
+                    handleList(exchange);
+                } else {
+                    sendError(exchange, 405, "不支持的请求方法: " + method);
+                }
+            } else if ("GET".equals(method)) {
+                handleStatus(exchange, path.substring("/jobs/".length()));
+            } else {
+                sendError(exchange, 405, "不支持的请求方法: " + method);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleSubmit(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        List<String> args = new ArrayList<>();
+        for (String arg : body.split("\n")) {
+            if (!arg.isEmpty()) args.add(arg);
+        }
+        String workingDirectory = exchange.getRequestHeaders().getFirst(WORKING_DIRECTORY_HEADER);
+        Path baseDir = workingDirectory != null ? Paths.get(workingDirectory) : Paths.get("");
+
+        CommandLine line;
+        try {
+            line = CommandLine.parse(args.toArray(new String[0]), baseDir);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        if (line.isGui() || line.isHelp() || line.isDaemon() || line.getStatusJobId() != null) {
+            sendError(exchange, 400, "作业参数中不能包含 --gui、--help、--daemon 或 --status");
+            return;
+        }
+        if ("-".equals(line.getJsonlOutput())) {
+            sendError(exchange, 400, "守护进程中的作业不能把JSONL写到标准输出，请指定文件");
+            return;
+        }
+
+        Job job;
+        try {
+            job = submit(line);
+        } catch (RejectedExecutionException e) {
+            sendError(exchange, 503, "排队的作业已达上限 " + MAX_QUEUED_JOBS + "，请稍后再提交");
+            return;
+        }
+        StringWriter json = new StringWriter();
+        job.writeJson(json);
+        send(exchange, 202, json.toString());
+    }
+
+    private void handleList(HttpExchange exchange) throws IOException {
+        List<Job> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        StringWriter json = new StringWriter();
+        json.write("{\"jobs\":[");
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i > 0) json.write(',');
+            snapshot.get(i).writeJson(json);
+        }
+        json.write("]}");
+        send(exchange, 200, json.toString());
+    }
+
+    private void handleStatus(HttpExchange exchange, String id) throws IOException {
+        Job job = null;
+        try {
+            synchronized (jobs) {
+                job = jobs.get(Long.parseLong(id));
+            }
+        } catch (NumberFormatException ignored) {
+            // 按不存在的作业处理
+        }
+        if (job == null) {
+            sendError(exchange, 404, "作业不存在: " + id);
+            return;
+        }
+        StringWriter json = new StringWriter();
+        job.writeJson(json);
+        send(exchange, 200, json.toString());
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringWriter json = new StringWriter();
+        json.write("{\"error\":");
+        JsonlWriter.writeJsonString(json, message);
+        json.write('}');
+        send(exchange, status, json.toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 一个比较作业。状态字段由作业线程写入、HTTP线程读取。
+     */
+    static final class Job {
+        private final long id;
+        private final CommandLine line;
+        private final Instant submittedAt = Instant.now();
+        private volatile State state = State.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile ComparisonRun run;
+        private volatile Integer exitCode;
+        private volatile String error;
+
+        Job(long id, CommandLine line) {
+            this.id = id;
+            this.line = line;
+        }
+
+        boolean isFinished() {
+            return state == State.SUCCEEDED || state == State.FAILED;
+        }
+
+        void writeJson(Writer out) throws IOException {
+            ComparisonRun currentRun = run;
+            out.write("{\"id\":");
+            out.write(Long.toString(id));
+            out.write(",\"state\":\"");
+            out.write(state.name());
+            out.write("\",\"oldDir\":");
+            JsonlWriter.writeJsonString(out, line.getOldDir().getAbsolutePath());
+            out.write(",\"newDir\":");
+            JsonlWriter.writeJsonString(out, line.getNewDir().getAbsolutePath());
+            out.write(",\"submittedAt\":");
+            writeInstant(out, submittedAt);
+            out.write(",\"startedAt\":");
+            writeInstant(out, startedAt);
+            out.write(",\"finishedAt\":");
+            writeInstant(out, finishedAt);
+            out.write(",\"completedJars\":");
+            out.write(Integer.toString(currentRun != null ? currentRun.getCompletedJars() : 0));
+            out.write(",\"exitCode\":");
+            out.write(exitCode != null ? exitCode.toString() : "null");
+            out.write(",\"outputs\":{");
+            if (currentRun != null) {
+                boolean first = true;
+                for (Map.Entry<String, Path> output : currentRun.getOutputs().entrySet()) {
+                    if (!first) out.write(',');
+                    first = false;
+                    JsonlWriter.writeJsonString(out, output.getKey());
+                    out.write(':');
+                    JsonlWriter.writeJsonString(out, output.getValue().toString());
+                }
+            }
+            out.write('}');
+            if (error != null) {
+                out.write(",\"error\":");
+                JsonlWriter.writeJsonString(out, error);
+            }
+            out.write('}');
+        }
+
+        private static void writeInstant(Writer out, Instant instant) throws IOException {
+            JsonlWriter.writeJsonString(out, instant != null ? instant.toString() : null);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.example;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * CI门禁：统计比较结果中的逻辑性差异与错误，并按配置换算为进程退出码。
+ * <p>
+ * 新增/删除的JAR以及新增/删除类等通用信息都计为逻辑性差异。
+ */
+public class ComparisonGate implements ComparisonListener {
+
+    /** 没有触发门禁 */
+    public static final int EXIT_OK = 0;
+    /** 存在逻辑性差异，且门禁包含 LOGICAL_CHANGE */
+    public static final int EXIT_LOGICAL_CHANGE = 1;
+    /** 存在比较错误，且门禁包含 ERROR；优先于 {@link #EXIT_LOGICAL_CHANGE} */
+    public static final int EXIT_ERROR = 2;
+
+    private final Set<DiffDetail.DiffType> failOn;
+    private int logicalChanges;
+    private int errors;
+
+    /**
+     * @param failOn 出现哪些类型的差异时以非0退出码结束，为空表示总是返回 {@link #EXIT_OK}
+     */
+    public ComparisonGate(Set<DiffDetail.DiffType> failOn) {
+        this.failOn = failOn.isEmpty() ? EnumSet.noneOf(DiffDetail.DiffType.class) : EnumSet.copyOf(failOn);
+    }
+
+    public synchronized void accept(ComparisonResult result) {
+        if (result.getStatus() == ComparisonResult.Status.ADDED || result.getStatus() == ComparisonResult.Status.DELETED) {
+            logicalChanges++;
+        }
+        logicalChanges += result.countDiffDetails(DiffDetail.DiffType.LOGICAL_CHANGE);
+        errors += result.countDiffDetails(DiffDetail.DiffType.ERROR);
+    }
+
+    @Override
+    public void onJarCompleted(ComparisonResult result) {
+        accept(result);
+    }
+
+    public Set<DiffDetail.DiffType> getFailOn() {
+        return failOn;
+    }
+
+    /**
+     * 按门禁计算退出码：出现错误优先返回 {@link #EXIT_ERROR}，其次是 {@link #EXIT_LOGICAL_CHANGE}。
+     */
+    public synchronized int exitCode() {
+        if (failOn.contains(DiffDetail.DiffType.ERROR) && errors > 0) {
+            return EXIT_ERROR;
+        }
+        if (failOn.contains(DiffDetail.DiffType.LOGICAL_CHANGE) && logicalChanges > 0) {
+            return EXIT_LOGICAL_CHANGE;
+        }
+        return EXIT_OK;
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 比较过程的监听器。每个JAR的结果一经确定就交给监听器，报告、控制台和CI输出可以边比较边写出，
+ * 写出后结果即可释放，不需要等所有JAR比较完毕，也不需要在内存中同时保留全部结果。
+ * <p>
+ * 除 {@link #onJarStarted} 外，所有回调都在流水线的汇总线程上按JAR的提交顺序依次调用：
+ * 每个JAR先对其每条差异调用 {@link #onClassDiff}（顺序与 {@link ComparisonResult#getDiffDetails()} 相同），
+ * 再调用 {@link #onJarCompleted}；每个收到 {@link #onJarStarted} 的JAR都恰好收到一次 {@link #onJarCompleted}，
+ * 未变更的JAR也不例外。所有JAR结束后调用一次 {@link #onRunCompleted}。
+ * 回调阻塞期间汇总线程不再取结果，各阶段之间的有界队列随之填满，最终让提交JAR的一方也阻塞，
+ * 因此处理慢的监听器会拖慢比较，而不会让结果在内存中堆积。
+ * <p>
+ * 回调抛出的运行时异常会被记录，不影响其它监听器和后续的JAR。
+ */
+public interface ComparisonListener {
+
+    /**
+     * 一个JAR被提交比较。在提交JAR的线程上调用，可能与其它回调并发。
+     *
+     * @param oldJar 旧版本的JAR，新增的JAR为null
+     * @param newJar 新版本的JAR，删除的JAR为null
+     */
+    default void onJarStarted(String jarName, File oldJar, File newJar) {
+    }
+
+    /**
+     * JAR中的一条差异：类级差异，或类名为 {@link DiffDetail#GENERAL_INFO} 的通用信息（如新增、删除的类）。
+     * 同一个JAR的类是并行比对的，差异在该JAR比较完成后一次性按稳定的顺序送达，保证输出与线程调度无关，
+     * 而不是在每个类比对完成时立即送达。
+     */
+    default void onClassDiff(ComparisonResult result, DiffDetail detail) {
+    }
+
+    /**
+     * 一个JAR比较完成，其所有差异都已通过 {@link #onClassDiff} 送达。未变更的JAR以状态为UNCHANGED、没有差异的结果通知。
+     */
+    default void onJarCompleted(ComparisonResult result) {
+    }
+
+    /**
+     * 所有JAR都已比较完成。
+     */
+    default void onRunCompleted() {
+    }
+
+    /**
+     * @return 只接收状态不是UNCHANGED的JAR级结果的监听器
+     */
+    static ComparisonListener of(Consumer<ComparisonResult> resultConsumer) {
+        return new ComparisonListener() {
+            @Override
+            public void onJarCompleted(ComparisonResult result) {
+                if (result.getStatus() != ComparisonResult.Status.UNCHANGED) {
+                    resultConsumer.accept(result);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return 按给定顺序依次通知各监听器的监听器，null元素被忽略
+     */
+    static ComparisonListener of(ComparisonListener... listeners) {
+        return new CompositeListener(Arrays.asList(listeners));
+    }
+
+    /**
+     * @see #of(ComparisonListener...)
+     */
+    static ComparisonListener of(List<ComparisonListener> listeners) {
+        return new CompositeListener(listeners);
+    }
+}
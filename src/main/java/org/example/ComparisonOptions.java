@@ -0,0 +1,387 @@
+package org.example;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 比较流程的运行参数。所有参数都有合理的默认值，直接 new 出来即可使用。
+ */
+public class ComparisonOptions {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /** 配对/哈希阶段的线程数（以I/O为主） */
+    private int hashThreads = 2;
+    /** 条目提取阶段的线程数（解压，以I/O为主） */
+    private int extractThreads = 2;
+    /** 字节码规范化阶段的线程数（该阶段内部还会按类并行） */
+    private int normalizeThreads = 2;
+    /** 反编译阶段的线程数（CPU密集，默认占满所有核心） */
+    private int decompileThreads = CPU_COUNT;
+    /** 源码比对阶段的线程数 */
+    private int diffThreads = Math.max(1, CPU_COUNT / 2);
+    /** 相邻阶段之间的有界队列容量，用于限制在途JAR的内存占用 */
+    private int queueCapacity = 4;
+    /** 单个JAR内部按类并行处理时，工作窃取线程池的并行度 */
+    private int classParallelism = CPU_COUNT;
+    /** fork/join拆分任务时，一个叶子任务最多处理的类数量；同一叶子内的类共用一个反编译上下文 */
+    private int classSplitThreshold = 32;
+    /** 严格模式：不信任ZIP中央目录的CRC/大小信息，总是解压并逐字节比较每个同名类 */
+    private boolean paranoid;
+    /** 是否在反编译前进行字节码规范化比较，跳过只有调试信息或常量池顺序不同的类 */
+    private boolean bytecodeNormalization = true;
+    /** 是否在反编译前裁剪掉新旧两侧完全相同的方法，只反编译发生变化的部分（依赖字节码规范化） */
+    private boolean methodScoping = true;
+    /** 默认的反编译后端标识，见 {@link DecompilerBackends} */
+    private String decompilerBackend = DecompilerBackends.DEFAULT;
+    /** 按JAR文件名选择后端的规则，形如 "glob=后端标识"，按顺序第一条匹配的生效，都不匹配时使用默认后端 */
+    private List<String> backendRules = Collections.emptyList();
+    private List<PathMatcher> backendRuleMatchers = Collections.emptyList();
+    private List<String> backendRuleIds = Collections.emptyList();
+    /** 单个类反编译允许的最长耗时（毫秒），批量反编译的时限按类数累加，超时的类转入隔离的工作进程重试 */
+    private long decompileTimeoutMillis = 60_000;
+    /** 隔离反编译工作进程的数量，为0时失败的类在本进程内按单类时限重试 */
+    private int decompileWorkers = 2;
+    /** 每个隔离反编译工作进程的最大堆（MB），即单个类反编译的内存上限 */
+    private int decompileWorkerHeapMegabytes = 1024;
+    /** 单个类源码比对允许精确比对的最大行数（新旧合计），超出后退化为粗粒度的行差异 */
+    private int diffMaxLines = SourceCodeDiff.DEFAULT_BUDGET.getMaxLines();
+    /** 单个类源码比对允许的最长耗时（毫秒），超出后退化为粗粒度的行差异 */
+    private long diffTimeoutMillis = SourceCodeDiff.DEFAULT_BUDGET.getTimeoutMillis();
+    /** 比对结果中直接保存在堆中的源码总大小上限（字节），超出的源码压缩后写入临时段文件 */
+    private long sourceInlineBudgetBytes = 64L * 1024 * 1024;
+    /** 临时段文件所在的目录 */
+    private Path sourceSpillDir = Paths.get(System.getProperty("java.io.tmpdir"), "jar-comparator");
+    /** 持久化反编译缓存的目录，为null表示不使用缓存 */
+    private Path decompileCacheDir = Paths.get(System.getProperty("user.home"), ".jar-comparator", "decompile-cache");
+    /** 反编译缓存的大小上限（字节），超出后按LRU淘汰 */
+    private long decompileCacheMaxBytes = 1024L * 1024 * 1024;
+    /** 持久化比较结果缓存的目录，按新旧JAR的哈希对复用整个JAR的比较结果，为null表示不使用 */
+    private Path resultCacheDir = Paths.get(System.getProperty("user.home"), ".jar-comparator", "result-cache");
+    /** 比较结果缓存的大小上限（字节），超出后淘汰最久未使用的条目 */
+    private long resultCacheMaxBytes = 1024L * 1024 * 1024;
+    /** 只比较文件名匹配其中任一glob模式的JAR，为空表示全部比较 */
+    private List<String> jarIncludes = Collections.emptyList();
+    /** 文件名匹配其中任一glob模式的JAR不参与比较，优先于 jarIncludes */
+    private List<String> jarExcludes = Collections.emptyList();
+    private List<PathMatcher> jarIncludeMatchers = Collections.emptyList();
+    private List<PathMatcher> jarExcludeMatchers = Collections.emptyList();
+
+    public int getHashThreads() {
+        return hashThreads;
+    }
+
+    public void setHashThreads(int hashThreads) {
+        this.hashThreads = requirePositive(hashThreads, "hashThreads");
+    }
+
+    public int getExtractThreads() {
+        return extractThreads;
+    }
+
+    public void setExtractThreads(int extractThreads) {
+        this.extractThreads = requirePositive(extractThreads, "extractThreads");
+    }
+
+    public int getNormalizeThreads() {
+        return normalizeThreads;
+    }
+
+    public void setNormalizeThreads(int normalizeThreads) {
+        this.normalizeThreads = requirePositive(normalizeThreads, "normalizeThreads");
+    }
+
+    public int getDecompileThreads() {
+        return decompileThreads;
+    }
+
+    public void setDecompileThreads(int decompileThreads) {
+        this.decompileThreads = requirePositive(decompileThreads, "decompileThreads");
+    }
+
+    public int getDiffThreads() {
+        return diffThreads;
+    }
+
+    public void setDiffThreads(int diffThreads) {
+        this.diffThreads = requirePositive(diffThreads, "diffThreads");
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = requirePositive(queueCapacity, "queueCapacity");
+    }
+
+    public int getClassParallelism() {
+        return classParallelism;
+    }
+
+    public void setClassParallelism(int classParallelism) {
+        this.classParallelism = requirePositive(classParallelism, "classParallelism");
+    }
+
+    public int getClassSplitThreshold() {
+        return classSplitThreshold;
+    }
+
+    public void setClassSplitThreshold(int classSplitThreshold) {
+        this.classSplitThreshold = requirePositive(classSplitThreshold, "classSplitThreshold");
+    }
+
+    public boolean isParanoid() {
+        return paranoid;
+    }
+
+    public void setParanoid(boolean paranoid) {
+        this.paranoid = paranoid;
+    }
+
+    public boolean isBytecodeNormalization() {
+        return bytecodeNormalization;
+    }
+
+    public void setBytecodeNormalization(boolean bytecodeNormalization) {
+        this.bytecodeNormalization = bytecodeNormalization;
+    }
+
+    public boolean isMethodScoping() {
+        return methodScoping;
+    }
+
+    public void setMethodScoping(boolean methodScoping) {
+        this.methodScoping = methodScoping;
+    }
+
+    public String getDecompilerBackend() {
+        return decompilerBackend;
+    }
+
+    /**
+     * @throws IllegalArgumentException 没有该标识的后端
+     */
+    public void setDecompilerBackend(String decompilerBackend) {
+        this.decompilerBackend = DecompilerBackends.get(decompilerBackend).getId();
+    }
+
+    public List<String> getBackendRules() {
+        return backendRules;
+    }
+
+    /**
+     * @param backendRules 形如 "glob=后端标识" 的规则，eg: "vendor-*.jar=disassembler"
+     * @throws IllegalArgumentException 规则格式错误或后端不存在
+     */
+    public void setBackendRules(List<String> backendRules) {
+        List<PathMatcher> matchers = new ArrayList<>(backendRules.size());
+        List<String> ids = new ArrayList<>(backendRules.size());
+        for (String rule : backendRules) {
+            int separator = rule.lastIndexOf('=');
+            if (separator <= 0 || separator == rule.length() - 1) {
+                throw new IllegalArgumentException("后端规则应为 glob=后端标识，当前值: " + rule);
+            }
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + rule.substring(0, separator)));
+            ids.add(DecompilerBackends.get(rule.substring(separator + 1)).getId());
+        }
+        this.backendRules = Collections.unmodifiableList(new ArrayList<>(backendRules));
+        this.backendRuleMatchers = matchers;
+        this.backendRuleIds = ids;
+    }
+
+    /**
+     * @param jarName JAR的文件名（不含目录）
+     * @return 比较该JAR时使用的后端标识
+     */
+    public String backendFor(String jarName) {
+        Path name = Paths.get(jarName);
+        for (int i = 0; i < backendRuleMatchers.size(); i++) {
+            if (backendRuleMatchers.get(i).matches(name)) {
+                return backendRuleIds.get(i);
+            }
+        }
+        return decompilerBackend;
+    }
+
+    public long getDecompileTimeoutMillis() {
+        return decompileTimeoutMillis;
+    }
+
+    public void setDecompileTimeoutMillis(long decompileTimeoutMillis) {
+        this.decompileTimeoutMillis = requirePositive(decompileTimeoutMillis, "decompileTimeoutMillis");
+    }
+
+    public int getDecompileWorkers() {
+        return decompileWorkers;
+    }
+
+    public void setDecompileWorkers(int decompileWorkers) {
+        if (decompileWorkers < 0) {
+            throw new IllegalArgumentException("decompileWorkers 不能为负数，当前值: " + decompileWorkers);
+        }
+        this.decompileWorkers = decompileWorkers;
+    }
+
+    public int getDecompileWorkerHeapMegabytes() {
+        return decompileWorkerHeapMegabytes;
+    }
+
+    public void setDecompileWorkerHeapMegabytes(int decompileWorkerHeapMegabytes) {
+        this.decompileWorkerHeapMegabytes = requirePositive(decompileWorkerHeapMegabytes, "decompileWorkerHeapMegabytes");
+    }
+
+    public int getDiffMaxLines() {
+        return diffMaxLines;
+    }
+
+    public void setDiffMaxLines(int diffMaxLines) {
+        this.diffMaxLines = requirePositive(diffMaxLines, "diffMaxLines");
+    }
+
+    public long getDiffTimeoutMillis() {
+        return diffTimeoutMillis;
+    }
+
+    public void setDiffTimeoutMillis(long diffTimeoutMillis) {
+        this.diffTimeoutMillis = requirePositive(diffTimeoutMillis, "diffTimeoutMillis");
+    }
+
+    /**
+     * @return 按当前配置构造的单个类比对预算
+     */
+    public DiffBudget toDiffBudget() {
+        return new DiffBudget(diffMaxLines, diffTimeoutMillis, SourceCodeDiff.DEFAULT_BUDGET.getMaxRefineLineLength());
+    }
+
+    public long getSourceInlineBudgetBytes() {
+        return sourceInlineBudgetBytes;
+    }
+
+    public void setSourceInlineBudgetBytes(long sourceInlineBudgetBytes) {
+        if (sourceInlineBudgetBytes < 0) {
+            throw new IllegalArgumentException("sourceInlineBudgetBytes 不能为负数，当前值: " + sourceInlineBudgetBytes);
+        }
+        this.sourceInlineBudgetBytes = sourceInlineBudgetBytes;
+    }
+
+    public Path getSourceSpillDir() {
+        return sourceSpillDir;
+    }
+
+    public void setSourceSpillDir(Path sourceSpillDir) {
+        this.sourceSpillDir = sourceSpillDir;
+    }
+
+    public Path getDecompileCacheDir() {
+        return decompileCacheDir;
+    }
+
+    public void setDecompileCacheDir(Path decompileCacheDir) {
+        this.decompileCacheDir = decompileCacheDir;
+    }
+
+    public long getDecompileCacheMaxBytes() {
+        return decompileCacheMaxBytes;
+    }
+
+    public void setDecompileCacheMaxBytes(long decompileCacheMaxBytes) {
+        if (decompileCacheMaxBytes < 0) {
+            throw new IllegalArgumentException("decompileCacheMaxBytes 不能为负数，当前值: " + decompileCacheMaxBytes);
+        }
+        this.decompileCacheMaxBytes = decompileCacheMaxBytes;
+    }
+
+    public Path getResultCacheDir() {
+        return resultCacheDir;
+    }
+
+    public void setResultCacheDir(Path resultCacheDir) {
+        this.resultCacheDir = resultCacheDir;
+    }
+
+    public long getResultCacheMaxBytes() {
+        return resultCacheMaxBytes;
+    }
+
+    public void setResultCacheMaxBytes(long resultCacheMaxBytes) {
+        if (resultCacheMaxBytes < 0) {
+            throw new IllegalArgumentException("resultCacheMaxBytes 不能为负数，当前值: " + resultCacheMaxBytes);
+        }
+        this.resultCacheMaxBytes = resultCacheMaxBytes;
+    }
+
+    /**
+     * @return 会影响单个JAR比较结果的参数，用作比较结果缓存键的一部分；线程数、缓存位置等只影响速度的参数不包括在内
+     */
+    public String resultFingerprint() {
+        return "paranoid=" + paranoid
+                + ";normalization=" + bytecodeNormalization
+                + ";methodScoping=" + methodScoping
+                + ";diffMaxLines=" + diffMaxLines
+                + ";diffTimeoutMillis=" + diffTimeoutMillis
+                + ";backend=" + decompilerBackend
+                + ";backendRules=" + String.join(",", backendRules);
+    }
+
+    public List<String> getJarIncludes() {
+        return jarIncludes;
+    }
+
+    public void setJarIncludes(List<String> jarIncludes) {
+        this.jarIncludes = Collections.unmodifiableList(new ArrayList<>(jarIncludes));
+        this.jarIncludeMatchers = compileGlobs(jarIncludes);
+    }
+
+    public List<String> getJarExcludes() {
+        return jarExcludes;
+    }
+
+    public void setJarExcludes(List<String> jarExcludes) {
+        this.jarExcludes = Collections.unmodifiableList(new ArrayList<>(jarExcludes));
+        this.jarExcludeMatchers = compileGlobs(jarExcludes);
+    }
+
+    /**
+     * @param jarName JAR的文件名（不含目录）
+     * @return 该JAR是否通过包含/排除过滤
+     */
+    public boolean acceptsJar(String jarName) {
+        Path name = Paths.get(jarName);
+        for (PathMatcher matcher : jarExcludeMatchers) {
+            if (matcher.matches(name)) return false;
+        }
+        if (jarIncludeMatchers.isEmpty()) return true;
+        for (PathMatcher matcher : jarIncludeMatchers) {
+            if (matcher.matches(name)) return true;
+        }
+        return false;
+    }
+
+    private static List<PathMatcher> compileGlobs(List<String> patterns) {
+        List<PathMatcher> matchers = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        }
+        return matchers;
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " 必须大于0，当前值: " + value);
+        }
+        return value;
+    }
+
+    private static long requirePositive(long value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " 必须大于0，当前值: " + value);
+        }
+        return value;
+    }
+}
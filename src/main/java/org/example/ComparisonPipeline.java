@@ -0,0 +1,266 @@
+package org.example;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 分阶段的流水线比较引擎：配对/哈希 → 条目提取 → 字节码规范化 → 反编译 → 源码比对 → 结果汇总。
+ * <p>
+ * 相邻阶段之间使用有界队列连接，每个阶段拥有独立的工作线程数，CPU密集的反编译阶段可以占满所有核心，
+ * 同时I/O阶段与之重叠执行。汇总阶段按提交顺序重新排序，因此输出顺序与线程调度无关，始终是确定的。
+ * 汇总阶段把每个JAR的结果交给 {@link ComparisonListener}，监听器阻塞时通过有界队列对上游形成背压。
+ */
+public class ComparisonPipeline {
+
+    /** 队列结束标记 */
+    private static final JarTask POISON = new JarTask(-1, null, null, null);
+
+    private final JarComparator jarComparator;
+    private final ComparisonOptions options;
+    private final List<Stage> stages = new ArrayList<>();
+    private final BlockingQueue<JarTask> input;
+    private final BlockingQueue<JarTask> sinkQueue;
+    private final List<ComparisonResult> results = new ArrayList<>();
+    private final ComparisonListener listener;
+    private final CountDownLatch sinkFinished = new CountDownLatch(1);
+    private Thread sinkThread;
+    private long nextSequence;
+    private boolean started;
+
+    public ComparisonPipeline(JarComparator jarComparator, ComparisonOptions options) {
+        this(jarComparator, options, (ComparisonListener) null);
+    }
+
+    /**
+     * @param resultConsumer 每个JAR的结果确定后立即在汇总线程上按提交顺序回调
+     * @see #ComparisonPipeline(JarComparator, ComparisonOptions, ComparisonListener)
+     */
+    public ComparisonPipeline(JarComparator jarComparator, ComparisonOptions options, Consumer<ComparisonResult> resultConsumer) {
+        this(jarComparator, options, ComparisonListener.of(resultConsumer));
+    }
+
+    /**
+     * @param listener 每个JAR的结果确定后立即在汇总线程上按提交顺序通知（包括UNCHANGED的JAR），不为null时流水线不再保留结果列表，
+     *                 调用方可以边比较边输出，内存占用与JAR的总数无关；流水线不会调用 {@link ComparisonListener#onRunCompleted()}
+     */
+    public ComparisonPipeline(JarComparator jarComparator, ComparisonOptions options, ComparisonListener listener) {
+        this.jarComparator = jarComparator;
+        this.options = options;
+        this.listener = listener != null ? listener : ComparisonListener.of(results::add);
+
+        BlockingQueue<JarTask> hashToExtract = newQueue();
+        BlockingQueue<JarTask> extractToNormalize = newQueue();
+        BlockingQueue<JarTask> normalizeToDecompile = newQueue();
+        BlockingQueue<JarTask> decompileToDiff = newQueue();
+        this.input = newQueue();
+        this.sinkQueue = newQueue();
+
+        stages.add(new Stage("hash", options.getHashThreads(), input, hashToExtract, jarComparator::checkHash));
+        stages.add(new Stage("extract", options.getExtractThreads(), hashToExtract, extractToNormalize, jarComparator::extractEntries));
+        stages.add(new Stage("normalize", options.getNormalizeThreads(), extractToNormalize, normalizeToDecompile, jarComparator::normalizeClasses));
+        stages.add(new Stage("decompile", options.getDecompileThreads(), normalizeToDecompile, decompileToDiff, jarComparator::decompileClasses));
+        stages.add(new Stage("diff", options.getDiffThreads(), decompileToDiff, sinkQueue, jarComparator::diffClasses));
+    }
+
+    /**
+     * 启动所有阶段的工作线程。
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("流水线已经启动");
+        }
+        started = true;
+        for (Stage stage : stages) {
+            stage.start();
+        }
+        sinkThread = new Thread(this::runSink, "pipeline-sink");
+        sinkThread.setDaemon(true);
+        sinkThread.start();
+    }
+
+    /**
+     * 提交一对需要比较的JAR。队列满时会阻塞，从而对上游形成背压。
+     */
+    public void submit(String jarName, File oldJar, File newJar) throws InterruptedException {
+        notifyStarted(jarName, oldJar, newJar);
+        input.put(new JarTask(nextSequence(), jarName, oldJar, newJar));
+    }
+
+    /**
+     * 提交一个已经确定结果的JAR（如新增或删除），它会跳过所有处理阶段，但仍按提交顺序出现在结果中。
+     */
+    public void submitSettled(ComparisonResult result) throws InterruptedException {
+        JarTask task = new JarTask(nextSequence(), result.getJarName(), result.getOldJarFile(), result.getNewJarFile());
+        task.settle(result);
+        notifyStarted(result.getJarName(), result.getOldJarFile(), result.getNewJarFile());
+        input.put(task);
+    }
+
+    private void notifyStarted(String jarName, File oldJar, File newJar) {
+        try {
+            listener.onJarStarted(jarName, oldJar, newJar);
+        } catch (RuntimeException e) {
+            Log.error("通知 " + jarName + " 开始比较时发生异常: " + e);
+        }
+    }
+
+    /**
+     * 通知流水线不再有新的输入，等待所有任务处理完毕。
+     * @return 按提交顺序排列的、状态不是UNCHANGED的比较结果；指定了监听器时为空列表
+     */
+    public List<ComparisonResult> finish() throws InterruptedException {
+        input.put(POISON);
+        sinkFinished.await();
+        for (Stage stage : stages) {
+            stage.join();
+        }
+        sinkThread.join();
+        return results;
+    }
+
+    private synchronized long nextSequence() {
+        return nextSequence++;
+    }
+
+    private BlockingQueue<JarTask> newQueue() {
+        return new ArrayBlockingQueue<>(options.getQueueCapacity());
+    }
+
+    /**
+     * 汇总阶段：单线程运行，使用重排序缓冲区按提交序号依次输出结果。
+     */
+    private void runSink() {
+        Map<Long, JarTask> reorderBuffer = new HashMap<>();
+        long expected = 0;
+        try {
+            while (true) {
+                JarTask task = sinkQueue.take();
+                if (task == POISON) {
+                    break;
+                }
+                reorderBuffer.put(task.getSequence(), task);
+                JarTask ready;
+                while ((ready = reorderBuffer.remove(expected)) != null) {
+                    deliver(finishTask(ready));
+                    expected++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sinkFinished.countDown();
+        }
+    }
+
+    /**
+     * 汇总一个任务的结果。汇总（包括写入结果缓存）失败时按错误结果输出，汇总线程必须继续运行，
+     * 否则上游阶段会永远阻塞在已满的汇总队列上。
+     */
+    private ComparisonResult finishTask(JarTask task) {
+        try {
+            return jarComparator.finish(task);
+        } catch (Throwable t) {
+            Log.error("汇总 " + task.getJarName() + " 的比较结果时发生异常: " + t);
+            return errorResult(task, "汇总", t);
+        }
+    }
+
+    private void deliver(ComparisonResult result) {
+        try {
+            for (DiffDetail detail : result.getDiffDetails()) {
+                listener.onClassDiff(result, detail);
+            }
+            listener.onJarCompleted(result);
+        } catch (RuntimeException e) {
+            // 回调失败不能让汇总线程退出，否则后续的JAR会永远等在队列中
+            Log.error("处理 " + result.getJarName() + " 的比较结果时发生异常: " + e);
+        }
+    }
+
+    /**
+     * 一个流水线阶段：固定数量的工作线程从输入队列取任务，处理后放入输出队列。
+     */
+    private static final class Stage {
+        private final String name;
+        private final int workers;
+        private final BlockingQueue<JarTask> in;
+        private final BlockingQueue<JarTask> out;
+        private final Consumer<JarTask> action;
+        private final AtomicInteger activeWorkers;
+        private final List<Thread> threads = new ArrayList<>();
+
+        Stage(String name, int workers, BlockingQueue<JarTask> in, BlockingQueue<JarTask> out, Consumer<JarTask> action) {
+            this.name = name;
+            this.workers = workers;
+            this.in = in;
+            this.out = out;
+            this.action = action;
+            this.activeWorkers = new AtomicInteger(workers);
+        }
+
+        void start() {
+            for (int i = 0; i < workers; i++) {
+                Thread thread = new Thread(this::runWorker, "pipeline-" + name + "-" + i);
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        void join() throws InterruptedException {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        private void runWorker() {
+            try {
+                while (true) {
+                    JarTask task = in.take();
+                    if (task == POISON) {
+                        // 放回结束标记让同阶段的其它线程也能退出，最后一个退出的线程负责通知下游
+                        in.put(POISON);
+                        if (activeWorkers.decrementAndGet() == 0) {
+                            out.put(POISON);
+                        }
+                        return;
+                    }
+                    process(task);
+                    out.put(task);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 单个任务的异常不能中断整条流水线，否则汇总阶段会永远等待该任务。
+         */
+        private void process(JarTask task) {
+            try {
+                action.accept(task);
+            } catch (Throwable t) {
+                Log.error("阶段 " + name + " 处理 " + task.getJarName() + " 时发生异常: " + t);
+                task.settle(errorResult(task, name, t));
+            }
+        }
+    }
+
+    private static ComparisonResult errorResult(JarTask task, String stageName, Throwable t) {
+        StringWriter stackTrace = new StringWriter();
+        t.printStackTrace(new PrintWriter(stackTrace));
+        ComparisonResult errorResult = new ComparisonResult(task.getJarName(), task.getOldJar(), task.getNewJar(), ComparisonResult.Status.MODIFIED);
+        errorResult.addError("错误：在阶段 " + stageName + " 处理JAR包 " + task.getJarName() + " 时发生异常。", stackTrace.toString());
+        return errorResult;
+    }
+}
@@ -2,11 +2,14 @@ package org.example;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
  * 封装一对JAR文件比较结果的数据模型。
+ * 差异列表的写操作是线程安全的，同一个JAR内的多个类可以由不同线程并发地添加差异。
  */
 public class ComparisonResult {
 
@@ -29,6 +32,8 @@ public class ComparisonResult {
     private final File newJarFile;
     private final Status status;
     private final List<DiffDetail> diffDetails;
+    private byte[] oldJarHash;
+    private byte[] newJarHash;
 
     /**
      * 构造函数
@@ -48,9 +53,9 @@ public class ComparisonResult {
     /**
      * @param simpleDifference 一条简单的差异描述字符串
      */
-    public void addDifference(String simpleDifference) {
+    public synchronized void addDifference(String simpleDifference) {
         this.diffDetails.add(new DiffDetail(
-                "General Info", // 类名可以设为一个通用标签
+                DiffDetail.GENERAL_INFO, // 类名可以设为一个通用标签
                 DiffDetail.DiffType.LOGICAL_CHANGE,
                 Collections.singletonList(simpleDifference),
                 null,
@@ -58,14 +63,38 @@ public class ComparisonResult {
         ));
     }
 
+    /**
+     * 记录一个不属于具体类的处理错误（如JAR无法读取、流水线阶段异常），类型为 {@link DiffDetail.DiffType#ERROR}。
+     * @param messages 错误说明，通常是一句描述和异常堆栈
+     */
+    public synchronized void addError(String... messages) {
+        this.diffDetails.add(new DiffDetail(
+                DiffDetail.GENERAL_INFO,
+                DiffDetail.DiffType.ERROR,
+                Arrays.asList(messages),
+                null,
+                null
+        ));
+    }
+
     /**
      * 用于添加包含完整源码上下文的详细差异对象。
      * @param detail 一个完整的DiffDetail对象
      */
-    public void addDiffDetail(DiffDetail detail) {
+    public synchronized void addDiffDetail(DiffDetail detail) {
         this.diffDetails.add(detail);
     }
 
+    /**
+     * 将差异列表整理为稳定的顺序：通用信息保持原有的添加顺序排在前面，类级差异按类名排序。
+     * 并发添加差异后调用，保证输出与线程调度无关。
+     */
+    public synchronized void sortDiffDetails() {
+        this.diffDetails.sort(Comparator
+                .comparing((DiffDetail d) -> !DiffDetail.GENERAL_INFO.equals(d.getClassName()))
+                .thenComparing(d -> DiffDetail.GENERAL_INFO.equals(d.getClassName()) ? "" : d.getClassName()));
+    }
+
 
     public String getJarName() {
         return jarName;
@@ -83,12 +112,31 @@ public class ComparisonResult {
         return status;
     }
 
-    public List<DiffDetail> getDiffDetails() {
-        return diffDetails;
+    /**
+     * @return 旧JAR文件的SHA-256；新增、删除或哈希计算失败的JAR为null
+     */
+    public byte[] getOldJarHash() {
+        return oldJarHash;
+    }
+
+    /**
+     * @return 新JAR文件的SHA-256；新增、删除或哈希计算失败的JAR为null
+     */
+    public byte[] getNewJarHash() {
+        return newJarHash;
+    }
+
+    public void setJarHashes(byte[] oldJarHash, byte[] newJarHash) {
+        this.oldJarHash = oldJarHash;
+        this.newJarHash = newJarHash;
+    }
+
+    public synchronized List<DiffDetail> getDiffDetails() {
+        return Collections.unmodifiableList(new ArrayList<>(diffDetails));
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return "ComparisonResult{" +
                 "jarName='" + jarName + '\'' +
                 ", status=" + status +
@@ -100,7 +148,18 @@ public class ComparisonResult {
      * 判断此比较结果中是否包含任何类型的差异。
      * @return 如果差异列表不为空，则返回true
      */
-    public boolean hasDifferences() {
+    public synchronized boolean hasDifferences() {
         return !diffDetails.isEmpty();
     }
+
+    /**
+     * @return 指定类型的差异数量，用于报告中的统计
+     */
+    public synchronized int countDiffDetails(DiffDetail.DiffType type) {
+        int count = 0;
+        for (DiffDetail detail : diffDetails) {
+            if (detail.getType() == type) count++;
+        }
+        return count;
+    }
 }
\ No newline at end of file
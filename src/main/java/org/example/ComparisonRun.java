@@ -0,0 +1,168 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按一组命令行参数执行一次完整的比较：比较两个文件夹并输出所有请求的格式。
+ * 命令行模式和守护进程中的每个作业都通过它运行，区别只在于是否共用已预热的 {@link JarComparator}。
+ * 各种输出和门禁都作为 {@link ComparisonListener} 订阅比较过程，每个JAR完成后立即写出，结果随即可以释放。
+ */
+class ComparisonRun {
+
+    private final CommandLine line;
+    private final JarComparator jarComparator;
+    private final AtomicInteger completedJars = new AtomicInteger();
+    private final Map<String, Path> outputs = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * @param jarComparator 本次比较使用的JAR比较器，由调用方负责关闭
+     */
+    ComparisonRun(CommandLine line, JarComparator jarComparator) {
+        this.line = line;
+        this.jarComparator = jarComparator;
+    }
+
+    /**
+     * 执行比较。
+     * @param stdout JSONL输出到标准输出（{@code --jsonl-output -}）时使用的流
+     * @return 门禁退出码，见 {@link ComparisonGate}
+     */
+    int execute(PrintStream stdout) throws IOException, InterruptedException {
+        Log.info("准备比较以下文件夹:");
+        if (line.isTimeline()) {
+            for (int i = 0; i < line.getVersionDirs().size(); i++) {
+                Log.info("  版本" + (i + 1) + ": " + line.getVersionDirs().get(i).getAbsolutePath());
+            }
+        } else {
+            Log.info("  旧文件夹: " + line.getOldDir().getAbsolutePath());
+            Log.info("  新文件夹: " + line.getNewDir().getAbsolutePath());
+        }
+        Log.info("----------------------------------------");
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        boolean timeline = line.isTimeline();
+        // 监视模式下同一个JAR可能被比较多次，按JAR名保留最新的结果，报告和门禁在最后按最新结果生成
+        boolean watch = line.isWatch();
+        Map<String, ComparisonResult> latest = watch ? new LinkedHashMap<>() : null;
+        ComparisonGate gate = new ComparisonGate(line.getFailOn());
+        Files.createDirectories(line.getOutputDir());
+
+        ReportGenerator reportGenerator = new ReportGenerator();
+        String oldName = timeline ? null : line.getOldDir().getName();
+        String newName = timeline ? null : line.getNewDir().getName();
+        JsonlWriter jsonlWriter = null;
+        ReportGenerator.HtmlReport htmlReport = null;
+        ReportGenerator.ShardedReport shardedReport = null;
+        try {
+            if (line.getFormats().contains(CommandLine.Format.JSONL)) {
+                Writer writer;
+                if ("-".equals(line.getJsonlOutput())) {
+                    writer = new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8));
+                } else {
+                    Path jsonlPath = line.getJsonlOutput() != null
+                            ? Path.of(line.getJsonlOutput())
+                            : line.getOutputDir().resolve("jar_comparison_results_" + timestamp + ".jsonl");
+                    writer = Files.newBufferedWriter(jsonlPath, StandardCharsets.UTF_8);
+                    outputs.put("jsonl", jsonlPath.toAbsolutePath());
+                }
+                jsonlWriter = new JsonlWriter(writer, line.isJsonlHunks(), line.getFailOn());
+            }
+            // 时间线模式为每一对版本单独生成HTML报告，这里的报告只用于两个文件夹的比较
+            if (!timeline && line.getFormats().contains(CommandLine.Format.HTML)) {
+                htmlReport = reportGenerator.openReport(oldName, newName, line.getOutputDir());
+            }
+            if (!timeline && line.getFormats().contains(CommandLine.Format.SHARDED)) {
+                shardedReport = reportGenerator.openShardedReport(oldName, newName, line.getOutputDir());
+            }
+
+            ComparisonListener progress = new ComparisonListener() {
+                @Override
+                public void onJarCompleted(ComparisonResult result) {
+                    if (latest != null) {
+                        // 先前有差异、后来被改写为与旧版本相同的JAR同样以最新结果为准
+                        latest.put(result.getJarName(), result);
+                    }
+                    if (result.getStatus() != ComparisonResult.Status.UNCHANGED) {
+                        completedJars.incrementAndGet();
+                    }
+                }
+            };
+            ComparisonListener reports = ComparisonListener.of(gate, htmlReport, shardedReport);
+            if (timeline) {
+                Path history = new TimelineComparator(line.getVersionDirs(), line.getOptions(), line.isFirstToLast())
+                        .compare(line.getOutputDir(), ComparisonListener.of(gate, jsonlWriter, progress));
+                outputs.put("timeline_report", history.toAbsolutePath());
+            } else if (watch) {
+                new FolderWatcher(line.getOldDir(), line.getNewDir(), line.getOptions(), jarComparator,
+                        line.getWatchQuietMillis(), line.getWatchIdleSeconds() * 1000L).watch(ComparisonListener.of(jsonlWriter, progress));
+                latest.values().forEach(reports::onJarCompleted);
+                reports.onRunCompleted();
+            } else {
+                new FolderComparator(line.getOldDir(), line.getNewDir(), line.getOptions(), jarComparator)
+                        .compare(ComparisonListener.of(reports, jsonlWriter, progress));
+            }
+
+            if (htmlReport != null) {
+                Map<String, Path> htmlReports = htmlReport.getReports();
+                outputs.put("main_report", htmlReports.get("main_report").toAbsolutePath());
+                outputs.put("non_logical_report", htmlReports.get("non_logical_report").toAbsolutePath());
+            }
+            if (shardedReport != null) {
+                outputs.put("sharded_report", shardedReport.getIndex().toAbsolutePath());
+            }
+        } finally {
+            if (htmlReport != null) {
+                htmlReport.close();
+            }
+            if (shardedReport != null) {
+                shardedReport.close();
+            }
+            if (jsonlWriter != null) {
+                jsonlWriter.close();
+            }
+        }
+
+        writeProfile();
+        return gate.exitCode();
+    }
+
+    /**
+     * 报告生成之后写出性能统计，使报告渲染也计入其中。
+     */
+    private void writeProfile() throws IOException {
+        if (line.getProfileOutput() == null) {
+            return;
+        }
+        PerformanceProfiler.getInstance().write(line.getProfileOutput());
+        outputs.put("profile", line.getProfileOutput().toAbsolutePath());
+    }
+
+    /**
+     * @return 已经完成比较的JAR数量（不含未变更的JAR），比较进行中也可以查询
+     */
+    int getCompletedJars() {
+        return completedJars.get();
+    }
+
+    /**
+     * @return 输出名称到文件路径的映射，如 main_report、non_logical_report、sharded_report、timeline_report、jsonl、profile
+     */
+    Map<String, Path> getOutputs() {
+        synchronized (outputs) {
+            return new LinkedHashMap<>(outputs);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 依次通知多个监听器。一个监听器抛出的异常只记录日志，不影响其它监听器。
+ */
+final class CompositeListener implements ComparisonListener {
+
+    private final List<ComparisonListener> listeners = new ArrayList<>();
+
+    CompositeListener(List<ComparisonListener> listeners) {
+        listeners.stream().filter(Objects::nonNull).forEach(this.listeners::add);
+    }
+
+    @Override
+    public void onJarStarted(String jarName, File oldJar, File newJar) {
+        dispatch(jarName, listener -> listener.onJarStarted(jarName, oldJar, newJar));
+    }
+
+    @Override
+    public void onClassDiff(ComparisonResult result, DiffDetail detail) {
+        dispatch(result.getJarName(), listener -> listener.onClassDiff(result, detail));
+    }
+
+    @Override
+    public void onJarCompleted(ComparisonResult result) {
+        dispatch(result.getJarName(), listener -> listener.onJarCompleted(result));
+    }
+
+    @Override
+    public void onRunCompleted() {
+        dispatch(null, ComparisonListener::onRunCompleted);
+    }
+
+    private void dispatch(String jarName, Consumer<ComparisonListener> callback) {
+        for (ComparisonListener listener : listeners) {
+            try {
+                callback.accept(listener);
+            } catch (RuntimeException e) {
+                Log.error((jarName != null ? "处理 " + jarName + " 的比较结果时" : "比较结束时") + "监听器 "
+                        + listener.getClass().getName() + " 发生异常: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 守护进程的命令行客户端：提交作业、查询状态，以及等待作业结束。
+ */
+class DaemonClient {
+
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+    private static final Pattern STATE = Pattern.compile("\"state\":\"(\\w+)\"");
+    private static final Pattern EXIT_CODE = Pattern.compile("\"exitCode\":(\\d+)");
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    private final int port;
+
+    DaemonClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * 把作业参数提交给守护进程，相对路径按当前工作目录解析。
+     * @param wait 为true时轮询直到作业结束
+     * @return 进程退出码；等待时为作业的退出码
+     */
+    int submit(CommandLine line, boolean wait) throws IOException, InterruptedException {
+        String body = String.join("\n", line.getJobArguments());
+        Response response = request("POST", "/jobs", body);
+        System.out.println(response.body);
+        if (response.status != 202) {
+            return response.status == 400 ? Main.EXIT_USAGE : Main.EXIT_FAILURE;
+        }
+        if (!wait) {
+            return ComparisonGate.EXIT_OK;
+        }
+        Matcher id = ID.matcher(response.body);
+        if (!id.find()) {
+            throw new IOException("无法识别守护进程的响应: " + response.body);
+        }
+        return await(Long.parseLong(id.group(1)));
+    }
+
+    /**
+     * 打印作业的当前状态。
+     */
+    int status(long jobId) throws IOException {
+        Response response = request("GET", "/jobs/" + jobId, null);
+        System.out.println(response.body);
+        return response.status == 200 ? ComparisonGate.EXIT_OK : Main.EXIT_FAILURE;
+    }
+
+    private int await(long jobId) throws IOException, InterruptedException {
+        String lastState = null;
+        while (true) {
+            Response response = request("GET", "/jobs/" + jobId, null);
+            if (response.status != 200) {
+                System.err.println(response.body);
+                return Main.EXIT_FAILURE;
+            }
+            Matcher state = STATE.matcher(response.body);
+            String current = state.find() ? state.group(1) : "";
+            if (!current.equals(lastState)) {
+                System.err.println("作业 " + jobId + " 状态: " + current);
+                lastState = current;
+            }
+            if (current.equals(ComparisonDaemon.State.SUCCEEDED.name()) || current.equals(ComparisonDaemon.State.FAILED.name())) {
+                System.out.println(response.body);
+                Matcher exitCode = EXIT_CODE.matcher(response.body);
+                return exitCode.find() ? Integer.parseInt(exitCode.group(1)) : Main.EXIT_FAILURE;
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+        URL url = new URL("http", "127.0.0.1", port, path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setRequestProperty(ComparisonDaemon.WORKING_DIRECTORY_HEADER, Paths.get("").toAbsolutePath().toString());
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "text/plain; charset=UTF-8");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String responseBody = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            return new Response(status, responseBody);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
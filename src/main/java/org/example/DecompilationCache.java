@@ -0,0 +1,299 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 基于内容寻址的持久化反编译缓存。
+ * <p>
+ * 键由类字节码的SHA-256、反编译器版本和反编译选项共同决定，值为GZIP压缩后的源代码，每个条目一个文件。
+ * 写入时先写临时文件再原子重命名，因此多个线程或进程同时读取时不会看到半写的文件。
+ * 缓存总大小超过上限时按最近访问时间淘汰（LRU），访问时间通过文件修改时间在多次运行之间保留。
+ */
+public class DecompilationCache {
+
+    private static final String FILE_SUFFIX = ".java.gz";
+
+    private final Path directory;
+    private final long maxBytes;
+    /** 按访问顺序排列的索引：键 -> 文件大小，最久未访问的条目在最前面 */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    /** 可选的内存层：键 -> 源码，按访问顺序淘汰，供常驻进程在多次比较之间复用 */
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryMaxChars;
+    private long memoryChars;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param directory 缓存目录，不存在时会被创建
+     * @param maxBytes  缓存文件总大小上限（字节）
+     * @throws IOException 无法创建或扫描缓存目录
+     */
+    public DecompilationCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        loadIndex();
+    }
+
+    /**
+     * 根据类字节码哈希、反编译器版本和选项计算缓存键。
+     */
+    public static String key(byte[] classHash, String decompilerVersion, Map<String, Object> options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(classHash);
+            digest.update((byte) 0);
+            digest.update(decompilerVersion.getBytes(StandardCharsets.UTF_8));
+            options.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> digest.update(("\0" + e.getKey() + "=" + e.getValue()).getBytes(StandardCharsets.UTF_8)));
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JRE不支持SHA-256", e);
+        }
+    }
+
+    /**
+     * 查询缓存。
+     * @return 缓存的源代码；未命中或条目已损坏时返回null
+     */
+    public String get(String key) {
+        synchronized (this) {
+            String cached = memory.get(key);
+            if (cached != null) {
+                index.get(key);
+                hits.incrementAndGet();
+                memoryHits.incrementAndGet();
+                return cached;
+            }
+        }
+        Path file = fileFor(key);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            String source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            touch(key, file);
+            remember(key, source);
+            hits.incrementAndGet();
+            return source;
+        } catch (NoSuchFileException e) {
+            // 未命中，或已被其它进程淘汰
+        } catch (IOException e) {
+            Log.warn("警告: 反编译缓存条目已损坏，将被删除: " + file);
+            remove(key, file);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存。写入失败只打印警告，不影响比较流程。
+     */
+    public void put(String key, String source) {
+        remember(key, source);
+        Path file = fileFor(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                out.write(source.getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            record(key, Files.size(file));
+        } catch (IOException e) {
+            Log.warn("警告: 无法写入反编译缓存 " + file + ": " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // 临时文件残留不影响正确性
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置内存层的容量（按字符数计），为0时关闭内存层。一次性运行的进程不需要内存层，
+     * 常驻进程开启后，重复出现的类无需再读取和解压缓存文件。
+     */
+    public synchronized void setMemoryCapacity(long maxChars) {
+        if (maxChars < 0) {
+            throw new IllegalArgumentException("maxChars 不能为负数，当前值: " + maxChars);
+        }
+        this.memoryMaxChars = maxChars;
+        evictMemoryIfNeeded();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return 命中率，取值0~1；尚未查询过时返回0
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * 生成一行用于在运行结束时打印的统计信息。
+     */
+    public synchronized String describeStatistics() {
+        String statistics = String.format("反编译缓存: 命中 %d, 未命中 %d, 命中率 %.1f%%, 占用 %.1f MB / %.1f MB (%s)",
+                hits.get(), misses.get(), getHitRate() * 100,
+                totalBytes / 1048576.0, maxBytes / 1048576.0, directory.toAbsolutePath());
+        if (memoryMaxChars > 0) {
+            statistics += String.format("，内存层命中 %d, 条目 %d", memoryHits.get(), memory.size());
+        }
+        return statistics;
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + FILE_SUFFIX);
+    }
+
+    /**
+     * 扫描已有的缓存文件，按修改时间由旧到新建立LRU索引。
+     */
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path shard : shards) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(shard, "*" + FILE_SUFFIX)) {
+                    entries.forEach(files::add);
+                }
+            }
+        }
+        Map<Path, Long> modifiedTimes = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                modifiedTimes.put(file, Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException ignored) {
+                // 扫描期间被其它进程删除
+            }
+        }
+        synchronized (this) {
+            modifiedTimes.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue())
+                    .forEach(e -> {
+                        String fileName = e.getKey().getFileName().toString();
+                        String key = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+                        try {
+                            long size = Files.size(e.getKey());
+                            index.put(key, size);
+                            totalBytes += size;
+                        } catch (IOException ignored) {
+                            // 同上
+                        }
+                    });
+            evictIfNeeded();
+        }
+    }
+
+    private void touch(String key, Path file) {
+        synchronized (this) {
+            index.get(key);
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // 只影响下次运行时的淘汰顺序
+        }
+    }
+
+    private synchronized void record(String key, long size) {
+        Long previous = index.put(key, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        evictIfNeeded();
+    }
+
+    private synchronized void remember(String key, String source) {
+        if (memoryMaxChars == 0 || source.length() > memoryMaxChars) {
+            return;
+        }
+        String previous = memory.put(key, source);
+        memoryChars += source.length() - (previous != null ? previous.length() : 0);
+        evictMemoryIfNeeded();
+    }
+
+    private void evictMemoryIfNeeded() {
+        Iterator<Map.Entry<String, String>> iterator = memory.entrySet().iterator();
+        while (memoryChars > memoryMaxChars && iterator.hasNext()) {
+            memoryChars -= iterator.next().getValue().length();
+            iterator.remove();
+        }
+    }
+
+    private synchronized void remove(String key, Path file) {
+        String cached = memory.remove(key);
+        if (cached != null) {
+            memoryChars -= cached.length();
+        }
+        Long previous = index.remove(key);
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // 下次运行时会再次尝试
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(fileFor(eldest.getKey()));
+            } catch (IOException ignored) {
+                // 可能正被其它进程读取，下次运行时会再次尝试
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,305 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 反编译看门狗：为每次反编译施加时间和内存预算，避免单个病态（例如被混淆的）类拖住或拖垮整个运行。
+ * <p>
+ * 本进程内的批量反编译在看门狗线程上执行，超过时限（单类时限乘以类数）或内存耗尽时放弃该批，
+ * 由调用方把其中的类逐个交给 {@link #decompileIsolated(DecompilerBackend, ClassGroup)}。隔离反编译在可复用的子JVM
+ * （{@link DecompileWorker}）中进行，每个子进程的堆大小即单个类的内存上限；超时的子进程直接被杀掉并在下次需要时重新启动，
+ * 因此挂起或内存溢出只会损失这一个类。每个类的每一侧最多耗费两个单类时限（批量一次、隔离重试一次），整个运行的耗时因此有可预期的上限。
+ * <p>
+ * Fernflower不响应中断，超时的本进程反编译线程只能被放弃，它们是守护线程，不会阻止进程退出。
+ * 本进程内的线程数有固定上限，被放弃而仍在运行的线程达到 {@link #MAX_ABANDONED_THREADS} 后不再在本进程内反编译，
+ * 后续的批量反编译立即失败，由调用方转交隔离的工作进程，避免失控的线程在同一个JVM中越积越多。
+ */
+public class DecompileWatchdog implements Closeable {
+
+    /** 子JVM以 -XX:+ExitOnOutOfMemoryError 启动，内存溢出时以该退出码结束 */
+    private static final int OUT_OF_MEMORY_EXIT_CODE = 3;
+
+    /** 超时后仍在运行的本进程反编译线程达到该数量后，不再在本进程内反编译 */
+    static final int MAX_ABANDONED_THREADS = 4;
+
+    private final long timeoutMillis;
+    private final int workerHeapMegabytes;
+    private final Semaphore workerSlots;
+    private final BlockingQueue<Worker> idleWorkers = new LinkedBlockingQueue<>();
+    /** 本进程内反编译的线程许可，任务真正结束时才归还，被放弃的线程继续占用许可 */
+    private final Semaphore inProcessSlots;
+    private final ExecutorService inProcessExecutor;
+    /** 超时后被放弃、仍在运行的本进程反编译线程数 */
+    private final AtomicInteger abandonedThreads = new AtomicInteger();
+    private final ScheduledExecutorService killer = Executors.newSingleThreadScheduledExecutor(daemonThreads("decompile-worker-killer"));
+    private final boolean isolation;
+    private volatile boolean closed;
+
+    private final AtomicInteger timeouts = new AtomicInteger();
+    private final AtomicInteger outOfMemories = new AtomicInteger();
+    private final AtomicInteger isolatedClasses = new AtomicInteger();
+    private final AtomicInteger workerStarts = new AtomicInteger();
+
+    public DecompileWatchdog(ComparisonOptions options) {
+        this(options.getDecompileTimeoutMillis(), options.getDecompileWorkers(), options.getDecompileWorkerHeapMegabytes(),
+                options.getDecompileThreads() * options.getClassParallelism());
+    }
+
+    /**
+     * @param timeoutMillis       单个类反编译的时限
+     * @param workers             隔离工作进程的最大数量，为0时隔离反编译也在本进程内按单类时限进行
+     * @param workerHeapMegabytes 每个工作进程的最大堆
+     */
+    public DecompileWatchdog(long timeoutMillis, int workers, int workerHeapMegabytes) {
+        this(timeoutMillis, workers, workerHeapMegabytes, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param inProcessThreads 同时进行的本进程内反编译的最大数量，另有 {@link #MAX_ABANDONED_THREADS} 个线程留给被放弃的任务
+     */
+    public DecompileWatchdog(long timeoutMillis, int workers, int workerHeapMegabytes, int inProcessThreads) {
+        this.timeoutMillis = timeoutMillis;
+        this.workerHeapMegabytes = workerHeapMegabytes;
+        this.isolation = workers > 0;
+        this.workerSlots = new Semaphore(Math.max(1, workers));
+        int maxThreads = Math.max(1, inProcessThreads) + MAX_ABANDONED_THREADS;
+        this.inProcessSlots = new Semaphore(maxThreads);
+        // 许可保证提交时总有空闲线程，同步队列不会拒绝任务
+        this.inProcessExecutor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), daemonThreads("decompile-watchdog"));
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 在看门狗线程上执行一次本进程内的反编译。
+     *
+     * @param classCount  本次反编译的类数量，时限按单类时限累加
+     * @param description 出错时用于描述本次反编译的文字
+     * @throws DecompilationException 任务本身失败、超过时限或内存耗尽，或被放弃的线程已达上限
+     */
+    public <T> T runInProcess(Callable<T> task, int classCount, String description) throws DecompilationException {
+        if (abandonedThreads.get() >= MAX_ABANDONED_THREADS) {
+            throw new DecompilationException("本进程内已有 " + abandonedThreads.get() + " 个超时的反编译线程仍未结束，" + description + " 不再在本进程内进行");
+        }
+        try {
+            inProcessSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DecompilationException(description + " 时被中断", e);
+        }
+        // 0: 运行中, 1: 已结束, 2: 已被放弃
+        AtomicInteger state = new AtomicInteger();
+        Future<T> future;
+        try {
+            future = inProcessExecutor.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    inProcessSlots.release();
+                    if (!state.compareAndSet(0, 1)) {
+                        abandonedThreads.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProcessSlots.release();
+            throw new DecompilationException("看门狗已关闭，无法" + description, e);
+        }
+        long budget = timeoutMillis * Math.max(1, classCount);
+        try {
+            return future.get(budget, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.incrementAndGet();
+            if (state.compareAndSet(0, 2)) {
+                abandonedThreads.incrementAndGet();
+            }
+            throw new DecompilationException(description + " 超过时限 " + budget + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DecompilationException) {
+                throw (DecompilationException) cause;
+            }
+            if (cause instanceof OutOfMemoryError) {
+                outOfMemories.incrementAndGet();
+                throw new DecompilationException(description + " 时内存不足", cause);
+            }
+            throw new DecompilationException(description + " 时发生严重错误", cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            if (state.compareAndSet(0, 2)) {
+                abandonedThreads.incrementAndGet();
+            }
+            Thread.currentThread().interrupt();
+            throw new DecompilationException(description + " 时被中断", e);
+        }
+    }
+
+    /**
+     * 在隔离的工作进程中反编译一组类，工作进程数为0时退化为本进程内按单类时限反编译。
+     *
+     * @return 顶层类的源代码
+     * @throws DecompilationException 反编译失败、超时或超出内存上限，消息中说明原因
+     */
+    public String decompileIsolated(DecompilerBackend backend, ClassGroup group) throws DecompilationException {
+        isolatedClasses.incrementAndGet();
+        if (!isolation) {
+            return runInProcess(() -> new JarDecompiler().decompile(backend, group), 1, "反编译 " + group.getPrimaryEntry());
+        }
+        if (closed) {
+            throw new DecompilationException("看门狗已关闭，无法反编译 " + group.getPrimaryEntry());
+        }
+        try {
+            workerSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DecompilationException("等待反编译工作进程时被中断", e);
+        }
+        try {
+            Worker worker = idleWorkers.poll();
+            if (worker == null || !worker.process.isAlive()) {
+                worker = startWorker();
+            }
+            return exchange(worker, backend, group);
+        } catch (IOException e) {
+            throw new DecompilationException("无法启动反编译工作进程: " + e.getMessage(), e);
+        } finally {
+            workerSlots.release();
+        }
+    }
+
+    /**
+     * 把一组类发给工作进程并等待结果。到达时限时工作进程被杀掉，读取随之失败；
+     * 只有在时限内正常完成的工作进程才会放回空闲队列。
+     */
+    private String exchange(Worker worker, DecompilerBackend backend, ClassGroup group) throws DecompilationException {
+        ScheduledFuture<?> kill = killer.schedule(worker.process::destroyForcibly, timeoutMillis, TimeUnit.MILLISECONDS);
+        byte status;
+        String payload;
+        try {
+            DecompileWorker.writeString(worker.out, backend.getId());
+            DecompileWorker.writeGroup(worker.out, group);
+            worker.out.flush();
+            status = worker.in.readByte();
+            if (status != DecompileWorker.STATUS_OK && status != DecompileWorker.STATUS_FAILED) {
+                throw new IOException("无法识别的响应状态 " + status);
+            }
+            payload = DecompileWorker.readString(worker.in);
+        } catch (IOException e) {
+            boolean timedOut = !kill.cancel(false);
+            String reason = describeWorkerFailure(worker, group, timedOut);
+            worker.process.destroyForcibly();
+            throw new DecompilationException(reason, e);
+        }
+        if (kill.cancel(false) && !closed) {
+            idleWorkers.offer(worker);
+        } else {
+            worker.process.destroyForcibly();
+        }
+        if (status != DecompileWorker.STATUS_OK) {
+            throw new DecompilationException("工作进程反编译 " + group.getPrimaryEntry() + " 失败: " + payload);
+        }
+        return payload;
+    }
+
+    private String describeWorkerFailure(Worker worker, ClassGroup group, boolean timedOut) {
+        if (timedOut) {
+            timeouts.incrementAndGet();
+            return "隔离反编译 " + group.getPrimaryEntry() + " 超过时限 " + timeoutMillis + " ms，工作进程已被终止";
+        }
+        try {
+            if (worker.process.waitFor(5, TimeUnit.SECONDS) && worker.process.exitValue() == OUT_OF_MEMORY_EXIT_CODE) {
+                outOfMemories.incrementAndGet();
+                return "隔离反编译 " + group.getPrimaryEntry() + " 超出内存上限 " + workerHeapMegabytes + " MB，工作进程已退出";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "反编译工作进程在处理 " + group.getPrimaryEntry() + " 时异常退出";
+    }
+
+    private Worker startWorker() throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java,
+                "-Xmx" + workerHeapMegabytes + "m",
+                "-XX:+ExitOnOutOfMemoryError",
+                // JVM自身的输出（如内存溢出时的终止信息）默认写到标准输出，会破坏协议流
+                "-XX:+DisplayVMOutputToStderr",
+                "-Dfile.encoding=UTF-8",
+                "-cp", System.getProperty("java.class.path"),
+                DecompileWorker.class.getName());
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        workerStarts.incrementAndGet();
+        return new Worker(process);
+    }
+
+    public String describeStatistics() {
+        return String.format("反编译看门狗: 超时 %d, 内存不足 %d, 隔离反编译 %d 个类, 启动工作进程 %d 次, 仍在运行的超时线程 %d 个 (单类时限 %d ms, 工作进程堆 %d MB)",
+                timeouts.get(), outOfMemories.get(), isolatedClasses.get(), workerStarts.get(), abandonedThreads.get(), timeoutMillis, workerHeapMegabytes);
+    }
+
+    /**
+     * 结束所有空闲的工作进程；正在使用中的工作进程在当前请求完成后结束。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Worker worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            worker.process.destroy();
+        }
+        killer.shutdownNow();
+        inProcessExecutor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 一个工作进程及其协议流。
+     */
+    private static final class Worker {
+        private final Process process;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+
+        Worker(Process process) {
+            this.process = process;
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+    }
+}
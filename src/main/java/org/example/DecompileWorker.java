@@ -0,0 +1,101 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 隔离反编译工作进程的入口，由 {@link DecompileWatchdog} 以受限的堆大小启动并复用。
+ * <p>
+ * 通过标准输入输出交换带长度前缀的帧：请求是后端标识加一个 {@link ClassGroup}（顶层条目名、类数量、每个类的条目名与字节码），
+ * 响应是一个状态字节加一个字符串（源码或失败原因）。标准输入关闭时进程退出；
+ * Fernflower的日志和其他输出一律改写到标准错误，不会混入协议流。
+ */
+public class DecompileWorker {
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_FAILED = 1;
+
+    public static void main(String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        JarDecompiler decompiler = new JarDecompiler();
+
+        while (true) {
+            String backendId;
+            ClassGroup group;
+            try {
+                backendId = readString(in);
+                group = readGroup(in);
+            } catch (EOFException e) {
+                return;
+            }
+            try {
+                String source = decompiler.decompile(DecompilerBackends.get(backendId), group);
+                out.writeByte(STATUS_OK);
+                writeString(out, source);
+            } catch (DecompilationException e) {
+                out.writeByte(STATUS_FAILED);
+                writeString(out, e.getCause() != null ? e.getMessage() + ": " + e.getCause() : e.getMessage());
+            } catch (IllegalArgumentException e) {
+                out.writeByte(STATUS_FAILED);
+                writeString(out, e.getMessage());
+            } catch (RuntimeException e) {
+                // 后端的其他异常只影响这一组类，工作进程继续服务后续请求
+                out.writeByte(STATUS_FAILED);
+                writeString(out, e.toString());
+            }
+            out.flush();
+        }
+    }
+
+    static void writeGroup(DataOutputStream out, ClassGroup group) throws IOException {
+        writeString(out, group.getPrimaryEntry());
+        out.writeInt(group.getClasses().size());
+        for (Map.Entry<String, byte[]> entry : group.getClasses().entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+    }
+
+    static ClassGroup readGroup(DataInputStream in) throws IOException {
+        ClassGroup group = new ClassGroup(readString(in));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String entryName = readString(in);
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            group.add(entryName, bytes, null);
+        }
+        return group;
+    }
+
+    /**
+     * 字符串以4字节长度加UTF-8编码写出，不受 {@link DataOutputStream#writeUTF} 的64KB限制。
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("帧长度无效: " + length);
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
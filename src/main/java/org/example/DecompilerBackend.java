@@ -0,0 +1,37 @@
+package org.example;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 反编译后端：把字节码转换为用于比对的文本。
+ * <p>
+ * 实现通过 {@link java.util.ServiceLoader} 加载（见 META-INF/services/org.example.DecompilerBackend），
+ * 必须是无状态、线程安全的，并提供公共的无参构造函数。后端的标识、版本和选项都参与反编译缓存键的计算，
+ * 同一份字节码在不同后端下的结果互不混用。
+ */
+public interface DecompilerBackend {
+
+    /**
+     * @return 后端的标识，用于命令行选择，eg: "fernflower"
+     */
+    String getId();
+
+    /**
+     * @return 后端实现的版本，输出随版本变化时必须随之变化
+     */
+    String getVersion();
+
+    /**
+     * @return 影响输出的选项
+     */
+    Map<String, Object> getOptions();
+
+    /**
+     * 在同一个上下文中处理多组类。
+     *
+     * @return 顶层类条目名 -> 文本；未能得到结果的分组不在结果中，调用方可对其单独重试
+     * @throws DecompilationException 整体失败
+     */
+    Map<String, String> decompile(List<ClassGroup> groups) throws DecompilationException;
+}
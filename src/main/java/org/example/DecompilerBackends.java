@@ -0,0 +1,60 @@
+package org.example;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * 通过 {@link ServiceLoader} 发现的所有反编译后端，按标识查找。
+ */
+public final class DecompilerBackends {
+
+    /** 未指定后端时使用的完整反编译 */
+    public static final String DEFAULT = FernflowerBackend.ID;
+
+    private static final Map<String, DecompilerBackend> BACKENDS = load();
+
+    private DecompilerBackends() {
+    }
+
+    private static Map<String, DecompilerBackend> load() {
+        Map<String, DecompilerBackend> backends = new LinkedHashMap<>();
+        for (DecompilerBackend backend : ServiceLoader.load(DecompilerBackend.class, DecompilerBackends.class.getClassLoader())) {
+            backends.putIfAbsent(backend.getId(), backend);
+        }
+        return Collections.unmodifiableMap(backends);
+    }
+
+    /**
+     * @throws IllegalArgumentException 没有该标识的后端
+     */
+    public static DecompilerBackend get(String id) {
+        DecompilerBackend backend = BACKENDS.get(id);
+        if (backend == null) {
+            throw new IllegalArgumentException("未知的反编译后端: " + id + "，可用的后端: " + String.join(", ", BACKENDS.keySet()));
+        }
+        return backend;
+    }
+
+    public static DecompilerBackend getDefault() {
+        return get(DEFAULT);
+    }
+
+    public static Collection<DecompilerBackend> all() {
+        return BACKENDS.values();
+    }
+
+    /**
+     * @return 所有后端的标识与版本，用作比较结果缓存键的一部分
+     */
+    static String describeVersions() {
+        StringBuilder sb = new StringBuilder();
+        for (DecompilerBackend backend : BACKENDS.values()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(backend.getId()).append('=').append(backend.getVersion());
+        }
+        return sb.toString();
+    }
+}
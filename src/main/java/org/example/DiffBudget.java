@@ -0,0 +1,41 @@
+package org.example;
+
+/**
+ * 单个类源码比对的预算。超出预算的比对会退化为粗粒度的行差异，而不是拖慢整个运行。
+ */
+public class DiffBudget {
+
+    private final int maxLines;
+    private final long timeoutMillis;
+    private final int maxRefineLineLength;
+
+    /**
+     * @param maxLines            新旧两侧合计允许进行精确行比对的最大行数
+     * @param timeoutMillis       精确行比对与行内细化合计允许的最长耗时（毫秒）
+     * @param maxRefineLineLength 参与字符级细化的单行最大长度，更长的行整体高亮
+     */
+    public DiffBudget(int maxLines, long timeoutMillis, int maxRefineLineLength) {
+        this.maxLines = maxLines;
+        this.timeoutMillis = timeoutMillis;
+        this.maxRefineLineLength = maxRefineLineLength;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getMaxRefineLineLength() {
+        return maxRefineLineLength;
+    }
+
+    /**
+     * @return 从现在开始计算的截止时间，与 {@link System#nanoTime()} 可比
+     */
+    long deadline() {
+        return System.nanoTime() + timeoutMillis * 1_000_000L;
+    }
+}
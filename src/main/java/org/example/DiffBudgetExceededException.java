@@ -0,0 +1,13 @@
+package org.example;
+
+/**
+ * 源码比对超出了 {@link DiffBudget} 规定的规模或耗时。
+ */
+public class DiffBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DiffBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,6 @@
 package org.example;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -7,6 +8,9 @@ import java.util.List;
  */
 public class DiffDetail {
 
+    /** 非类级别的通用差异描述（如新增/删除的类）所使用的类名标签 */
+    public static final String GENERAL_INFO = "General Info";
+
     public enum DiffType {
         /** 真正的代码逻辑变更 */
         LOGICAL_CHANGE,
@@ -19,24 +23,76 @@ public class DiffDetail {
     private final String className;
     private final DiffType type;
     private final List<String> diffContent;
-    private final String oldSource;
-
-    private final String newSource;
+    private final SourceRef oldSource;
+    private final SourceRef newSource;
+    private final List<MemberChange> changedMembers;
+    private final List<DiffHunk> hunks;
+    private final byte[] oldHash;
+    private final byte[] newHash;
 
+    /**
+     * @return 旧版本源码；写入段文件的源码每次调用都会重新读取，调用方不应长期持有返回值
+     */
     public String getOldSource() {
-        return oldSource;
+        return oldSource != null ? oldSource.get() : null;
     }
 
     public String getNewSource() {
-        return newSource;
+        return newSource != null ? newSource.get() : null;
+    }
+
+    /**
+     * @return 是否带有源码（未经反编译即可判定的差异没有源码）
+     */
+    public boolean hasSources() {
+        return oldSource != null || newSource != null;
     }
 
     public DiffDetail(String className, DiffType type, List<String> diffContent, String oldSource, String newSource) {
+        this(className, type, diffContent, oldSource, newSource, Collections.emptyList());
+    }
+
+    /**
+     * @param changedMembers 字节码分析识别出的成员级变更，未进行分析时为空列表
+     */
+    public DiffDetail(String className, DiffType type, List<String> diffContent, String oldSource, String newSource,
+                      List<MemberChange> changedMembers) {
+        this(className, type, diffContent, oldSource, newSource, changedMembers, Collections.emptyList());
+    }
+
+    /**
+     * @param changedMembers 字节码分析识别出的成员级变更，未进行分析时为空列表
+     * @param hunks          源码比对得到的差异区间，未进行源码比对时为空列表
+     */
+    public DiffDetail(String className, DiffType type, List<String> diffContent, String oldSource, String newSource,
+                      List<MemberChange> changedMembers, List<DiffHunk> hunks) {
+        this(className, type, diffContent, SourceRef.inline(oldSource), SourceRef.inline(newSource), changedMembers, hunks);
+    }
+
+    /**
+     * @param oldSource 旧版本源码的引用，可以来自 {@link SourceStore}
+     * @param newSource 新版本源码的引用，可以来自 {@link SourceStore}
+     */
+    public DiffDetail(String className, DiffType type, List<String> diffContent, SourceRef oldSource, SourceRef newSource,
+                      List<MemberChange> changedMembers, List<DiffHunk> hunks) {
+        this(className, type, diffContent, oldSource, newSource, changedMembers, hunks, null, null);
+    }
+
+    /**
+     * @param oldHash 旧版本类组的内容哈希（见 {@link ClassGroup#getContentHash()}），未知时为null
+     * @param newHash 新版本类组的内容哈希，未知时为null
+     */
+    public DiffDetail(String className, DiffType type, List<String> diffContent, SourceRef oldSource, SourceRef newSource,
+                      List<MemberChange> changedMembers, List<DiffHunk> hunks, byte[] oldHash, byte[] newHash) {
         this.className = className;
         this.type = type;
         this.diffContent = diffContent;
         this.oldSource = oldSource;
         this.newSource = newSource;
+        this.changedMembers = changedMembers;
+        this.hunks = hunks;
+        this.oldHash = oldHash;
+        this.newHash = newHash;
     }
 
     public String getClassName() {
@@ -50,4 +106,26 @@ public class DiffDetail {
     public List<String> getDiffContent() {
         return diffContent;
     }
+
+    public List<MemberChange> getChangedMembers() {
+        return changedMembers;
+    }
+
+    public List<DiffHunk> getHunks() {
+        return hunks;
+    }
+
+    /**
+     * @return 旧版本的顶层类及其内部类整组字节码的SHA-256，通用信息或未知时为null
+     */
+    public byte[] getOldHash() {
+        return oldHash;
+    }
+
+    /**
+     * @return 新版本的顶层类及其内部类整组字节码的SHA-256，通用信息或未知时为null
+     */
+    public byte[] getNewHash() {
+        return newHash;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package org.example;
+
+import java.util.List;
+
+/**
+ * 行级差异算法。实现必须是线程安全的，同一个实例会被多个比对线程共享。
+ */
+public interface DiffEngine {
+
+    /**
+     * 比较两组源码行。
+     *
+     * @param oldLines 旧源码的行
+     * @param newLines 新源码的行
+     * @param budget   本次比较可用的预算
+     * @return 覆盖两侧全部行、按位置排列的编辑操作，相邻的EQUAL操作之间至少隔着一个非EQUAL操作
+     * @throws DiffBudgetExceededException 输入规模或耗时超出预算
+     */
+    List<LineEdit> diff(List<String> oldLines, List<String> newLines, DiffBudget budget);
+}
@@ -0,0 +1,114 @@
+package org.example;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一段连续的源码差异：旧源码的一段行区间被替换为新源码的一段行区间，以及被替换行对内部的字符级高亮区间。
+ * 行号从0开始，区间为左闭右开。在比对阶段计算一次，报告直接据此渲染。
+ */
+public class DiffHunk {
+
+    /**
+     * 某一行内需要高亮的字符区间，[start, end)。
+     */
+    public static final class Span {
+        private final int line;
+        private final int start;
+        private final int end;
+
+        public Span(int line, int start, int end) {
+            this.line = line;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return 所在行号（从0开始）
+         */
+        public int getLine() {
+            return line;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    private final LineEdit.Type type;
+    private final int oldStart;
+    private final int oldEnd;
+    private final int newStart;
+    private final int newEnd;
+    private final int refinedPairs;
+    private final List<Span> oldSpans;
+    private final List<Span> newSpans;
+
+    /**
+     * @param refinedPairs 从区间开头起做过字符级细化的行对数量，这些行对按高亮区间渲染，其余行整行渲染
+     * @param oldSpans     旧侧行内的高亮区间，按行号和位置排列
+     * @param newSpans     新侧行内的高亮区间，按行号和位置排列
+     */
+    public DiffHunk(LineEdit.Type type, int oldStart, int oldEnd, int newStart, int newEnd,
+                    int refinedPairs, List<Span> oldSpans, List<Span> newSpans) {
+        this.type = type;
+        this.oldStart = oldStart;
+        this.oldEnd = oldEnd;
+        this.newStart = newStart;
+        this.newEnd = newEnd;
+        this.refinedPairs = refinedPairs;
+        this.oldSpans = oldSpans;
+        this.newSpans = newSpans;
+    }
+
+    /**
+     * 创建不含字符级细化的差异区间。
+     */
+    public static DiffHunk of(LineEdit edit) {
+        return new DiffHunk(edit.getType(), edit.getOldStart(), edit.getOldEnd(), edit.getNewStart(), edit.getNewEnd(),
+                0, Collections.emptyList(), Collections.emptyList());
+    }
+
+    public LineEdit.Type getType() {
+        return type;
+    }
+
+    public int getOldStart() {
+        return oldStart;
+    }
+
+    public int getOldEnd() {
+        return oldEnd;
+    }
+
+    public int getNewStart() {
+        return newStart;
+    }
+
+    public int getNewEnd() {
+        return newEnd;
+    }
+
+    public int getRefinedPairs() {
+        return refinedPairs;
+    }
+
+    public List<Span> getOldSpans() {
+        return oldSpans;
+    }
+
+    public List<Span> getNewSpans() {
+        return newSpans;
+    }
+
+    /**
+     * @return 统一差异格式的区间头，行号从1开始，eg: "@@ -12,3 +12,4 @@"
+     */
+    public String header() {
+        return "@@ -" + (oldStart + 1) + "," + (oldEnd - oldStart) + " +" + (newStart + 1) + "," + (newEnd - newStart) + " @@";
+    }
+}
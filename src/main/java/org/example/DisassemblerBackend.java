@@ -0,0 +1,178 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 轻量的类文件反汇编后端，输出类似 javap -c 的文本，用于大批量变更的初步筛查。
+ * <p>
+ * 只解析类文件并逐条列出指令，不做控制流和类型还原，代价比完整反编译低一个数量级。
+ * 跳转目标以指令序号（L0、L1…）表示，常量池引用直接展开为内容，调试属性不输出，
+ * 因此常量池重排、ldc/ldc_w互换和行号变化都不会产生差异。一组类中的内部类按条目名顺序依次列在顶层类之后。
+ */
+public class DisassemblerBackend implements DecompilerBackend {
+
+    public static final String ID = "disassembler";
+
+    /** 输出格式的版本，格式变化时递增以使旧的缓存失效 */
+    private static final String VERSION = "1";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public String getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Map<String, Object> getOptions() {
+        return Map.of();
+    }
+
+    @Override
+    public Map<String, String> decompile(List<ClassGroup> groups) throws DecompilationException {
+        Map<String, String> sources = new HashMap<>();
+        for (ClassGroup group : groups) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, byte[]> entry : group.getClasses().entrySet()) {
+                try {
+                    disassemble(ClassFile.parse(entry.getValue()), sb);
+                } catch (RuntimeException e) {
+                    throw new DecompilationException("反汇编 " + entry.getKey() + " 失败", e);
+                }
+                sb.append('\n');
+            }
+            sources.put(group.getPrimaryEntry(), sb.toString());
+        }
+        return sources;
+    }
+
+    private void disassemble(ClassFile cf, StringBuilder sb) {
+        sb.append(String.format("// class version %d.%d, flags 0x%04x\n", cf.getMajorVersion(), cf.getMinorVersion(), cf.getAccessFlags()));
+        sb.append("class ").append(cf.getThisClass());
+        if (cf.getSuperClass() != null) {
+            sb.append(" extends ").append(cf.getSuperClass());
+        }
+        if (!cf.getInterfaces().isEmpty()) {
+            sb.append(" implements ").append(String.join(", ", cf.getInterfaces()));
+        }
+        sb.append(" {\n");
+        for (ClassFile.Member field : cf.getFields()) {
+            sb.append(String.format("  field %s:%s // flags 0x%04x\n", field.getName(), field.getDescriptor(), field.getAccessFlags()));
+        }
+        for (ClassFile.Member method : cf.getMethods()) {
+            sb.append('\n');
+            sb.append(String.format("  method %s%s // flags 0x%04x\n", method.getName(), method.getDescriptor(), method.getAccessFlags()));
+            ClassFile.Code code = method.getCode();
+            if (code != null) {
+                code(cf, code, sb);
+            }
+        }
+        sb.append("}\n");
+    }
+
+    private void code(ClassFile cf, ClassFile.Code code, StringBuilder sb) {
+        byte[] bytecode = code.getCode();
+        int[] indexAt = new int[bytecode.length + 1];
+        Arrays.fill(indexAt, -1);
+        int instructionCount = 0;
+        for (int offset = 0; offset < bytecode.length; offset += Opcodes.length(bytecode, offset)) {
+            indexAt[offset] = instructionCount++;
+        }
+        indexAt[bytecode.length] = instructionCount;
+
+        sb.append(String.format("    // stack %d, locals %d\n", code.getMaxStack(), code.getMaxLocals()));
+        for (int offset = 0; offset < bytecode.length; offset += Opcodes.length(bytecode, offset)) {
+            int opcode = bytecode[offset] & 0xFF;
+            sb.append("    L").append(indexAt[offset]).append(": ");
+            switch (Opcodes.kind(opcode)) {
+                case Opcodes.KIND_CP1:
+                    sb.append("ldc ").append(cf.resolve(bytecode[offset + 1] & 0xFF));
+                    break;
+                case Opcodes.KIND_CP2:
+                    sb.append(opcode == Opcodes.LDC_W ? "ldc" : Opcodes.name(opcode)).append(' ')
+                            .append(cf.resolve(Opcodes.readUnsignedShort(bytecode, offset + 1)));
+                    if (opcode == 0xc5) {
+                        // multianewarray的维数
+                        sb.append(" dim ").append(bytecode[offset + 3] & 0xFF);
+                    }
+                    break;
+                case Opcodes.KIND_BRANCH2:
+                    sb.append(Opcodes.name(opcode)).append(" L").append(label(indexAt, offset + Opcodes.readShort(bytecode, offset + 1)));
+                    break;
+                case Opcodes.KIND_BRANCH4:
+                    sb.append(opcode == Opcodes.GOTO_W ? "goto" : "jsr").append(" L").append(label(indexAt, offset + Opcodes.readInt(bytecode, offset + 1)));
+                    break;
+                case Opcodes.KIND_TABLESWITCH: {
+                    int base = Opcodes.switchBase(offset);
+                    int low = Opcodes.readInt(bytecode, base + 4);
+                    int high = Opcodes.readInt(bytecode, base + 8);
+                    sb.append("tableswitch");
+                    for (int i = 0; i <= high - low; i++) {
+                        sb.append(' ').append(low + i).append(":L").append(label(indexAt, offset + Opcodes.readInt(bytecode, base + 12 + i * 4)));
+                    }
+                    sb.append(" default:L").append(label(indexAt, offset + Opcodes.readInt(bytecode, base)));
+                    break;
+                }
+                case Opcodes.KIND_LOOKUPSWITCH: {
+                    int base = Opcodes.switchBase(offset);
+                    int pairs = Opcodes.readInt(bytecode, base + 4);
+                    sb.append("lookupswitch");
+                    for (int i = 0; i < pairs; i++) {
+                        sb.append(' ').append(Opcodes.readInt(bytecode, base + 8 + i * 8))
+                                .append(":L").append(label(indexAt, offset + Opcodes.readInt(bytecode, base + 12 + i * 8)));
+                    }
+                    sb.append(" default:L").append(label(indexAt, offset + Opcodes.readInt(bytecode, base)));
+                    break;
+                }
+                case Opcodes.KIND_WIDE: {
+                    int widened = bytecode[offset + 1] & 0xFF;
+                    sb.append(Opcodes.name(widened)).append(' ').append(Opcodes.readUnsignedShort(bytecode, offset + 2));
+                    if (widened == Opcodes.IINC) {
+                        sb.append(' ').append(Opcodes.readShort(bytecode, offset + 4));
+                    }
+                    break;
+                }
+                default:
+                    sb.append(Opcodes.name(opcode));
+                    plainOperands(bytecode, offset, opcode, sb);
+                    break;
+            }
+            sb.append('\n');
+        }
+        for (int[] handler : code.getExceptionTable()) {
+            sb.append(String.format("    try L%d-L%d catch %s -> L%d\n", label(indexAt, handler[0]), label(indexAt, handler[1]),
+                    handler[3] == 0 ? "any" : cf.resolve(handler[3]), label(indexAt, handler[2])));
+        }
+    }
+
+    private static void plainOperands(byte[] bytecode, int offset, int opcode, StringBuilder sb) {
+        int length = Opcodes.length(bytecode, offset);
+        if (opcode == 0x10) {
+            // bipush
+            sb.append(' ').append(bytecode[offset + 1]);
+        } else if (opcode == 0x11) {
+            // sipush
+            sb.append(' ').append(Opcodes.readShort(bytecode, offset + 1));
+        } else if (opcode == Opcodes.IINC) {
+            sb.append(' ').append(bytecode[offset + 1] & 0xFF).append(' ').append(bytecode[offset + 2]);
+        } else {
+            // 局部变量序号、newarray的元素类型等无符号单字节立即数
+            for (int i = 1; i < length; i++) {
+                sb.append(' ').append(bytecode[offset + i] & 0xFF);
+            }
+        }
+    }
+
+    private static int label(int[] indexAt, int offset) {
+        if (offset < 0 || offset >= indexAt.length || indexAt[offset] < 0) {
+            throw new IllegalArgumentException("跳转目标不在指令边界上: " + offset);
+        }
+        return indexAt[offset];
+    }
+}
@@ -0,0 +1,255 @@
+package org.example;
+
+import org.jetbrains.java.decompiler.main.extern.IBytecodeProvider;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+import org.jetbrains.java.decompiler.main.Fernflower; // 导入核心反编译器类
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+/**
+ * 基于JetBrains Fernflower的完整反编译后端，采用内存操作，直接与Fernflower核心API交互。
+ * 每次调用都使用独立的Fernflower上下文，不持有可变状态，因此可以被多个线程并发调用。
+ */
+public class FernflowerBackend implements DecompilerBackend {
+
+    public static final String ID = "fernflower";
+
+    /** Fernflower的反编译选项，同时参与缓存键的计算 */
+    private static final Map<String, Object> OPTIONS;
+
+    static {
+        Map<String, Object> options = new HashMap<>();
+        options.put("dgs", "1");
+        options.put("asc", "1");
+        OPTIONS = Collections.unmodifiableMap(options);
+    }
+
+    /** 反编译引擎的版本号，同时参与缓存键的计算 */
+    private static final String FERNFLOWER_VERSION = detectFernflowerVersion();
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public String getVersion() {
+        return FERNFLOWER_VERSION;
+    }
+
+    @Override
+    public Map<String, Object> getOptions() {
+        return OPTIONS;
+    }
+
+    @Override
+    public Map<String, String> decompile(List<ClassGroup> groups) throws DecompilationException {
+        try {
+            Map<String, String> sources = new HashMap<>();
+            for (List<ClassGroup> round : partitionByClassName(groups)) {
+                sources.putAll(decompileContext(round));
+            }
+            return sources;
+        } catch (Exception e) {
+            throw new DecompilationException("批量反编译 " + groups.size() + " 组类时发生严重错误，首个类: " + groups.get(0).getPrimaryEntry(), e);
+        }
+    }
+
+    /**
+     * 在一个Fernflower上下文中反编译一批类，这批类的类名互不相同。
+     *
+     * @return 顶层类的条目名 -> 源代码
+     */
+    private Map<String, String> decompileContext(List<ClassGroup> groups) {
+        // IBytecodeProvider: 从内存中提供字节码，按addSource时使用的文件绝对路径查找
+        Map<String, byte[]> bytecodeByPath = new HashMap<>();
+        // Fernflower按类的内部名保存结果，而条目名可能带有 BOOT-INF/classes/、META-INF/versions/N/ 等前缀，需要映射回条目名
+        Map<String, String> entryByClassName = new HashMap<>();
+        for (ClassGroup group : groups) {
+            for (Map.Entry<String, byte[]> entry : group.getClasses().entrySet()) {
+                bytecodeByPath.put(new File(entry.getKey()).getAbsolutePath(), entry.getValue());
+            }
+            entryByClassName.put(className(group.getPrimaryEntry(), group.getClasses().get(group.getPrimaryEntry())),
+                    group.getPrimaryEntry());
+        }
+        IBytecodeProvider bytecodeProvider = (externalPath, internalPath) -> {
+            byte[] bytes = bytecodeByPath.get(externalPath);
+            if (bytes == null) {
+                throw new IOException("未找到字节码: " + externalPath);
+            }
+            return bytes;
+        };
+        // 反编译结果保存在内存中
+        InMemoryResultSaver resultSaver = new InMemoryResultSaver(entryByClassName);
+        // 创建并配置核心反编译器 Fernflower
+        Fernflower fernflower = new Fernflower(bytecodeProvider, resultSaver, OPTIONS, new LogAdapter());
+
+        // 将需要反编译的“源”添加到反编译器上下文中
+        for (ClassGroup group : groups) {
+            for (String entryName : group.getClasses().keySet()) {
+                fernflower.addSource(new File(entryName));
+            }
+        }
+
+        // 执行反编译
+        try {
+            fernflower.decompileContext();
+        } finally {
+            fernflower.clearContext();
+        }
+
+        // 从内存中获取结果
+        return resultSaver.getSources();
+    }
+
+    /**
+     * 把一批类分成若干轮，每轮内的类名互不相同。
+     * 多版本JAR中同一个类的基础版本和 META-INF/versions/N/ 下的版本类名相同，放进同一个上下文会相互覆盖。
+     */
+    private static List<List<ClassGroup>> partitionByClassName(List<ClassGroup> groups) {
+        List<List<ClassGroup>> rounds = new ArrayList<>();
+        List<Set<String>> namesByRound = new ArrayList<>();
+        for (ClassGroup group : groups) {
+            Set<String> names = new HashSet<>();
+            for (Map.Entry<String, byte[]> entry : group.getClasses().entrySet()) {
+                names.add(className(entry.getKey(), entry.getValue()));
+            }
+            int round = 0;
+            while (round < rounds.size() && !Collections.disjoint(namesByRound.get(round), names)) {
+                round++;
+            }
+            if (round == rounds.size()) {
+                rounds.add(new ArrayList<>());
+                namesByRound.add(new HashSet<>());
+            }
+            rounds.get(round).add(group);
+            namesByRound.get(round).addAll(names);
+        }
+        return rounds;
+    }
+
+    /**
+     * @return 类的内部名，eg: "com/example/MyClass"；字节码无法解析时退回到去掉 .class 后缀的条目名
+     */
+    private static String className(String entryName, byte[] classBytes) {
+        try {
+            return ClassFile.parse(classBytes).getThisClass();
+        } catch (IllegalArgumentException e) {
+            return entryName.endsWith(".class") ? entryName.substring(0, entryName.length() - ".class".length()) : entryName;
+        }
+    }
+
+    /**
+     * 从反编译引擎JAR中打包的Maven元数据读取版本号，打包为fat-jar后该文件依然保留。
+     */
+    private static String detectFernflowerVersion() {
+        String resource = "META-INF/maven/com.jetbrains.intellij.java/java-decompiler-engine/pom.properties";
+        try (InputStream in = Fernflower.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                String version = properties.getProperty("version");
+                if (version != null) {
+                    return version;
+                }
+            }
+        } catch (IOException ignored) {
+            // 使用下面的兜底值
+        }
+        String implementationVersion = Fernflower.class.getPackage().getImplementationVersion();
+        return implementationVersion != null ? implementationVersion : "unknown";
+    }
+
+    /**
+     * 把Fernflower的日志转交给 {@link Log}：逐类的进度（TRACE、INFO）降为DEBUG，默认不输出，警告和错误保持原级别。
+     */
+    private static class LogAdapter extends IFernflowerLogger {
+
+        @Override
+        public void writeMessage(String message, Severity severity) {
+            writeMessage(message, severity, null);
+        }
+
+        @Override
+        public void writeMessage(String message, Severity severity, Throwable t) {
+            Log.Level level = toLevel(severity);
+            if (Log.isEnabled(level)) {
+                Log.log(level, "Fernflower: " + message, t);
+            }
+        }
+
+        private static Log.Level toLevel(Severity severity) {
+            switch (severity) {
+                case ERROR:
+                    return Log.Level.ERROR;
+                case WARN:
+                    return Log.Level.WARN;
+                default:
+                    return Log.Level.DEBUG;
+            }
+        }
+    }
+
+    /**
+     * IResultSaver的内存实现，用于捕获反编译后的源代码。
+     * 一个上下文中会保存多个类，按类的内部名查出对应的条目名作为键。
+     */
+    private static class InMemoryResultSaver implements IResultSaver {
+        private final Map<String, String> entryByClassName;
+        private final Map<String, String> sources = new HashMap<>();
+
+        InMemoryResultSaver(Map<String, String> entryByClassName) {
+            this.entryByClassName = entryByClassName;
+        }
+
+        @Override
+        public void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping) {
+            save(qualifiedName, content);
+        }
+
+        public Map<String, String> getSources() {
+            return sources;
+        }
+
+        private void save(String qualifiedName, String content) {
+            if (qualifiedName != null && content != null) {
+                sources.put(entryByClassName.getOrDefault(qualifiedName, qualifiedName + ".class"), content);
+            }
+        }
+
+        @Override
+        public void saveFolder(String path) { }
+
+        @Override
+        public void copyFile(String source, String path, String entryName) { }
+
+        @Override
+        public void createArchive(String path, String archiveName, Manifest manifest) { }
+
+        @Override
+        public void saveDirEntry(String path, String archiveName, String entryName) { }
+
+        @Override
+        public void copyEntry(String source, String path, String archiveName, String entry) { }
+
+        @Override
+        public void closeArchive(String path, String archiveName) { }
+
+        @Override
+        public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+            save(qualifiedName, content);
+        }
+    }
+}
@@ -5,46 +5,89 @@ import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 
+import java.io.Closeable;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * 负责比较两个文件夹内的所有JAR文件。
+ * 自行创建了 {@link JarComparator} 的实例在 {@link #close()} 时将其关闭；比较结果中的源码在关闭之前有效。
  */
-public class FolderComparator {
+public class FolderComparator implements Closeable {
 
     private final File oldDir;
     private final File newDir;
     private final JarComparator jarComparator;
+    private final ComparisonOptions options;
+    private final boolean ownsComparator;
 
     public FolderComparator(File oldDir, File newDir) {
+        this(oldDir, newDir, new ComparisonOptions());
+    }
+
+    public FolderComparator(File oldDir, File newDir, ComparisonOptions options) {
+        this(oldDir, newDir, options, new JarComparator(options), true);
+    }
+
+    /**
+     * @param jarComparator 已经创建好的JAR比较器，可以与其它比较共用已预热的反编译器和缓存，由调用方负责关闭
+     */
+    public FolderComparator(File oldDir, File newDir, ComparisonOptions options, JarComparator jarComparator) {
+        this(oldDir, newDir, options, jarComparator, false);
+    }
+
+    private FolderComparator(File oldDir, File newDir, ComparisonOptions options, JarComparator jarComparator,
+                             boolean ownsComparator) {
         this.oldDir = oldDir;
         this.newDir = newDir;
-        this.jarComparator = new JarComparator();
+        this.options = options;
+        this.jarComparator = jarComparator;
+        this.ownsComparator = ownsComparator;
     }
 
     /**
      * 执行文件夹比较，并返回所有差异结果。
+     * 所有JAR按文件名排序后提交给 {@link ComparisonPipeline} 并行处理，结果顺序与提交顺序一致。
      * @return 一个包含所有差异的 ComparisonResult 列表。
+     * @throws InterruptedException 等待流水线完成时线程被中断
      */
-    public List<ComparisonResult> compare() {
-        System.out.println("正在扫描JAR文件...");
+    public List<ComparisonResult> compare() throws InterruptedException {
+        List<ComparisonResult> results = new ArrayList<>();
+        compare(results::add);
+        return results;
+    }
 
-        IOFileFilter jarFilter = new SuffixFileFilter(".jar");
-        Collection<File> oldJarFiles = FileUtils.listFiles(oldDir, jarFilter, TrueFileFilter.INSTANCE);
-        Collection<File> newJarFiles = FileUtils.listFiles(newDir, jarFilter, TrueFileFilter.INSTANCE);
+    /**
+     * 执行文件夹比较，每个JAR的结果确定后立即按提交顺序交给回调，不在内存中保留全部结果。
+     * @param resultConsumer 接收状态不是UNCHANGED的比较结果
+     * @throws InterruptedException 等待流水线完成时线程被中断
+     * @see #compare(ComparisonListener)
+     */
+    public void compare(Consumer<ComparisonResult> resultConsumer) throws InterruptedException {
+        compare(ComparisonListener.of(resultConsumer));
+    }
+
+    /**
+     * 执行文件夹比较，每个JAR的结果确定后立即按提交顺序通知监听器，不在内存中保留全部结果。
+     * 监听器在流水线的汇总线程上执行，耗时的处理会通过背压拖慢整条流水线。
+     * 所有JAR比较完成、输出统计信息之后调用 {@link ComparisonListener#onRunCompleted()}。
+     * @throws InterruptedException 等待流水线完成时线程被中断
+     */
+    public void compare(ComparisonListener listener) throws InterruptedException {
+        Log.info("正在扫描JAR文件...");
 
-        Map<String, File> oldJarMap = oldJarFiles.stream()
-                .collect(Collectors.toMap(File::getName, Function.identity()));
-        Map<String, File> newJarMap = newJarFiles.stream()
-                .collect(Collectors.toMap(File::getName, Function.identity()));
+        Map<String, File> oldJarMap = listJars(oldDir, options);
+        Map<String, File> newJarMap = listJars(newDir, options);
 
-        List<ComparisonResult> results = new ArrayList<>();
+        ComparisonPipeline pipeline = new ComparisonPipeline(jarComparator, options, listener);
+        pipeline.start();
 
         for (Map.Entry<String, File> oldEntry : oldJarMap.entrySet()) {
             String jarName = oldEntry.getKey();
@@ -52,25 +95,51 @@ public class FolderComparator {
             File newJar = newJarMap.get(jarName);
 
             if (newJar != null) {
-                System.out.println("正在比较 " + jarName + "...");
-                ComparisonResult result = jarComparator.compare(oldJar, newJar);
-                if (result.getStatus() != ComparisonResult.Status.UNCHANGED) {
-                    results.add(result);
-                }
+                Log.info("正在比较 " + jarName + "...");
+                pipeline.submit(jarName, oldJar, newJar);
             } else {
-                System.out.println(jarName + " [状态: 已删除]");
-                results.add(new ComparisonResult(jarName, oldJar, null, ComparisonResult.Status.DELETED));
+                Log.info(jarName + " [状态: 已删除]");
+                pipeline.submitSettled(new ComparisonResult(jarName, oldJar, null, ComparisonResult.Status.DELETED));
             }
         }
 
         for (Map.Entry<String, File> newEntry : newJarMap.entrySet()) {
             String jarName = newEntry.getKey();
             if (!oldJarMap.containsKey(jarName)) {
-                System.out.println(jarName + " [状态: 新增]");
-                results.add(new ComparisonResult(jarName, null, newEntry.getValue(), ComparisonResult.Status.ADDED));
+                Log.info(jarName + " [状态: 新增]");
+                pipeline.submitSettled(new ComparisonResult(jarName, null, newEntry.getValue(), ComparisonResult.Status.ADDED));
             }
         }
 
-        return results;
+        pipeline.finish();
+        jarComparator.printStatistics();
+        listener.onRunCompleted();
+    }
+
+    /**
+     * 关闭本实例创建的JAR比较器，释放其线程池、源码段文件和反编译工作进程；调用方传入的比较器不受影响。
+     */
+    @Override
+    public void close() {
+        if (ownsComparator) {
+            jarComparator.close();
+        }
+    }
+
+    /**
+     * 递归扫描目录中通过过滤的JAR文件。
+     * @return 文件名到文件的映射，按文件名排序
+     * @throws IllegalStateException 目录中有同名的JAR
+     */
+    static Map<String, File> listJars(File dir, ComparisonOptions options) {
+        IOFileFilter jarFilter = new SuffixFileFilter(".jar");
+        Collection<File> jarFiles = FileUtils.listFiles(dir, jarFilter, TrueFileFilter.INSTANCE);
+        return jarFiles.stream()
+                .filter(file -> options.acceptsJar(file.getName()))
+                .collect(Collectors.toMap(File::getName, Function.identity(), FolderComparator::rejectDuplicate, TreeMap::new));
+    }
+
+    private static File rejectDuplicate(File first, File second) {
+        throw new IllegalStateException("发现同名的JAR文件: " + first.getAbsolutePath() + " 与 " + second.getAbsolutePath());
     }
 }
\ No newline at end of file
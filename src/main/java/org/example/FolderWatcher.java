@@ -0,0 +1,244 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+/**
+ * 监视模式：在新版本目录还在被写入时就开始比较。
+ * <p>
+ * 通过 {@link WatchService} 监视新版本目录（包括子目录），每个JAR文件的大小和修改时间在静默期内不再变化、
+ * 并且能作为完整的ZIP打开后，立即提交给 {@link ComparisonPipeline}；整个空闲期内没有变化却始终无法打开的JAR视为损坏，
+ * 同样提交并由比较过程报告为错误。同一个JAR之后再次被改写时会重新提交，后出现的结果取代先前的结果。新版本目录在空闲期内没有任何变化时认为同步已经完成，
+ * 此时把新版本中始终没有出现的旧JAR记为删除，并结束流水线。
+ */
+public class FolderWatcher {
+
+    /** 轮询文件状态的间隔 */
+    private static final long POLL_MILLIS = 250;
+
+    private final File oldDir;
+    private final File newDir;
+    private final ComparisonOptions options;
+    private final JarComparator jarComparator;
+    private final long quietMillis;
+    private final long idleMillis;
+
+    /**
+     * @param quietMillis JAR文件保持不变多久之后才认为写入完成
+     * @param idleMillis  新版本目录保持不变多久之后结束监视
+     */
+    public FolderWatcher(File oldDir, File newDir, ComparisonOptions options, JarComparator jarComparator,
+                         long quietMillis, long idleMillis) {
+        this.oldDir = oldDir;
+        this.newDir = newDir;
+        this.options = options;
+        this.jarComparator = jarComparator;
+        this.quietMillis = quietMillis;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * 监视新版本目录并比较落地的JAR，直到目录空闲。
+     * @param listener 在流水线的汇总线程上按提交顺序接收每个提交的JAR的比较结果（包括UNCHANGED），同一个JAR可能出现多次；
+     *                 目录空闲、所有JAR比较完成后调用 {@link ComparisonListener#onRunCompleted()}
+     * @throws IOException 无法监视新版本目录
+     */
+    public void watch(ComparisonListener listener) throws IOException, InterruptedException {
+        Map<String, File> oldJarMap = FolderComparator.listJars(oldDir, options);
+        ComparisonPipeline pipeline = new ComparisonPipeline(jarComparator, options, listener);
+        pipeline.start();
+
+        Map<WatchKey, Path> watchedDirs = new HashMap<>();
+        Map<Path, PendingJar> pending = new HashMap<>();
+        /* 已提交的JAR -> 提交时的文件状态，状态不变的重复事件不会再次提交 */
+        Map<String, PendingJar> submitted = new HashMap<>();
+
+        Log.info("正在监视 " + newDir.getAbsolutePath() + "，目录空闲 " + idleMillis / 1000 + " 秒后结束...");
+        try (WatchService watchService = newDir.toPath().getFileSystem().newWatchService()) {
+            register(watchService, newDir.toPath(), watchedDirs, pending);
+            long lastActivity = System.currentTimeMillis();
+
+            while (true) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    lastActivity = System.currentTimeMillis();
+                    handleEvents(watchService, key, watchedDirs, pending);
+                }
+                long now = System.currentTimeMillis();
+                if (checkPending(pending, submitted, oldJarMap, pipeline, now)) {
+                    lastActivity = now;
+                }
+                if (pending.isEmpty() && now - lastActivity >= idleMillis) {
+                    break;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            throw new IOException("监视服务被意外关闭", e);
+        }
+
+        Set<String> presentJars = FolderComparator.listJars(newDir, options).keySet();
+        for (Map.Entry<String, File> oldEntry : oldJarMap.entrySet()) {
+            if (!presentJars.contains(oldEntry.getKey())) {
+                Log.info(oldEntry.getKey() + " [状态: 已删除]");
+                pipeline.submitSettled(new ComparisonResult(oldEntry.getKey(), oldEntry.getValue(), null, ComparisonResult.Status.DELETED));
+            }
+        }
+        pipeline.finish();
+        jarComparator.printStatistics();
+        listener.onRunCompleted();
+    }
+
+    private void handleEvents(WatchService watchService, WatchKey key, Map<WatchKey, Path> watchedDirs,
+                              Map<Path, PendingJar> pending) throws IOException {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 事件丢失，重新扫描整个目录
+                register(watchService, newDir.toPath(), watchedDirs, pending);
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                pending.remove(path);
+            } else if (Files.isDirectory(path)) {
+                register(watchService, path, watchedDirs, pending);
+            } else if (isWatchedJar(path)) {
+                pending.computeIfAbsent(path, p -> new PendingJar());
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    /**
+     * 检查等待中的JAR，把已经稳定的提交给流水线。
+     * @return 是否有文件状态发生了变化
+     */
+    private boolean checkPending(Map<Path, PendingJar> pending, Map<String, PendingJar> submitted,
+                                 Map<String, File> oldJarMap, ComparisonPipeline pipeline, long now) throws InterruptedException {
+        boolean changed = false;
+        Iterator<Map.Entry<Path, PendingJar>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingJar> entry = iterator.next();
+            Path path = entry.getKey();
+            PendingJar jar = entry.getValue();
+            long size;
+            long modified;
+            try {
+                size = Files.size(path);
+                modified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                // 文件已被移走
+                iterator.remove();
+                continue;
+            }
+            if (size != jar.size || modified != jar.modified) {
+                jar.size = size;
+                jar.modified = modified;
+                jar.stableSince = now;
+                changed = true;
+                continue;
+            }
+            if (now - jar.stableSince < quietMillis) {
+                continue;
+            }
+            if (!isCompleteZip(path.toFile())) {
+                if (now - jar.stableSince < idleMillis) {
+                    // 大小和时间暂时没变，但内容还不完整（例如写入方在预分配的文件中填充），继续等待
+                    continue;
+                }
+                // 整个空闲期内都没有变化仍无法打开，是截断或损坏的文件，照常提交，由比较过程报告为错误
+                Log.warn("警告: " + path + " 在 " + idleMillis / 1000 + " 秒内没有变化，但仍不是完整的ZIP文件，将按损坏的JAR处理。");
+            }
+            iterator.remove();
+            String jarName = path.getFileName().toString();
+            PendingJar previous = submitted.get(jarName);
+            if (previous != null && previous.size == size && previous.modified == modified) {
+                continue;
+            }
+            submitted.put(jarName, jar);
+            submit(jarName, oldJarMap.get(jarName), path.toFile(), pipeline);
+        }
+        return changed;
+    }
+
+    private void submit(String jarName, File oldJar, File newJar, ComparisonPipeline pipeline) throws InterruptedException {
+        if (oldJar != null) {
+            Log.info("正在比较 " + jarName + "...");
+            pipeline.submit(jarName, oldJar, newJar);
+        } else {
+            Log.info(jarName + " [状态: 新增]");
+            pipeline.submitSettled(new ComparisonResult(jarName, null, newJar, ComparisonResult.Status.ADDED));
+        }
+    }
+
+    /**
+     * 监视目录及其所有子目录，并把其中已有的JAR加入等待列表。
+     */
+    private void register(WatchService watchService, Path root, Map<WatchKey, Path> watchedDirs,
+                          Map<Path, PendingJar> pending) throws IOException {
+        Set<Path> registered = new HashSet<>(watchedDirs.values());
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (registered.add(dir)) {
+                    WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirs.put(key, dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (isWatchedJar(file)) {
+                    pending.computeIfAbsent(file, p -> new PendingJar());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isWatchedJar(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".jar") && options.acceptsJar(name);
+    }
+
+    private static boolean isCompleteZip(File file) {
+        try (ZipFile ignored = new ZipFile(file)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 一个等待稳定的JAR文件最近一次观察到的状态。
+     */
+    private static final class PendingJar {
+        private long size = -1;
+        private long modified = -1;
+        private long stableSince;
+    }
+}
@@ -7,34 +7,166 @@ import java.io.*;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * 传递给DiffDetail对象，为最终的可视化渲染提供必要的数据。
+ * 比较过程被拆分为哈希、提取、字节码规范化、反编译、比对、收尾六个步骤，既可以由 {@link #compare(File, File)} 串行执行，
+ * 也可以由 {@link ComparisonPipeline} 分阶段并行调度。
+ * 同一个JAR内发生变化的类会被拆分到工作窃取线程池中并行反编译和比对，避免单个超大JAR退化为单线程。
  */
-public class JarComparator {
+public class JarComparator implements Closeable {
 
-    private final JarDecompiler decompiler = new JarDecompiler();
-    private final SourceCodeDiff diff = new SourceCodeDiff();
+    /** 通用信息中删除类和新增类的消息前缀，时间线模式据此识别类的增删 */
+    static final String REMOVED_CLASS_PREFIX = "  - 删除的类: ";
+    static final String ADDED_CLASS_PREFIX = "  + 新增的类: ";
+
+    private final JarDecompiler decompiler;
+    private final SourceCodeDiff diff;
+    /** 比对完成后的源码交给存储管理，超出内存预算的部分写入临时文件 */
+    private final SourceStore sourceStore;
+    /** 按JAR哈希对复用的比较结果，为null表示不使用 */
+    private final ResultCache resultCache;
+    private final BytecodeNormalizer normalizer = new BytecodeNormalizer();
+    private final boolean bytecodeNormalization;
+    private final boolean methodScoping;
+    /** 由本实例创建的反编译器在关闭时一并关闭，外部传入的共享反编译器由调用方负责 */
+    private final boolean ownsDecompiler;
+    private final ForkJoinPool classPool;
+    private final int splitThreshold;
+    private final boolean paranoid;
+    /** 按JAR文件名选择反编译后端 */
+    private final ComparisonOptions options;
+    /** 每个线程复用一个摘要实例，避免为每个类重复查找算法提供者 */
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(JarComparator::newSha256);
+
+    public JarComparator() {
+        this(new ComparisonOptions());
+    }
+
+    public JarComparator(ComparisonOptions options) {
+        this(new JarDecompiler(openDecompilationCache(options), new DecompileWatchdog(options)),
+                new SourceCodeDiff(new MyersDiffEngine(), options.toDiffBudget()), options, true);
+    }
+
+    /**
+     * @param decompiler 反编译器，会被多个线程共享，必须是线程安全的
+     * @param diff       源码比对器，会被多个线程共享，必须是线程安全的
+     * @param options    运行参数
+     */
+    public JarComparator(JarDecompiler decompiler, SourceCodeDiff diff, ComparisonOptions options) {
+        this(decompiler, diff, options, false);
+    }
+
+    private JarComparator(JarDecompiler decompiler, SourceCodeDiff diff, ComparisonOptions options, boolean ownsDecompiler) {
+        this.decompiler = decompiler;
+        this.ownsDecompiler = ownsDecompiler;
+        this.diff = diff;
+        this.classPool = new ForkJoinPool(options.getClassParallelism());
+        this.splitThreshold = options.getClassSplitThreshold();
+        this.paranoid = options.isParanoid();
+        this.options = options;
+        this.bytecodeNormalization = options.isBytecodeNormalization();
+        this.methodScoping = options.isMethodScoping();
+        this.sourceStore = new SourceStore(options.getSourceSpillDir(), options.getSourceInlineBudgetBytes());
+        this.resultCache = openResultCache(options, diff);
+    }
+
+    /**
+     * 在一次运行结束时打印统计信息。
+     */
+    public void printStatistics() {
+        if (decompiler.getCache() != null) {
+            Log.info(decompiler.getCache().describeStatistics());
+        }
+        if (decompiler.getWatchdog() != null) {
+            Log.info(decompiler.getWatchdog().describeStatistics());
+        }
+        if (resultCache != null) {
+            Log.info(resultCache.describeStatistics());
+        }
+        Log.info(sourceStore.describeStatistics());
+        Log.info(PerformanceProfiler.getInstance().describeStatistics());
+    }
+
+    /**
+     * 释放按类并行的线程池和源码存储的段文件。调用后不能再读取本实例产生的比较结果中的源码。
+     * 通过构造函数传入的共享反编译器和比对器不受影响。
+     */
+    @Override
+    public void close() {
+        classPool.shutdown();
+        sourceStore.close();
+        if (ownsDecompiler) {
+            decompiler.close();
+        }
+    }
 
     public ComparisonResult compare(File oldJar, File newJar) {
-        try {
-            if (Arrays.equals(calculateHash(oldJar), calculateHash(newJar))) {
-                System.out.println(oldJar.getName() + " [状态: 未变更 (文件哈希值相同)]");
-                return new ComparisonResult(oldJar.getName(), oldJar, newJar, ComparisonResult.Status.UNCHANGED);
+        JarTask task = new JarTask(0, oldJar.getName(), oldJar, newJar);
+        checkHash(task);
+        extractEntries(task);
+        normalizeClasses(task);
+        decompileClasses(task);
+        diffClasses(task);
+        return finish(task);
+    }
+
+    /**
+     * 阶段一：比较整个JAR文件的哈希值，相同则直接判定为未变更。
+     */
+    void checkHash(JarTask task) {
+        if (task.isSettled()) return;
+
+        File oldJar = task.getOldJar();
+        File newJar = task.getNewJar();
+        try (PerformanceProfiler.Scope ignored = PerformanceProfiler.start(PerformanceProfiler.Phase.HASH,
+                task.getJarName(), null, 0, oldJar.length() + newJar.length())) {
+            byte[] oldHash = calculateHash(oldJar);
+            byte[] newHash = calculateHash(newJar);
+            task.setJarHashes(oldHash, newHash);
+            if (Arrays.equals(oldHash, newHash)) {
+                Log.info(oldJar.getName() + " [状态: 未变更 (文件哈希值相同)]");
+                ComparisonResult unchanged = new ComparisonResult(oldJar.getName(), oldJar, newJar, ComparisonResult.Status.UNCHANGED);
+                unchanged.setJarHashes(oldHash, newHash);
+                task.settle(unchanged);
+            } else if (resultCache != null) {
+                ComparisonResult cached = resultCache.get(oldHash, newHash, oldJar.getName(), oldJar, newJar, sourceStore);
+                if (cached != null) {
+                    Log.info(oldJar.getName() + " [状态: 复用缓存的比较结果]");
+                    task.settle(cached);
+                }
             }
-        } catch (IOException | NoSuchAlgorithmException e) {
+        } catch (IOException e) {
             String errorMessage = getStackTraceAsString(e);
-            System.err.println("警告: 无法计算文件哈希值 " + oldJar.getName() + "。将继续进行深度比较。\n错误详情:\n" + errorMessage);
+            Log.warn("警告: 无法计算文件哈希值 " + oldJar.getName() + "。将继续进行深度比较。\n错误详情:\n" + errorMessage);
         }
+    }
 
-        System.out.println(oldJar.getName() + " [状态: 可能有变更 (正在进行深度扫描...)]");
+    /**
+     * 阶段二：解压两侧的类条目，记录新增/删除的类，并收集内容发生变化的类。
+     */
+    void extractEntries(JarTask task) {
+        if (task.isSettled()) return;
+
+        File oldJar = task.getOldJar();
+        File newJar = task.getNewJar();
+        Log.info(oldJar.getName() + " [状态: 可能有变更 (正在进行深度扫描...)]");
         ComparisonResult result = new ComparisonResult(oldJar.getName(), oldJar, newJar, ComparisonResult.Status.MODIFIED);
+        result.setJarHashes(task.getOldJarHash(), task.getNewJarHash());
+        task.setResult(result);
 
-        try (ZipFile oldZip = new ZipFile(oldJar); ZipFile newZip = new ZipFile(newJar)) {
-            Map<String, ZipEntry> oldEntries = getEntriesMap(oldZip);
-            Map<String, ZipEntry> newEntries = getEntriesMap(newZip);
+        try (PerformanceProfiler.Scope scope = PerformanceProfiler.start(PerformanceProfiler.Phase.EXTRACT,
+                task.getJarName(), null, 0, oldJar.length() + newJar.length());
+             ZipFile oldZip = new ZipFile(oldJar); ZipFile newZip = new ZipFile(newJar)) {
+            NavigableMap<String, ZipEntry> oldEntries = getEntriesMap(oldZip);
+            NavigableMap<String, ZipEntry> newEntries = getEntriesMap(newZip);
+            // 发生变化的类按顶层类归组，内部类的变化体现在外部类的源码中
+            Set<String> changedGroups = new TreeSet<>();
 
             for (Map.Entry<String, ZipEntry> oldEntry : oldEntries.entrySet()) {
                 String entryName = oldEntry.getKey();
@@ -42,72 +174,293 @@ public class JarComparator {
 
                 ZipEntry newEntry = newEntries.get(entryName);
                 if (newEntry == null) {
-                    result.addDifference("  - 删除的类: " + formatClassName(entryName));
-                } else {
-                    byte[] oldClassBytes = IOUtils.toByteArray(oldZip.getInputStream(oldEntry.getValue()));
-                    byte[] newClassBytes = IOUtils.toByteArray(newZip.getInputStream(newEntry));
-
-                    if (!Arrays.equals(calculateHash(oldClassBytes), calculateHash(newClassBytes))) {
-                        // 这个信息将在ReportGenerator中根据DiffDetail的内容动态生成
-                        decompileAndDiff(oldClassBytes, newClassBytes, entryName, result);
-                    }
+                    result.addDifference(REMOVED_CLASS_PREFIX + formatClassName(entryName));
+                } else if (isEntryChanged(oldZip, oldEntry.getValue(), newZip, newEntry)) {
+                    changedGroups.add(primaryEntryOf(entryName, oldEntries, newEntries));
                 }
             }
 
+            for (String primaryEntry : changedGroups) {
+                task.getChangedClasses().add(new JarTask.ClassTask(primaryEntry,
+                        readGroup(oldZip, oldEntries, primaryEntry),
+                        readGroup(newZip, newEntries, primaryEntry)));
+            }
+            scope.setClasses(changedGroups.size());
+
             for (String newEntryName : newEntries.keySet()) {
                 if (newEntryName.endsWith(".class") && !oldEntries.containsKey(newEntryName)) {
-                    result.addDifference("  + 新增的类: " + formatClassName(newEntryName));
+                    result.addDifference(ADDED_CLASS_PREFIX + formatClassName(newEntryName));
                 }
             }
 
-        } catch (IOException | NoSuchAlgorithmException e) {
-            result.addDifference("错误：在处理JAR包 " + newJar.getName() + " 时发生顶层异常。");
-            result.addDifference(getStackTraceAsString(e));
+        } catch (IOException e) {
+            task.getChangedClasses().clear();
+            result.addError("错误：在处理JAR包 " + newJar.getName() + " 时发生顶层异常。", getStackTraceAsString(e));
         }
+    }
 
-        // 判断是否有差异的逻辑，基于DiffDetail列表
-        if (!result.hasDifferences()) {
-            System.out.println(oldJar.getName() + " [状态: 未变更 (类文件无差异)]");
-            return new ComparisonResult(oldJar.getName(), oldJar, newJar, ComparisonResult.Status.UNCHANGED);
+    /**
+     * 阶段三：字节码规范化。结构哈希相同的类直接记为非逻辑性差异，不再进入反编译和比对。
+     */
+    void normalizeClasses(JarTask task) {
+        if (task.isSettled() || !bytecodeNormalization) return;
+
+        forEachBatchInParallel(task, batch -> batch.forEach(this::analyzeClass));
+
+        Iterator<JarTask.ClassTask> iterator = task.getChangedClasses().iterator();
+        while (iterator.hasNext()) {
+            JarTask.ClassTask classTask = iterator.next();
+            String reason = classTask.getNonLogicalReason();
+            if (reason != null) {
+                Log.debug("    -> " + formatClassName(classTask.getEntryName()) + ": " + reason);
+                task.getResult().addDiffDetail(new DiffDetail(
+                        formatClassName(classTask.getEntryName()),
+                        DiffDetail.DiffType.NON_LOGICAL_CHANGE,
+                        List.of(reason),
+                        null,
+                        null,
+                        Collections.emptyList(),
+                        Collections.emptyList(),
+                        classTask.getOldHash(),
+                        classTask.getNewHash()
+                ));
+                iterator.remove();
+            }
         }
+    }
 
-        return result;
+    /**
+     * 在成员粒度上分析一个类组，记录变化的成员，并在启用方法裁剪时用裁剪后的类组替换原始类组。
+     */
+    private void analyzeClass(JarTask.ClassTask classTask) {
+        BytecodeNormalizer.Analysis analysis;
+        try (PerformanceProfiler.Scope ignored = PerformanceProfiler.start(PerformanceProfiler.Phase.NORMALIZE, null,
+                formatClassName(classTask.getEntryName()), 1, classTask.getOldGroup().getSize() + classTask.getNewGroup().getSize())) {
+            analysis = normalizer.analyze(classTask.getOldGroup(), classTask.getNewGroup(), methodScoping);
+        }
+        if (analysis == null) {
+            return;
+        }
+        classTask.setNonLogicalReason(analysis.getNonLogicalReason());
+        classTask.setMemberChanges(analysis.getMemberChanges());
+        if (analysis.getOmittedMethods() > 0) {
+            classTask.scope(analysis.getOldGroup(), analysis.getNewGroup(), analysis.getOmittedMethods());
+        }
     }
 
     /**
-     * 将完整的上下文传递给DiffDetail。
+     * 阶段四：反编译所有发生变化的类，失败信息留到比对阶段统一转为ERROR差异。
      */
-    private void decompileAndDiff(byte[] oldClassBytes, byte[] newClassBytes, String entryName, ComparisonResult result) {
-        String oldSource = null;
-        String newSource = null;
-        try {
-            System.out.println("    -> 正在反编译和比对 " + formatClassName(entryName) + "...");
+    void decompileClasses(JarTask task) {
+        if (task.isSettled()) return;
 
-            oldSource = decompiler.decompile(oldClassBytes, entryName);
-            newSource = decompiler.decompile(newClassBytes, entryName);
+        DecompilerBackend backend = DecompilerBackends.get(options.backendFor(task.getJarName()));
+        forEachBatchInParallel(task, batch -> decompileBatch(backend, batch));
+    }
 
-            // 调用SourceCodeDiff的compare方法，负责判断差异类型和返回一个临时的内容
-            DiffDetail diffDetail = diff.compare(oldSource, newSource, formatClassName(entryName));
+    /**
+     * 在一个反编译上下文中处理一批类（新旧两侧各一个上下文）。
+     * 批量反编译失败或个别类没有得到源码时，对这些类逐个在隔离的工作进程中重试，以便把失败定位到具体的类，
+     * 并且单个病态类的挂起或内存溢出不会影响其他类。重试仍然失败的类改用字节码骨架比对。
+     */
+    private void decompileBatch(DecompilerBackend backend, List<JarTask.ClassTask> batch) {
+        Log.info("    -> 正在批量反编译 " + batch.size() + " 个类，首个类: " + formatClassName(batch.get(0).getEntryName())
+                + (backend.getId().equals(DecompilerBackends.DEFAULT) ? "" : "（后端: " + backend.getId() + "）") + "...");
+        List<ClassGroup> oldGroups = new ArrayList<>(batch.size());
+        List<ClassGroup> newGroups = new ArrayList<>(batch.size());
+        for (JarTask.ClassTask classTask : batch) {
+            oldGroups.add(classTask.getOldGroup());
+            newGroups.add(classTask.getNewGroup());
+        }
+        Map<String, String> oldSources = decompileSide(backend, oldGroups);
+        Map<String, String> newSources = decompileSide(backend, newGroups);
 
-            // 重新构建一个包含了所有信息的完整对象,让SourceCodeDiff的职责更单一（只负责计算和判断），而数据封装的职责在这一层完成。
-            result.addDiffDetail(new DiffDetail(
-                    diffDetail.getClassName(),
-                    diffDetail.getType(),
-                    diffDetail.getDiffContent(),
-                    oldSource,
-                    newSource
-            ));
+        for (JarTask.ClassTask classTask : batch) {
+            String entryName = classTask.getEntryName();
+            try {
+                String oldSource = oldSources.get(entryName);
+                classTask.setOldSource(oldSource != null ? oldSource : decompiler.decompileIsolated(backend, classTask.getOldGroup()));
+                String newSource = newSources.get(entryName);
+                classTask.setNewSource(newSource != null ? newSource : decompiler.decompileIsolated(backend, classTask.getNewGroup()));
+            } catch (DecompilationException e) {
+                Log.warn("警告: " + e.getMessage() + "，改用字节码骨架比对。");
+                classTask.setFailure(e);
+                // 两侧都换成骨架，避免一侧是源码、一侧是骨架时产生无意义的差异
+                classTask.setOldSource(normalizer.skeleton(classTask.getOldGroup()));
+                classTask.setNewSource(normalizer.skeleton(classTask.getNewGroup()));
+            } finally {
+                classTask.releaseBytes();
+            }
+        }
+    }
 
+    private Map<String, String> decompileSide(DecompilerBackend backend, List<ClassGroup> groups) {
+        try {
+            return decompiler.decompileBatch(backend, groups);
         } catch (DecompilationException e) {
-            String stackTrace = getStackTraceAsString(e);
+            Log.warn("警告: " + e.getMessage() + " 将逐个类重试。");
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 阶段五：对反编译结果进行源码比对，生成DiffDetail。
+     */
+    void diffClasses(JarTask task) {
+        if (task.isSettled()) return;
+
+        ComparisonResult result = task.getResult();
+        forEachBatchInParallel(task, batch -> batch.forEach(classTask -> result.addDiffDetail(diffClass(classTask))));
+        result.sortDiffDetails();
+        task.getChangedClasses().clear();
+        if (resultCache != null && task.getOldJarHash() != null) {
+            resultCache.put(task.getOldJarHash(), task.getNewJarHash(), result);
+        }
+    }
+
+    /**
+     * 阶段六：根据差异列表确定JAR的最终状态。
+     */
+    ComparisonResult finish(JarTask task) {
+        if (task.isSettled()) {
+            return task.getResult();
+        }
+        // 判断是否有差异的逻辑，基于DiffDetail列表
+        if (!task.getResult().hasDifferences()) {
+            Log.info(task.getOldJar().getName() + " [状态: 未变更 (类文件无差异)]");
+            return new ComparisonResult(task.getOldJar().getName(), task.getOldJar(), task.getNewJar(), ComparisonResult.Status.UNCHANGED);
+        }
+        return task.getResult();
+    }
+
+    /**
+     * 将完整的上下文传递给DiffDetail。
+     */
+    private DiffDetail diffClass(JarTask.ClassTask classTask) {
+        String entryName = classTask.getEntryName();
+        String oldSource = classTask.getOldSource();
+        String newSource = classTask.getNewSource();
+
+        if (classTask.getFailure() != null) {
+            String stackTrace = getStackTraceAsString(classTask.getFailure());
             String indentedStackTrace = "      " + stackTrace.replaceAll("\n", "\n      ");
-            result.addDiffDetail(new DiffDetail(
+            List<DiffHunk> hunks = Collections.emptyList();
+            List<String> content = new ArrayList<>();
+            content.add("      [反编译失败] " + formatClassName(entryName));
+            content.add("      原因: " + classTask.getFailure().getMessage());
+            if (oldSource != null && newSource != null) {
+                // 源码是反编译失败后生成的字节码骨架，比对结果只能说明哪些成员发生了变化
+                hunks = diff.compare(oldSource, newSource, formatClassName(entryName)).getHunks();
+                content.add("      [字节码骨架] 以下差异基于字节码骨架，而不是反编译后的源码");
+            }
+            content.add(indentedStackTrace);
+            return new DiffDetail(
                     formatClassName(entryName),
                     DiffDetail.DiffType.ERROR,
-                    List.of("      [反编译失败] " + formatClassName(entryName), indentedStackTrace),
-                    (oldSource != null) ? oldSource : "/* Old source unavailable */",
-                    (newSource != null) ? newSource : "/* New source unavailable */"
-            ));
+                    content,
+                    sourceStore.store((oldSource != null) ? oldSource : "/* Old source unavailable */"),
+                    sourceStore.store((newSource != null) ? newSource : "/* New source unavailable */"),
+                    classTask.getMemberChanges(),
+                    hunks,
+                    classTask.getOldHash(),
+                    classTask.getNewHash()
+            );
+        }
+
+        Log.debug("    -> 正在比对 " + formatClassName(entryName) + "...");
+        // 调用SourceCodeDiff的compare方法，负责判断差异类型和返回一个临时的内容
+        DiffDetail diffDetail = diff.compare(oldSource, newSource, formatClassName(entryName));
+
+        List<String> diffContent = diffDetail.getDiffContent();
+        if (classTask.getOmittedMethods() > 0) {
+            diffContent = new ArrayList<>(diffContent);
+            diffContent.add(0, "      [已裁剪] 两侧完全相同的 " + classTask.getOmittedMethods() + " 个方法未参与反编译，源码中只包含发生变化的成员");
+        }
+
+        // 重新构建一个包含了所有信息的完整对象,让SourceCodeDiff的职责更单一（只负责计算和判断），而数据封装的职责在这一层完成。
+        return new DiffDetail(
+                diffDetail.getClassName(),
+                diffDetail.getType(),
+                diffContent,
+                sourceStore.store(oldSource),
+                sourceStore.store(newSource),
+                classTask.getMemberChanges(),
+                diffDetail.getHunks(),
+                classTask.getOldHash(),
+                classTask.getNewHash()
+        );
+    }
+
+    /**
+     * 将JAR中变化的类交给工作窃取线程池处理，列表被拆分为不超过阈值的批次，返回时所有类均已处理完毕。
+     * 每个批次都以该JAR为性能统计的上下文执行。
+     */
+    private void forEachBatchInParallel(JarTask task, Consumer<List<JarTask.ClassTask>> action) {
+        List<JarTask.ClassTask> classTasks = task.getChangedClasses();
+        if (classTasks.isEmpty()) return;
+        classPool.invoke(new ClassRangeAction(classTasks, 0, classTasks.size(),
+                batch -> PerformanceProfiler.runInJar(task.getJarName(), () -> action.accept(batch))));
+    }
+
+    /**
+     * 对类列表的一个区间进行二分拆分，区间足够小时在当前线程直接处理。
+     */
+    private final class ClassRangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<JarTask.ClassTask> classTasks;
+        private final int from;
+        private final int to;
+        private final Consumer<List<JarTask.ClassTask>> action;
+
+        ClassRangeAction(List<JarTask.ClassTask> classTasks, int from, int to, Consumer<List<JarTask.ClassTask>> action) {
+            this.classTasks = classTasks;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= splitThreshold) {
+                action.accept(classTasks.subList(from, to));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ClassRangeAction(classTasks, from, middle, action),
+                    new ClassRangeAction(classTasks, middle, to, action));
+        }
+    }
+
+    /**
+     * 按配置打开反编译缓存；缓存目录不可用时给出警告并退化为不使用缓存。
+     */
+    private static ResultCache openResultCache(ComparisonOptions options, SourceCodeDiff diff) {
+        if (options.getResultCacheDir() == null) {
+            return null;
+        }
+        String fingerprint = options.resultFingerprint() + ";backends=" + DecompilerBackends.describeVersions()
+                + ";sourceRules=" + diff.describe();
+        try {
+            return new ResultCache(options.getResultCacheDir(), options.getResultCacheMaxBytes(), fingerprint);
+        } catch (IOException e) {
+            Log.warn("警告: 无法打开比较结果缓存目录 " + options.getResultCacheDir() + "，本次运行不使用缓存: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 按参数打开持久化反编译缓存；未配置或无法打开时返回null。
+     */
+    static DecompilationCache openDecompilationCache(ComparisonOptions options) {
+        if (options.getDecompileCacheDir() == null) {
+            return null;
+        }
+        try {
+            return new DecompilationCache(options.getDecompileCacheDir(), options.getDecompileCacheMaxBytes());
+        } catch (IOException e) {
+            Log.warn("警告: 无法打开反编译缓存目录 " + options.getDecompileCacheDir() + "，本次运行不使用缓存: " + e.getMessage());
+            return null;
         }
     }
 
@@ -117,8 +470,63 @@ public class JarComparator {
         return stringWriter.toString();
     }
 
-    private Map<String, ZipEntry> getEntriesMap(ZipFile zipFile) {
-        Map<String, ZipEntry> entries = new HashMap<>();
+    /**
+     * 判断两侧同名条目的内容是否不同。
+     * 默认先比较中央目录中记录的CRC32与大小：CRC或大小不同必然有变化；两者都相同时视为未变化，无需解压。
+     * 元数据缺失或开启严格模式时，才解压并逐字节比较。
+     */
+    private boolean isEntryChanged(ZipFile oldZip, ZipEntry oldEntry, ZipFile newZip, ZipEntry newEntry) throws IOException {
+        if (!paranoid && hasMetadata(oldEntry) && hasMetadata(newEntry)) {
+            return oldEntry.getCrc() != newEntry.getCrc()
+                    || oldEntry.getSize() != newEntry.getSize();
+        }
+        byte[] oldClassBytes = IOUtils.toByteArray(oldZip.getInputStream(oldEntry));
+        byte[] newClassBytes = IOUtils.toByteArray(newZip.getInputStream(newEntry));
+        return !Arrays.equals(oldClassBytes, newClassBytes);
+    }
+
+    private boolean hasMetadata(ZipEntry entry) {
+        return entry.getCrc() != -1 && entry.getSize() != -1 && entry.getCompressedSize() != -1;
+    }
+
+    /**
+     * 确定一个类所属分组的顶层类条目名：内部类归入新旧两侧都存在的外部类，否则自成一组。
+     */
+    private String primaryEntryOf(String entryName, Map<String, ZipEntry> oldEntries, Map<String, ZipEntry> newEntries) {
+        int slash = entryName.lastIndexOf('/');
+        int dollar = entryName.indexOf('$', slash + 1);
+        if (dollar <= slash + 1) {
+            return entryName;
+        }
+        String outerEntry = entryName.substring(0, dollar) + ".class";
+        return (oldEntries.containsKey(outerEntry) && newEntries.containsKey(outerEntry)) ? outerEntry : entryName;
+    }
+
+    /**
+     * 读取一侧JAR中某个顶层类及其所有内部类的字节码。
+     */
+    private ClassGroup readGroup(ZipFile zip, NavigableMap<String, ZipEntry> entries, String primaryEntry) throws IOException {
+        ClassGroup group = new ClassGroup(primaryEntry);
+        addToGroup(group, zip, entries.get(primaryEntry));
+        String innerPrefix = primaryEntry.substring(0, primaryEntry.length() - ".class".length()) + "$";
+        for (ZipEntry inner : entries.subMap(innerPrefix, true, innerPrefix + Character.MAX_VALUE, true).values()) {
+            if (inner.getName().endsWith(".class")) {
+                addToGroup(group, zip, inner);
+            }
+        }
+        return group;
+    }
+
+    private void addToGroup(ClassGroup group, ZipFile zip, ZipEntry entry) throws IOException {
+        byte[] bytes = IOUtils.toByteArray(zip.getInputStream(entry));
+        group.add(entry.getName(), bytes, calculateHash(bytes));
+    }
+
+    /**
+     * 按条目名排序，保证同一对JAR每次比较得到的类顺序一致。
+     */
+    private NavigableMap<String, ZipEntry> getEntriesMap(ZipFile zipFile) {
+        NavigableMap<String, ZipEntry> entries = new TreeMap<>();
         Enumeration<? extends ZipEntry> enu = zipFile.entries();
         while (enu.hasMoreElements()) {
             ZipEntry entry = enu.nextElement();
@@ -129,10 +537,11 @@ public class JarComparator {
         return entries;
     }
 
-    private byte[] calculateHash(File file) throws IOException, NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    private byte[] calculateHash(File file) throws IOException {
+        MessageDigest digest = sha256.get();
+        digest.reset();
         try (InputStream fis = new FileInputStream(file)) {
-            byte[] byteArray = new byte[1024];
+            byte[] byteArray = new byte[8192];
             int bytesCount;
             while ((bytesCount = fis.read(byteArray)) != -1) {
                 digest.update(byteArray, 0, bytesCount);
@@ -141,11 +550,21 @@ public class JarComparator {
         return digest.digest();
     }
 
-    private byte[] calculateHash(byte[] bytes) throws NoSuchAlgorithmException {
-        return MessageDigest.getInstance("SHA-256").digest(bytes);
+    private byte[] calculateHash(byte[] bytes) {
+        MessageDigest digest = sha256.get();
+        digest.reset();
+        return digest.digest(bytes);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JRE不支持SHA-256", e);
+        }
     }
 
     private String formatClassName(String entryName) {
         return entryName.replace(".class", "").replace('/', '.');
     }
-}
\ No newline at end of file
+}
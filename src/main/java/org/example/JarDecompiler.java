@@ -1,20 +1,72 @@
 package org.example;
 
-import org.jetbrains.java.decompiler.main.decompiler.PrintStreamLogger;
-import org.jetbrains.java.decompiler.main.extern.IBytecodeProvider;
-import org.jetbrains.java.decompiler.main.extern.IResultSaver;
-import org.jetbrains.java.decompiler.main.Fernflower; // 导入核心反编译器类
-
-import java.io.File;
-import java.io.IOException;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.jar.Manifest;
 
 /**
- * 封装了JetBrains的反编译器,采用内存操作，直接与Fernflower核心API交互
+ * 带缓存的反编译入口，实际的反编译由可插拔的 {@link DecompilerBackend} 完成，默认使用Fernflower。
+ * 本身不持有可变状态（缓存和看门狗是线程安全的），因此可以被多个线程并发调用，不同的调用也可以使用不同的后端。
+ * 配置了 {@link DecompileWatchdog} 时，批量反编译受时间和内存预算约束，失败的类可以交给隔离的工作进程单独重试。
  */
-public class JarDecompiler {
+public class JarDecompiler implements Closeable {
+
+    private final DecompilationCache cache;
+    private final DecompileWatchdog watchdog;
+    private final DecompilerBackend defaultBackend;
+
+    public JarDecompiler() {
+        this(null);
+    }
+
+    /**
+     * @param cache 反编译缓存，为null时不使用缓存
+     */
+    public JarDecompiler(DecompilationCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * @param cache    反编译缓存，为null时不使用缓存
+     * @param watchdog 反编译看门狗，为null时反编译不受时间和内存预算约束
+     */
+    public JarDecompiler(DecompilationCache cache, DecompileWatchdog watchdog) {
+        this(cache, watchdog, DecompilerBackends.getDefault());
+    }
+
+    /**
+     * @param defaultBackend 未指定后端的调用所使用的后端
+     */
+    public JarDecompiler(DecompilationCache cache, DecompileWatchdog watchdog, DecompilerBackend defaultBackend) {
+        this.cache = cache;
+        this.watchdog = watchdog;
+        this.defaultBackend = defaultBackend;
+    }
+
+    public DecompilationCache getCache() {
+        return cache;
+    }
+
+    public DecompileWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    public DecompilerBackend getDefaultBackend() {
+        return defaultBackend;
+    }
+
+    /**
+     * 结束看门狗的工作进程。
+     */
+    @Override
+    public void close() {
+        if (watchdog != null) {
+            watchdog.close();
+        }
+    }
 
     /**
      * 反编译单个.class文件的字节数组。
@@ -25,73 +77,135 @@ public class JarDecompiler {
      * @throws DecompilationException
      */
     public String decompile(byte[] classBytes, String entryName) throws DecompilationException {
-        try {
-            // 反编译器所需的核心组件
-            // IBytecodeProvider: 从内存中提供字节码
-            IBytecodeProvider bytecodeProvider = (externalPath, internalPath) -> classBytes;
-            // 反编译结果保存在内存中
-            InMemoryResultSaver resultSaver = new InMemoryResultSaver();
-            // 配置选项
-            Map<String, Object> options = new HashMap<>();
-            options.put("dgs", "1");
-            options.put("asc", "1");
-            // 创建并配置核心反编译器 Fernflower
-            Fernflower fernflower = new Fernflower(bytecodeProvider, resultSaver, options, new PrintStreamLogger(System.out));
-
-            // 将需要反编译的“源”添加到反编译器上下文中
-            fernflower.addSource(new File(entryName));
-
-            // 执行反编译
-            fernflower.decompileContext();
-
-            // 从内存中获取结果
-            String decompiledSource = resultSaver.getSourceCode();
-            if (decompiledSource == null) {
-                throw new DecompilationException("反编译完成，但未能从结果中获取源代码 for " + entryName);
-            }
-            return decompiledSource;
-
-        } catch (Exception e) {
-            throw new DecompilationException("反编译 " + entryName + " 时发生严重错误。", e);
-        }
+        return decompile(classBytes, entryName, null);
     }
 
     /**
-     * IResultSaver的内存实现，用于捕获反编译后的源代码。
+     * 反编译单个.class文件的字节数组，先查询反编译缓存，未命中时才交给后端。
+     *
+     * @param classBytes .class文件的字节内容
+     * @param entryName  JAR包中条目的名称，eg: "com/example/MyClass.class"
+     * @param classHash  字节码的SHA-256，为null时按需计算
+     * @return 反编译后的Java源代码字符串
+     * @throws DecompilationException
      */
-    private static class InMemoryResultSaver implements IResultSaver {
-        private String sourceCode;
+    public String decompile(byte[] classBytes, String entryName, byte[] classHash) throws DecompilationException {
+        return decompile(ClassGroup.of(entryName, classBytes, classHash));
+    }
 
-        @Override
-        public void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping) {
-            this.sourceCode = content;
-        }
+    /**
+     * 单独反编译一组类。
+     *
+     * @return 顶层类的源代码
+     * @throws DecompilationException 反编译失败或未能得到顶层类的源码
+     */
+    public String decompile(ClassGroup group) throws DecompilationException {
+        return decompile(defaultBackend, group);
+    }
 
-        public String getSourceCode() {
-            return this.sourceCode;
+    /**
+     * 使用指定的后端单独反编译一组类。
+     *
+     * @return 顶层类的源代码
+     * @throws DecompilationException 反编译失败或未能得到顶层类的源码
+     */
+    public String decompile(DecompilerBackend backend, ClassGroup group) throws DecompilationException {
+        String source = decompileBatch(backend, Collections.singletonList(group)).get(group.getPrimaryEntry());
+        if (source == null) {
+            throw new DecompilationException("反编译完成，但未能从结果中获取源代码 for " + group.getPrimaryEntry());
         }
+        return source;
+    }
 
-        @Override
-        public void saveFolder(String path) { }
-
-        @Override
-        public void copyFile(String source, String path, String entryName) { }
+    /**
+     * 使用默认后端批量反编译多组类，见 {@link #decompileBatch(DecompilerBackend, List)}。
+     */
+    public Map<String, String> decompileBatch(List<ClassGroup> groups) throws DecompilationException {
+        return decompileBatch(defaultBackend, groups);
+    }
 
-        @Override
-        public void createArchive(String path, String archiveName, Manifest manifest) { }
+    /**
+     * 在同一个后端上下文中批量反编译多组类，避免为每个类重复创建反编译器，
+     * 同时让Fernflower能够看到内部类与外部类之间的关系。已缓存的分组不会进入反编译上下文。
+     *
+     * @param groups 需要反编译的分组（通常是同一个JAR同一侧的所有变更类）
+     * @return 顶层类条目名 -> 源代码；未能得到源码的分组不在结果中，调用方可对其单独重试
+     * @throws DecompilationException 反编译上下文整体失败
+     */
+    public Map<String, String> decompileBatch(DecompilerBackend backend, List<ClassGroup> groups) throws DecompilationException {
+        Map<String, String> sources = new HashMap<>();
+        List<ClassGroup> pending = new ArrayList<>();
+        for (ClassGroup group : groups) {
+            String cached = (cache != null) ? cache.get(cacheKey(backend, group)) : null;
+            if (cached != null) {
+                sources.put(group.getPrimaryEntry(), cached);
+            } else {
+                pending.add(group);
+            }
+        }
+        if (pending.isEmpty()) {
+            return sources;
+        }
 
-        @Override
-        public void saveDirEntry(String path, String archiveName, String entryName) { }
+        long bytes = 0;
+        for (ClassGroup group : pending) {
+            bytes += group.getSize();
+        }
+        Map<String, String> decompiled;
+        // 只统计实际交给后端的部分，缓存命中不计入反编译阶段
+        try (PerformanceProfiler.Scope ignored = PerformanceProfiler.start(PerformanceProfiler.Phase.DECOMPILE, null,
+                formatClassName(pending.get(0).getPrimaryEntry()), pending.size(), bytes)) {
+            decompiled = watchdog != null
+                    ? watchdog.runInProcess(() -> backend.decompile(pending), pending.size(),
+                            "批量反编译 " + pending.size() + " 组类（首个类: " + pending.get(0).getPrimaryEntry() + "）")
+                    : backend.decompile(pending);
+        }
+        for (ClassGroup group : pending) {
+            String source = decompiled.get(group.getPrimaryEntry());
+            if (source != null) {
+                sources.put(group.getPrimaryEntry(), source);
+                if (cache != null) {
+                    cache.put(cacheKey(backend, group), source);
+                }
+            }
+        }
+        return sources;
+    }
 
-        @Override
-        public void copyEntry(String source, String path, String archiveName, String entry) { }
+    /**
+     * 单独反编译一组类，用于批量反编译失败后的逐个重试。配置了看门狗时在隔离的工作进程中进行，
+     * 挂起或内存溢出只影响这一组类。
+     *
+     * @return 顶层类的源代码
+     * @throws DecompilationException 反编译失败、超时或超出内存上限
+     */
+    public String decompileIsolated(DecompilerBackend backend, ClassGroup group) throws DecompilationException {
+        if (watchdog == null) {
+            return decompile(backend, group);
+        }
+        String cached = (cache != null) ? cache.get(cacheKey(backend, group)) : null;
+        if (cached != null) {
+            return cached;
+        }
+        String source;
+        try (PerformanceProfiler.Scope ignored = PerformanceProfiler.start(PerformanceProfiler.Phase.DECOMPILE_ISOLATED, null,
+                formatClassName(group.getPrimaryEntry()), 1, group.getSize())) {
+            source = watchdog.decompileIsolated(backend, group);
+        }
+        if (cache != null) {
+            cache.put(cacheKey(backend, group), source);
+        }
+        return source;
+    }
 
-        @Override
-        public void closeArchive(String path, String archiveName) { }
+    private static String formatClassName(String entryName) {
+        return entryName.replace(".class", "").replace('/', '.');
+    }
 
-        @Override
-        public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
-            this.sourceCode = content;
-        }
+    /**
+     * 缓存键包含后端的标识、版本和选项，不同后端的结果互不混用。
+     */
+    private static String cacheKey(DecompilerBackend backend, ClassGroup group) {
+        return DecompilationCache.key(group.getContentHash(), backend.getId() + "@" + backend.getVersion(), backend.getOptions());
     }
-}
\ No newline at end of file
+}
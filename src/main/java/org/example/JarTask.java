@@ -0,0 +1,200 @@
+package org.example;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一对JAR在比较流水线中流转的工作单元，各阶段依次向其中填充数据。
+ * 同一时刻只会被一个阶段的一个线程持有，阶段之间通过阻塞队列交接。
+ */
+class JarTask {
+
+    private final long sequence;
+    private final String jarName;
+    private final File oldJar;
+    private final File newJar;
+    private final List<ClassTask> changedClasses = new ArrayList<>();
+    private ComparisonResult result;
+    private byte[] oldJarHash;
+    private byte[] newJarHash;
+    /** 为true表示结果已经确定（未变更、新增、删除或顶层错误），后续阶段直接放行 */
+    private boolean settled;
+
+    JarTask(long sequence, String jarName, File oldJar, File newJar) {
+        this.sequence = sequence;
+        this.jarName = jarName;
+        this.oldJar = oldJar;
+        this.newJar = newJar;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    String getJarName() {
+        return jarName;
+    }
+
+    File getOldJar() {
+        return oldJar;
+    }
+
+    File getNewJar() {
+        return newJar;
+    }
+
+    List<ClassTask> getChangedClasses() {
+        return changedClasses;
+    }
+
+    byte[] getOldJarHash() {
+        return oldJarHash;
+    }
+
+    byte[] getNewJarHash() {
+        return newJarHash;
+    }
+
+    void setJarHashes(byte[] oldJarHash, byte[] newJarHash) {
+        this.oldJarHash = oldJarHash;
+        this.newJarHash = newJarHash;
+    }
+
+    ComparisonResult getResult() {
+        return result;
+    }
+
+    void setResult(ComparisonResult result) {
+        this.result = result;
+    }
+
+    boolean isSettled() {
+        return settled;
+    }
+
+    /**
+     * 直接确定最终结果，跳过剩余阶段。
+     */
+    void settle(ComparisonResult finalResult) {
+        this.result = finalResult;
+        this.settled = true;
+    }
+
+    /**
+     * 单个发生变化的类（连同其内部类）在各阶段之间的中间数据。
+     */
+    static class ClassTask {
+        private final String entryName;
+        private ClassGroup oldGroup;
+        private ClassGroup newGroup;
+        private String oldSource;
+        private String newSource;
+        private DecompilationException failure;
+        private String nonLogicalReason;
+        private List<MemberChange> memberChanges = Collections.emptyList();
+        private int omittedMethods;
+        /** 原始类组的内容哈希，类组被裁剪或释放之后依然可用 */
+        private final byte[] oldHash;
+        private final byte[] newHash;
+
+        ClassTask(String entryName, ClassGroup oldGroup, ClassGroup newGroup) {
+            this.entryName = entryName;
+            this.oldGroup = oldGroup;
+            this.newGroup = newGroup;
+            this.oldHash = oldGroup.getContentHash();
+            this.newHash = newGroup.getContentHash();
+        }
+
+        /**
+         * @return 顶层类的条目名
+         */
+        String getEntryName() {
+            return entryName;
+        }
+
+        ClassGroup getOldGroup() {
+            return oldGroup;
+        }
+
+        ClassGroup getNewGroup() {
+            return newGroup;
+        }
+
+        byte[] getOldHash() {
+            return oldHash;
+        }
+
+        byte[] getNewHash() {
+            return newHash;
+        }
+
+        /**
+         * 反编译完成后释放字节码，避免在途JAR占用过多内存。
+         */
+        void releaseBytes() {
+            this.oldGroup = null;
+            this.newGroup = null;
+        }
+
+        String getOldSource() {
+            return oldSource;
+        }
+
+        void setOldSource(String oldSource) {
+            this.oldSource = oldSource;
+        }
+
+        String getNewSource() {
+            return newSource;
+        }
+
+        void setNewSource(String newSource) {
+            this.newSource = newSource;
+        }
+
+        DecompilationException getFailure() {
+            return failure;
+        }
+
+        void setFailure(DecompilationException failure) {
+            this.failure = failure;
+        }
+
+        /**
+         * @return 字节码规范化判定为非逻辑性差异时的原因说明，否则为null
+         */
+        String getNonLogicalReason() {
+            return nonLogicalReason;
+        }
+
+        void setNonLogicalReason(String nonLogicalReason) {
+            this.nonLogicalReason = nonLogicalReason;
+        }
+
+        /**
+         * @return 字节码分析识别出的成员级变更；未进行分析时为空列表
+         */
+        List<MemberChange> getMemberChanges() {
+            return memberChanges;
+        }
+
+        void setMemberChanges(List<MemberChange> memberChanges) {
+            this.memberChanges = memberChanges;
+        }
+
+        int getOmittedMethods() {
+            return omittedMethods;
+        }
+
+        /**
+         * 用裁剪掉未变化方法之后的类组替换原始类组。
+         */
+        void scope(ClassGroup oldGroup, ClassGroup newGroup, int omittedMethods) {
+            this.oldGroup = oldGroup;
+            this.newGroup = newGroup;
+            this.omittedMethods = omittedMethods;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 以JSON Lines格式流式输出比较结果，供CI流水线解析和设置门禁。
+ * <p>
+ * 每个JAR输出一条 {@code "record":"jar"} 记录，随后是它的每个差异各一条记录（类差异为 {@code "class"}，
+ * 带有JAR的状态和两侧类的内容哈希；新增/删除类等通用信息为 {@code "info"}；JAR无法读取等不属于具体类的错误为 {@code "error"}），
+ * 关闭时输出一条 {@code "summary"} 汇总记录。
+ * 记录直接逐字符写入输出，不构建中间对象，写完一个JAR后立即刷新；除各类计数外不保留任何结果。
+ * <p>
+ * 作为 {@link ComparisonListener} 订阅比较过程，在JAR比较完成后立即输出。
+ */
+public class JsonlWriter implements ComparisonListener, Closeable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final boolean includeHunks;
+    private final ComparisonGate gate;
+    private final Map<ComparisonResult.Status, Integer> jarCounts = new EnumMap<>(ComparisonResult.Status.class);
+    private final Map<DiffDetail.DiffType, Integer> classCounts = new EnumMap<>(DiffDetail.DiffType.class);
+    private boolean closed;
+
+    /**
+     * @param out          输出目标，关闭本对象时一并关闭
+     * @param includeHunks 类记录中是否包含差异块的行范围
+     * @param failOn       出现哪些类型的差异时以非0退出码结束，见 {@link ComparisonGate}
+     */
+    public JsonlWriter(Writer out, boolean includeHunks, Set<DiffDetail.DiffType> failOn) {
+        this.out = out;
+        this.includeHunks = includeHunks;
+        this.gate = new ComparisonGate(failOn);
+    }
+
+    /**
+     * 输出一个JAR及其所有差异的记录。I/O错误以 {@link UncheckedIOException} 抛出。
+     */
+    public synchronized void accept(ComparisonResult result) {
+        try {
+            write(result);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入JSONL记录失败: " + result.getJarName(), e);
+        }
+    }
+
+    /**
+     * 未变更的JAR不输出记录。
+     */
+    @Override
+    public void onJarCompleted(ComparisonResult result) {
+        if (result.getStatus() != ComparisonResult.Status.UNCHANGED) {
+            accept(result);
+        }
+    }
+
+    /**
+     * @return 已输出结果对应的退出码，见 {@link ComparisonGate#exitCode()}
+     */
+    public int exitCode() {
+        return gate.exitCode();
+    }
+
+    /**
+     * 输出汇总记录并关闭输出。
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeSummary();
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void write(ComparisonResult result) throws IOException {
+        gate.accept(result);
+        increment(jarCounts, result.getStatus());
+        List<DiffDetail> details = result.getDiffDetails();
+
+        out.write("{\"record\":\"jar\",\"jar\":");
+        writeString(result.getJarName());
+        out.write(",\"status\":\"");
+        out.write(result.getStatus().name());
+        out.write('"');
+        if (result.getOldJarHash() != null) {
+            out.write(",\"oldHash\":");
+            writeHex(result.getOldJarHash());
+        }
+        if (result.getNewJarHash() != null) {
+            out.write(",\"newHash\":");
+            writeHex(result.getNewJarHash());
+        }
+        out.write(",\"classes\":{");
+        boolean first = true;
+        for (DiffDetail.DiffType type : DiffDetail.DiffType.values()) {
+            int count = 0;
+            for (DiffDetail detail : details) {
+                if (detail.getType() == type && !DiffDetail.GENERAL_INFO.equals(detail.getClassName())) count++;
+            }
+            if (!first) out.write(',');
+            first = false;
+            out.write('"');
+            out.write(type.name());
+            out.write("\":");
+            out.write(Integer.toString(count));
+        }
+        out.write("}}\n");
+
+        for (DiffDetail detail : details) {
+            if (DiffDetail.GENERAL_INFO.equals(detail.getClassName())) {
+                writeInfo(detail.getType() == DiffDetail.DiffType.ERROR ? "error" : "info", result.getJarName(), detail);
+            } else {
+                increment(classCounts, detail.getType());
+                writeClass(result, detail);
+            }
+        }
+    }
+
+    private void writeInfo(String record, String jarName, DiffDetail detail) throws IOException {
+        out.write("{\"record\":\"");
+        out.write(record);
+        out.write("\",\"jar\":");
+        writeString(jarName);
+        out.write(",\"messages\":[");
+        List<String> messages = detail.getDiffContent();
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) out.write(',');
+            writeString(messages.get(i).trim());
+        }
+        out.write("]}\n");
+    }
+
+    private void writeClass(ComparisonResult result, DiffDetail detail) throws IOException {
+        out.write("{\"record\":\"class\",\"jar\":");
+        writeString(result.getJarName());
+        out.write(",\"status\":\"");
+        out.write(result.getStatus().name());
+        out.write("\",\"class\":");
+        writeString(detail.getClassName());
+        out.write(",\"type\":\"");
+        out.write(detail.getType().name());
+        out.write('"');
+        if (detail.getOldHash() != null) {
+            out.write(",\"oldHash\":");
+            writeHex(detail.getOldHash());
+        }
+        if (detail.getNewHash() != null) {
+            out.write(",\"newHash\":");
+            writeHex(detail.getNewHash());
+        }
+
+        int added = 0;
+        int removed = 0;
+        int modified = 0;
+        for (MemberChange change : detail.getChangedMembers()) {
+            switch (change.getChangeType()) {
+                case ADDED: added++; break;
+                case REMOVED: removed++; break;
+                default: modified++; break;
+            }
+        }
+        out.write(",\"members\":{\"added\":");
+        out.write(Integer.toString(added));
+        out.write(",\"removed\":");
+        out.write(Integer.toString(removed));
+        out.write(",\"modified\":");
+        out.write(Integer.toString(modified));
+        out.write('}');
+
+        List<DiffHunk> hunks = detail.getHunks();
+        int deletedLines = 0;
+        int insertedLines = 0;
+        for (DiffHunk hunk : hunks) {
+            deletedLines += hunk.getOldEnd() - hunk.getOldStart();
+            insertedLines += hunk.getNewEnd() - hunk.getNewStart();
+        }
+        out.write(",\"lines\":{\"deleted\":");
+        out.write(Integer.toString(deletedLines));
+        out.write(",\"inserted\":");
+        out.write(Integer.toString(insertedLines));
+        out.write('}');
+
+        if (includeHunks) {
+            out.write(",\"hunks\":[");
+            for (int i = 0; i < hunks.size(); i++) {
+                DiffHunk hunk = hunks.get(i);
+                if (i > 0) out.write(',');
+                out.write("{\"type\":\"");
+                out.write(hunk.getType().name());
+                out.write("\",\"old\":[");
+                out.write(Integer.toString(hunk.getOldStart()));
+                out.write(',');
+                out.write(Integer.toString(hunk.getOldEnd()));
+                out.write("],\"new\":[");
+                out.write(Integer.toString(hunk.getNewStart()));
+                out.write(',');
+                out.write(Integer.toString(hunk.getNewEnd()));
+                out.write("]}");
+            }
+            out.write(']');
+        }
+        out.write("}\n");
+    }
+
+    private void writeSummary() throws IOException {
+        out.write("{\"record\":\"summary\",\"jars\":{");
+        boolean first = true;
+        for (ComparisonResult.Status status : ComparisonResult.Status.values()) {
+            if (status == ComparisonResult.Status.UNCHANGED) continue;
+            if (!first) out.write(',');
+            first = false;
+            out.write('"');
+            out.write(status.name());
+            out.write("\":");
+            out.write(Integer.toString(count(jarCounts, status)));
+        }
+        out.write("},\"classes\":{");
+        first = true;
+        for (DiffDetail.DiffType type : DiffDetail.DiffType.values()) {
+            if (!first) out.write(',');
+            first = false;
+            out.write('"');
+            out.write(type.name());
+            out.write("\":");
+            out.write(Integer.toString(count(classCounts, type)));
+        }
+        out.write("},\"failOn\":[");
+        first = true;
+        for (DiffDetail.DiffType type : gate.getFailOn()) {
+            if (!first) out.write(',');
+            first = false;
+            out.write('"');
+            out.write(type.name());
+            out.write('"');
+        }
+        out.write("],\"exitCode\":");
+        out.write(Integer.toString(exitCode()));
+        out.write("}\n");
+    }
+
+    private void writeString(String value) throws IOException {
+        writeJsonString(out, value);
+    }
+
+    /**
+     * 写出JSON字符串，连续的无需转义的字符整段写出。
+     */
+    static void writeJsonString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        int runStart = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(value, runStart, i - runStart);
+            runStart = i + 1;
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    out.write("\\u00");
+                    out.write(HEX[(c >> 4) & 0xF]);
+                    out.write(HEX[c & 0xF]);
+            }
+        }
+        out.write(value, runStart, value.length() - runStart);
+        out.write('"');
+    }
+
+    private void writeHex(byte[] bytes) throws IOException {
+        out.write('"');
+        for (byte b : bytes) {
+            out.write(HEX[(b >> 4) & 0xF]);
+            out.write(HEX[b & 0xF]);
+        }
+        out.write('"');
+    }
+
+    private static <K> void increment(Map<K, Integer> counts, K key) {
+        counts.merge(key, 1, Integer::sum);
+    }
+
+    private static <K> int count(Map<K, Integer> counts, K key) {
+        return counts.getOrDefault(key, 0);
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import java.util.List;
+
+/**
+ * 两份源码的行级差异结果。
+ */
+public class LineDiff {
+
+    private final List<String> oldLines;
+    private final List<String> newLines;
+    private final List<LineEdit> edits;
+    private final String fallbackReason;
+
+    /**
+     * @param fallbackReason 精确比对超出预算、退化为粗粒度差异时的原因；精确比对时为null
+     */
+    public LineDiff(List<String> oldLines, List<String> newLines, List<LineEdit> edits, String fallbackReason) {
+        this.oldLines = oldLines;
+        this.newLines = newLines;
+        this.edits = edits;
+        this.fallbackReason = fallbackReason;
+    }
+
+    public List<String> getOldLines() {
+        return oldLines;
+    }
+
+    public List<String> getNewLines() {
+        return newLines;
+    }
+
+    public List<LineEdit> getEdits() {
+        return edits;
+    }
+
+    /**
+     * @return 是否因超出预算而退化为粗粒度差异，此时不再进行字符级细化
+     */
+    public boolean isCoarse() {
+        return fallbackReason != null;
+    }
+
+    public String getFallbackReason() {
+        return fallbackReason;
+    }
+
+    /**
+     * @return 两侧内容是否完全相同
+     */
+    public boolean isIdentical() {
+        return edits.stream().allMatch(edit -> edit.getType() == LineEdit.Type.EQUAL);
+    }
+}
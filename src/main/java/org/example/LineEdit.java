@@ -0,0 +1,58 @@
+package org.example;
+
+/**
+ * 行级差异中的一个编辑操作，描述旧源码的一段行区间如何对应到新源码的一段行区间。
+ * 行号从0开始，区间为左闭右开。
+ */
+public class LineEdit {
+
+    public enum Type {
+        /** 两侧内容相同 */
+        EQUAL,
+        /** 只存在于旧源码中的行 */
+        DELETE,
+        /** 只存在于新源码中的行 */
+        INSERT,
+        /** 旧源码中的一段行被替换为新源码中的另一段行 */
+        CHANGE
+    }
+
+    private final Type type;
+    private final int oldStart;
+    private final int oldEnd;
+    private final int newStart;
+    private final int newEnd;
+
+    public LineEdit(Type type, int oldStart, int oldEnd, int newStart, int newEnd) {
+        this.type = type;
+        this.oldStart = oldStart;
+        this.oldEnd = oldEnd;
+        this.newStart = newStart;
+        this.newEnd = newEnd;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getOldStart() {
+        return oldStart;
+    }
+
+    public int getOldEnd() {
+        return oldEnd;
+    }
+
+    public int getNewStart() {
+        return newStart;
+    }
+
+    public int getNewEnd() {
+        return newEnd;
+    }
+
+    @Override
+    public String toString() {
+        return type + " old[" + oldStart + "," + oldEnd + ") new[" + newStart + "," + newEnd + ")";
+    }
+}
@@ -0,0 +1,168 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分级的异步控制台日志。调用线程只把消息放入有界队列，由单独的守护线程写出，
+ * 反编译和比对线程不会因为争用控制台输出而相互阻塞；队列满时调用线程等待，消息不会丢失。
+ * <p>
+ * INFO和DEBUG写到标准输出，WARN和ERROR写到标准错误。目标流在写出时才取 {@link System#out}/{@link System#err}，
+ * 因此调用方重定向标准输出之前应先调用 {@link #flush()}，进程退出时剩余的消息也会被写出。
+ */
+public final class Log {
+
+    public enum Level {
+        ERROR, WARN, INFO, DEBUG
+    }
+
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final BlockingQueue<Record> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static volatile Level threshold = Level.INFO;
+
+    static {
+        Thread writer = new Thread(Log::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(2, TimeUnit.SECONDS), "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    /**
+     * 按名称解析日志级别，不区分大小写。
+     *
+     * @throws IllegalArgumentException 无法识别的级别
+     */
+    public static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无法识别的日志级别: " + name + "，可选值: error, warn, info, debug");
+        }
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) <= 0;
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(String message, Throwable throwable) {
+        log(Level.ERROR, message, throwable);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    /**
+     * @param throwable 不为null时在消息之后输出其堆栈
+     */
+    public static void log(Level level, String message, Throwable throwable) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        enqueue(new Record(level, message, throwable, null));
+    }
+
+    /**
+     * 等待此前放入队列的消息全部写出。
+     */
+    public static void flush() {
+        flush(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private static void flush(long timeout, TimeUnit unit) {
+        CountDownLatch written = new CountDownLatch(1);
+        enqueue(new Record(null, null, null, written));
+        try {
+            written.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void enqueue(Record record) {
+        try {
+            QUEUE.put(record);
+        } catch (InterruptedException e) {
+            // 保留中断状态，这条消息直接写出
+            Thread.currentThread().interrupt();
+            write(record);
+        }
+    }
+
+    private static void drain() {
+        while (true) {
+            try {
+                write(QUEUE.take());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // 写出失败（如流已关闭）不能让写出线程退出，否则调用方会在队列满后永远等待
+            }
+        }
+    }
+
+    private static void write(Record record) {
+        if (record.written != null) {
+            System.out.flush();
+            System.err.flush();
+            record.written.countDown();
+            return;
+        }
+        PrintStream out = record.level.compareTo(Level.WARN) <= 0 ? System.err : System.out;
+        if (record.throwable == null) {
+            out.println(record.message);
+            return;
+        }
+        StringWriter stackTrace = new StringWriter();
+        record.throwable.printStackTrace(new PrintWriter(stackTrace));
+        out.println(record.message);
+        out.print(stackTrace);
+    }
+
+    /**
+     * 队列中的一条消息；{@code written} 不为null时是 {@link #flush()} 的标记。
+     */
+    private static final class Record {
+        private final Level level;
+        private final String message;
+        private final Throwable throwable;
+        private final CountDownLatch written;
+
+        Record(Level level, String message, Throwable throwable, CountDownLatch written) {
+            this.level = level;
+            this.message = message;
+            this.throwable = throwable;
+            this.written = written;
+        }
+    }
+}
@@ -1,127 +1,128 @@
 package org.example;
 
-import javax.swing.*;
-import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.PrintStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Map;
 
 /**
- * 入口。
+ * 入口。默认以命令行方式运行，不会加载任何 Swing/AWT 类，可以在无界面的构建机上使用；
+ * 指定 --gui 时改用 {@link SwingFrontEnd} 的对话框流程，指定 --daemon 时作为 {@link ComparisonDaemon} 常驻，
+ * 指定 --submit/--status 时作为守护进程的客户端。
  */
 public class Main {
 
+    /** 新旧文件夹中的JAR超过该数量时图形界面生成分片报告，单个HTML文件在浏览器中已难以打开；比较之前无法知道有差异的JAR数量 */
+    static final int SHARDED_REPORT_THRESHOLD = 30;
+
+    /** 命令行参数错误 */
+    static final int EXIT_USAGE = 3;
+    /** 比较或生成报告的过程中发生异常 */
+    static final int EXIT_FAILURE = 4;
+
     public static void main(String[] args) {
+        CommandLine line;
         try {
-            UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
-        } catch (Exception e) {
-            System.err.println("无法设置Nimbus外观，将使用默认外观。");
+            line = CommandLine.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("参数错误: " + e.getMessage());
+            System.err.println();
+            System.err.println(CommandLine.USAGE);
+            System.exit(EXIT_USAGE);
+            return;
         }
-
-        System.out.println("--- JAR包深度比对工具开始初始化 ---");
-        // 弹出欢迎和说明对话框
-        JOptionPane.showMessageDialog(null,
-                "欢迎使用JAR包深度比对工具。\n\n您将需要依次选择两个文件夹：\n1. 旧版本 (V1) 的文件夹。\n2. 新版本 (V2) 的文件夹。\n\n程序将对这两个文件夹内的所有JAR包进行深度比对。",
-                "欢迎", JOptionPane.INFORMATION_MESSAGE);
-
-        // 通过图形界面获取文件夹路径
-        File oldDir = selectDirectory("请选择旧版本 (V1) 的JAR包所在文件夹");
-        if (oldDir == null) {
-            System.out.println("操作已取消。程序退出。");
+        if (line.isHelp()) {
+            System.out.println(CommandLine.USAGE);
             return;
         }
-
-        File newDir = selectDirectory("请选择新版本 (V2) 的JAR包所在文件夹");
-        if (newDir == null) {
-            System.out.println("操作已取消。程序退出。");
+        Log.setLevel(line.getLogLevel());
+        if (line.isGui()) {
+            // 仅在这里引用界面类，命令行模式下 SwingFrontEnd 及其依赖的 Swing 类不会被加载
+            SwingFrontEnd.run();
             return;
         }
-
-        System.out.println("准备比较以下文件夹:");
-        System.out.println("  旧文件夹: " + oldDir.getAbsolutePath());
-        System.out.println("  新文件夹: " + newDir.getAbsolutePath());
-        System.out.println("----------------------------------------");
-
-        try {
-            // 核心的比较逻辑
-            FolderComparator folderComparator = new FolderComparator(oldDir, newDir);
-            List<ComparisonResult> results = folderComparator.compare();
-            System.out.println("\n比较流程已完成，正在生成HTML报告...");
-
-            // 报告生成器
-            ReportGenerator reportGenerator = new ReportGenerator();
-            Map<String, String> reports = reportGenerator.generate(results, oldDir.getName(), newDir.getName());
-
-            // 不同报告写入到不同的HTML文件中
-            Path mainReportPath = writeReportToFile("main_report", reports.get("main_report"), newDir);
-            Path nonLogicalReportPath = writeReportToFile("non_logical_report", reports.get("non_logical_report"), newDir);
-
-            String successMessage = "报告生成完毕！\n\n"
-                    + "您现在可以用浏览器打开以下文件查看详细报告：\n\n"
-                    + "▶ 核心差异报告:\n" + mainReportPath.toAbsolutePath() + "\n\n"
-                    + "▶ 非逻辑性差异报告:\n" + nonLogicalReportPath.toAbsolutePath() + "\n";
-            System.out.println("\n--- 报告生成完毕 ---");
-            System.out.println(successMessage);
-            JOptionPane.showMessageDialog(null, successMessage, "操作成功", JOptionPane.INFORMATION_MESSAGE);
-
-        } catch (Exception e) {
-            System.err.println("\n在程序执行过程中发生严重错误:");
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "发生严重错误，详情请查看控制台日志。\n错误: " + e.getMessage(), "程序错误", JOptionPane.ERROR_MESSAGE);
+        int exitCode;
+        if (line.isDaemon()) {
+            exitCode = runDaemon(line);
+            if (exitCode < 0) {
+                // HTTP服务线程会让进程保持运行
+                return;
+            }
+        } else if (line.isSubmit() || line.getStatusJobId() != null) {
+            exitCode = runClient(line);
+        } else {
+            exitCode = runHeadless(line);
         }
-
-        System.out.println("\n--- 程序执行结束 ---");
+        System.exit(exitCode);
     }
 
     /**
-     * 打开一个图形化的文件夹选择对话框，并返回用户选择的文件夹。
-     * @param title 对话框的标题
-     * @return 用户选择的文件夹File对象，如果取消则返回null
+     * 按命令行参数在本进程中执行一次比较并输出所有请求的格式。
+     * @return 进程退出码，见 {@link ComparisonGate} 与 {@link #EXIT_USAGE}、{@link #EXIT_FAILURE}
      */
-    private static File selectDirectory(String title) {
-        JFileChooser chooser = new JFileChooser();
-        chooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
-        chooser.setDialogTitle(title);
-        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-        chooser.setAcceptAllFileFilterUsed(false);
-
-        if (chooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
-            return chooser.getSelectedFile();
-        } else {
-            return null;
+    static int runHeadless(CommandLine line) {
+        PrintStream stdout = System.out;
+        if (line.getFormats().contains(CommandLine.Format.JSONL) && "-".equals(line.getJsonlOutput())) {
+            // 标准输出留给JSONL记录，进度信息改写到标准错误
+            System.setOut(System.err);
+        }
+        int exitCode;
+        try (JarComparator jarComparator = new JarComparator(line.getOptions())) {
+            ComparisonRun run = new ComparisonRun(line, jarComparator);
+            printStartupTime();
+            exitCode = run.execute(stdout);
+            for (Map.Entry<String, Path> output : run.getOutputs().entrySet()) {
+                Log.info(output.getKey() + ": " + output.getValue());
+            }
+        } catch (Exception e) {
+            Log.error("\n在程序执行过程中发生严重错误:", e);
+            return EXIT_FAILURE;
+        } finally {
+            // 队列中的进度信息必须在恢复标准输出之前写出，否则会混入JSONL记录
+            Log.flush();
+            System.setOut(stdout);
         }
+        System.err.println("\n--- 程序执行结束，退出码 " + exitCode + " ---");
+        return exitCode;
     }
 
     /**
-     * 将HTML报告内容写入一个带时间戳的文件，并返回生成的文件路径。
-     * @param reportType 报告类型，用于构成文件名 (如 "main_report")
-     * @param reportContent 要写入的HTML报告全文
-     * @param referenceDir 用于确定报告保存位置的参考目录
-     * @return 生成的文件的Path对象
-     * @throws IOException
+     * 启动守护进程，进程在收到终止信号前一直运行。
      */
-    private static Path writeReportToFile(String reportType, String reportContent, File referenceDir) throws IOException {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
-        String timestamp = LocalDateTime.now().format(formatter);
-
-        if (reportContent == null || reportContent.isEmpty()) {
-            System.out.println("报告类型 '" + reportType + "' 内容为空，跳过文件生成。");
-            return Paths.get(referenceDir.getParent(), "empty_report.tmp");
+    private static int runDaemon(CommandLine line) {
+        try {
+            ComparisonDaemon daemon = new ComparisonDaemon(line.getOptions(), line.getPort(), line.getMaxJobs());
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "daemon-shutdown"));
+            daemon.start();
+            return -1;
+        } catch (IOException e) {
+            Log.error("无法启动守护进程: " + e.getMessage());
+            return EXIT_FAILURE;
         }
+    }
 
-        String fileName = "jar_comparison_" + reportType + "_" + timestamp + ".html";
-
-        // 将报告生成在用户选择的新版本文件夹的父目录下
-        Path filePath = Paths.get(referenceDir.getParent(), fileName);
-
-        Files.writeString(filePath, reportContent, StandardCharsets.UTF_8);
+    private static int runClient(CommandLine line) {
+        DaemonClient client = new DaemonClient(line.getPort());
+        try {
+            return line.getStatusJobId() != null
+                    ? client.status(line.getStatusJobId())
+                    : client.submit(line, line.isWaitForJob());
+        } catch (IOException e) {
+            System.err.println("无法连接端口 " + line.getPort() + " 上的守护进程: " + e.getMessage());
+            return EXIT_FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FAILURE;
+        }
+    }
 
-        return filePath;
+    /**
+     * 打印从JVM启动到开始比较的耗时，用于观察命令行模式的启动开销。
+     */
+    private static void printStartupTime() {
+        ProcessHandle.current().info().startInstant().ifPresent(start ->
+                Log.info("启动耗时: " + Duration.between(start, Instant.now()).toMillis() + " ms（JVM启动至开始比较）"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,168 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按签名把两份规范化源码的顶层成员一一配对，与成员的排列顺序无关。
+ * <p>
+ * 配对用一次哈希查找完成，是线性的；同一签名出现多次时（如多个静态初始化块）优先配对内容相同的成员。
+ * 配对的成员中，按新源码顺序排列时旧源码位置的最长递增子序列保持了相对顺序，作为比对的锚点，其余配对的成员视为被移动。
+ * <p>
+ * 只有方法、构造器和内部类可以任意移动。带初始值的字段、初始化块和枚举常量（见 {@link SourceNormalizer.Member#isOrderSensitive()}）
+ * 之间的相对顺序决定了初始化顺序和 {@code ordinal()}，它们中没有保持相对顺序的成员不配对，按删除和新增比对。
+ */
+final class MemberAlignment {
+
+    private final List<SourceNormalizer.Member> oldMembers;
+    private final List<SourceNormalizer.Member> newMembers;
+    /** 新成员下标 -> 配对的旧成员下标，未配对为-1 */
+    private final int[] newToOld;
+    /** 旧成员下标 -> 配对的新成员下标，未配对为-1 */
+    private final int[] oldToNew;
+    /** 按新成员下标，是否为保持相对顺序的锚点 */
+    private final boolean[] anchor;
+    private final boolean equivalent;
+    private final int moved;
+
+    MemberAlignment(List<SourceNormalizer.Member> oldMembers, List<SourceNormalizer.Member> newMembers) {
+        this.oldMembers = oldMembers;
+        this.newMembers = newMembers;
+        this.newToOld = new int[newMembers.size()];
+        this.oldToNew = new int[oldMembers.size()];
+        Arrays.fill(oldToNew, -1);
+
+        Map<String, List<Integer>> byKey = new HashMap<>();
+        for (int o = 0; o < oldMembers.size(); o++) {
+            byKey.computeIfAbsent(oldMembers.get(o).getKey(), key -> new ArrayList<>(1)).add(o);
+        }
+        boolean[] orderSensitive = new boolean[newMembers.size()];
+        for (int n = 0; n < newMembers.size(); n++) {
+            SourceNormalizer.Member member = newMembers.get(n);
+            List<Integer> candidates = byKey.get(member.getKey());
+            int o = candidates == null || candidates.isEmpty() ? -1 : takeCandidate(candidates, member);
+            newToOld[n] = o;
+            if (o >= 0) {
+                oldToNew[o] = n;
+                orderSensitive[n] = member.isOrderSensitive() || oldMembers.get(o).isOrderSensitive();
+            }
+        }
+        boolean[] keptOrder = longestIncreasingRun(orderSensitive);
+        for (int n = 0; n < newToOld.length; n++) {
+            if (orderSensitive[n] && !keptOrder[n]) {
+                oldToNew[newToOld[n]] = -1;
+                newToOld[n] = -1;
+            }
+        }
+        boolean allSame = oldMembers.size() == newMembers.size();
+        for (int n = 0; n < newToOld.length && allSame; n++) {
+            allSame = newToOld[n] >= 0 && oldMembers.get(newToOld[n]).sameAs(newMembers.get(n));
+        }
+        this.equivalent = allSame;
+        boolean[] paired = new boolean[newToOld.length];
+        for (int n = 0; n < newToOld.length; n++) {
+            paired[n] = newToOld[n] >= 0;
+        }
+        this.anchor = longestIncreasingRun(paired);
+        int matched = 0;
+        int anchors = 0;
+        for (int n = 0; n < newToOld.length; n++) {
+            if (newToOld[n] >= 0) matched++;
+            if (anchor[n]) anchors++;
+        }
+        this.moved = matched - anchors;
+    }
+
+    /**
+     * 取出一个同签名的旧成员：优先内容相同的，否则取最靠前的。
+     */
+    private int takeCandidate(List<Integer> candidates, SourceNormalizer.Member member) {
+        for (int i = 0; i < candidates.size(); i++) {
+            if (oldMembers.get(candidates.get(i)).sameAs(member)) {
+                return candidates.remove(i);
+            }
+        }
+        return candidates.remove(0);
+    }
+
+    /**
+     * 按新成员顺序对选中成员所配对的旧成员下标求最长递增子序列（耐心排序，O(n log n)）。
+     *
+     * @param selected 按新成员下标，是否参与计算；只能选中已配对的成员
+     */
+    private boolean[] longestIncreasingRun(boolean[] selected) {
+        int count = newToOld.length;
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int n = 0; n < count; n++) {
+            if (!selected[n]) {
+                continue;
+            }
+            int o = newToOld[n];
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (newToOld[tails[middle]] < o) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[n] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = n;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] result = new boolean[count];
+        for (int n = length > 0 ? tails[length - 1] : -1; n >= 0; n = previous[n]) {
+            result[n] = true;
+        }
+        return result;
+    }
+
+    List<SourceNormalizer.Member> getOldMembers() {
+        return oldMembers;
+    }
+
+    List<SourceNormalizer.Member> getNewMembers() {
+        return newMembers;
+    }
+
+    /**
+     * @return 配对的旧成员下标，未配对为-1
+     */
+    int oldIndexOf(int newIndex) {
+        return newToOld[newIndex];
+    }
+
+    /**
+     * @return 配对的新成员下标，未配对为-1
+     */
+    int newIndexOf(int oldIndex) {
+        return oldToNew[oldIndex];
+    }
+
+    boolean isAnchor(int newIndex) {
+        return anchor[newIndex];
+    }
+
+    /**
+     * @return 两侧的成员能够一一配对且规范化后内容相同，即两份源码最多只有可以任意移动的成员顺序不同
+     */
+    boolean isEquivalent() {
+        return equivalent;
+    }
+
+    /**
+     * @return 配对但没有保持相对顺序的成员数量
+     */
+    int getMoved() {
+        return moved;
+    }
+}
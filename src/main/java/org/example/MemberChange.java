@@ -0,0 +1,74 @@
+package org.example;
+
+/**
+ * 字节码层面识别出的一个成员级变更（新增、删除或修改的字段/方法，以及类声明本身的变化）。
+ */
+public class MemberChange {
+
+    public enum Kind {
+        /** 类声明（修饰符、父类、接口、注解等）或整个内部类 */
+        CLASS,
+        FIELD,
+        METHOD
+    }
+
+    public enum ChangeType {
+        ADDED,
+        REMOVED,
+        MODIFIED
+    }
+
+    private final String owner;
+    private final Kind kind;
+    private final String name;
+    private final String descriptor;
+    private final ChangeType changeType;
+
+    /**
+     * @param owner      成员所属的类名，eg: "com.example.MyClass$Inner"
+     * @param kind       成员类型
+     * @param name       成员名；类级变更时为null
+     * @param descriptor 成员描述符；类级变更时为null
+     * @param changeType 变更类型
+     */
+    public MemberChange(String owner, Kind kind, String name, String descriptor, ChangeType changeType) {
+        this.owner = owner;
+        this.kind = kind;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.changeType = changeType;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    @Override
+    public String toString() {
+        String symbol = changeType == ChangeType.ADDED ? "+" : changeType == ChangeType.REMOVED ? "-" : "~";
+        switch (kind) {
+            case FIELD:
+                return symbol + " 字段 " + owner + "#" + name + " : " + descriptor;
+            case METHOD:
+                return symbol + " 方法 " + owner + "#" + name + descriptor;
+            default:
+                return symbol + " 类 " + owner;
+        }
+    }
+}
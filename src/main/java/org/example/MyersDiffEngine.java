@@ -0,0 +1,68 @@
+package org.example;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.algorithm.DiffAlgorithmListener;
+import com.github.difflib.algorithm.myers.MeyersDiff;
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.Chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于java-diff-utils的Myers算法的行级差异，是默认的差异算法。
+ * 算法在每一步回调中检查截止时间，超时立即中止。
+ */
+public class MyersDiffEngine implements DiffEngine {
+
+    @Override
+    public List<LineEdit> diff(List<String> oldLines, List<String> newLines, DiffBudget budget) {
+        int totalLines = oldLines.size() + newLines.size();
+        if (totalLines > budget.getMaxLines()) {
+            throw new DiffBudgetExceededException("源码共 " + totalLines + " 行，超过精确比对的上限 " + budget.getMaxLines() + " 行");
+        }
+        long deadline = budget.deadline();
+        DiffAlgorithmListener watchdog = new DiffAlgorithmListener() {
+            @Override
+            public void diffStart() {
+            }
+
+            @Override
+            public void diffStep(int value, int max) {
+                if (System.nanoTime() > deadline) {
+                    throw new DiffBudgetExceededException("行级比对超过 " + budget.getTimeoutMillis() + " 毫秒");
+                }
+            }
+
+            @Override
+            public void diffEnd() {
+            }
+        };
+
+        List<AbstractDelta<String>> deltas = DiffUtils.diff(oldLines, newLines, new MeyersDiff<String>(), watchdog).getDeltas();
+        List<LineEdit> edits = new ArrayList<>(deltas.size() * 2 + 1);
+        int oldPosition = 0;
+        int newPosition = 0;
+        for (AbstractDelta<String> delta : deltas) {
+            Chunk<String> source = delta.getSource();
+            Chunk<String> target = delta.getTarget();
+            if (source.getPosition() > oldPosition) {
+                edits.add(new LineEdit(LineEdit.Type.EQUAL, oldPosition, source.getPosition(),
+                        newPosition, newPosition + source.getPosition() - oldPosition));
+            }
+            oldPosition = source.getPosition() + source.size();
+            newPosition = target.getPosition() + target.size();
+            edits.add(new LineEdit(typeOf(source, target), source.getPosition(), oldPosition, target.getPosition(), newPosition));
+        }
+        if (oldPosition < oldLines.size()) {
+            edits.add(new LineEdit(LineEdit.Type.EQUAL, oldPosition, oldLines.size(), newPosition, newLines.size()));
+        }
+        return edits;
+    }
+
+    private static LineEdit.Type typeOf(Chunk<String> source, Chunk<String> target) {
+        if (source.size() == 0) return LineEdit.Type.INSERT;
+        if (target.size() == 0) return LineEdit.Type.DELETE;
+        return LineEdit.Type.CHANGE;
+    }
+}
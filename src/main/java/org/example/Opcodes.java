@@ -0,0 +1,151 @@
+package org.example;
+
+/**
+ * JVM指令表：助记符、操作数类型以及指令长度计算。
+ */
+final class Opcodes {
+
+    /** 无操作数或只有普通立即数（按原样比较即可） */
+    static final int KIND_PLAIN = 0;
+    /** 1字节常量池索引（ldc） */
+    static final int KIND_CP1 = 1;
+    /** 2字节常量池索引，可能带有额外的立即数（invokeinterface、invokedynamic、multianewarray） */
+    static final int KIND_CP2 = 2;
+    /** 2字节有符号跳转偏移 */
+    static final int KIND_BRANCH2 = 3;
+    /** 4字节有符号跳转偏移 */
+    static final int KIND_BRANCH4 = 4;
+    static final int KIND_TABLESWITCH = 5;
+    static final int KIND_LOOKUPSWITCH = 6;
+    static final int KIND_WIDE = 7;
+
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int IINC = 0x84;
+    static final int GOTO = 0xa7;
+    static final int JSR = 0xa8;
+    static final int TABLESWITCH = 0xaa;
+    static final int LOOKUPSWITCH = 0xab;
+    static final int WIDE = 0xc4;
+    static final int GOTO_W = 0xc8;
+    static final int JSR_W = 0xc9;
+
+    private static final String[] NAMES = (
+            "nop aconst_null iconst_m1 iconst_0 iconst_1 iconst_2 iconst_3 iconst_4 iconst_5 lconst_0 lconst_1 "
+            + "fconst_0 fconst_1 fconst_2 dconst_0 dconst_1 bipush sipush ldc ldc_w ldc2_w iload lload fload dload aload "
+            + "iload_0 iload_1 iload_2 iload_3 lload_0 lload_1 lload_2 lload_3 fload_0 fload_1 fload_2 fload_3 "
+            + "dload_0 dload_1 dload_2 dload_3 aload_0 aload_1 aload_2 aload_3 iaload laload faload daload aaload "
+            + "baload caload saload istore lstore fstore dstore astore istore_0 istore_1 istore_2 istore_3 "
+            + "lstore_0 lstore_1 lstore_2 lstore_3 fstore_0 fstore_1 fstore_2 fstore_3 dstore_0 dstore_1 dstore_2 "
+            + "dstore_3 astore_0 astore_1 astore_2 astore_3 iastore lastore fastore dastore aastore bastore castore "
+            + "sastore pop pop2 dup dup_x1 dup_x2 dup2 dup2_x1 dup2_x2 swap iadd ladd fadd dadd isub lsub fsub dsub "
+            + "imul lmul fmul dmul idiv ldiv fdiv ddiv irem lrem frem drem ineg lneg fneg dneg ishl lshl ishr lshr "
+            + "iushr lushr iand land ior lor ixor lxor iinc i2l i2f i2d l2i l2f l2d f2i f2l f2d d2i d2l d2f i2b i2c "
+            + "i2s lcmp fcmpl fcmpg dcmpl dcmpg ifeq ifne iflt ifge ifgt ifle if_icmpeq if_icmpne if_icmplt "
+            + "if_icmpge if_icmpgt if_icmple if_acmpeq if_acmpne goto jsr ret tableswitch lookupswitch ireturn "
+            + "lreturn freturn dreturn areturn return getstatic putstatic getfield putfield invokevirtual "
+            + "invokespecial invokestatic invokeinterface invokedynamic new newarray anewarray arraylength athrow "
+            + "checkcast instanceof monitorenter monitorexit wide multianewarray ifnull ifnonnull goto_w jsr_w"
+    ).split(" ");
+
+    private static final int[] LENGTHS = new int[256];
+    private static final int[] KINDS = new int[256];
+
+    static {
+        java.util.Arrays.fill(LENGTHS, -1);
+        for (int op = 0; op < NAMES.length; op++) {
+            LENGTHS[op] = 1;
+        }
+        set(0x10, 2, KIND_PLAIN);               // bipush
+        set(0x11, 3, KIND_PLAIN);               // sipush
+        set(LDC, 2, KIND_CP1);
+        set(LDC_W, 3, KIND_CP2);
+        set(0x14, 3, KIND_CP2);                 // ldc2_w
+        for (int op = 0x15; op <= 0x19; op++) set(op, 2, KIND_PLAIN);   // xload
+        for (int op = 0x36; op <= 0x3a; op++) set(op, 2, KIND_PLAIN);   // xstore
+        set(IINC, 3, KIND_PLAIN);
+        for (int op = 0x99; op <= JSR; op++) set(op, 3, KIND_BRANCH2);  // if*, goto, jsr
+        set(0xa9, 2, KIND_PLAIN);               // ret
+        set(TABLESWITCH, 0, KIND_TABLESWITCH);
+        set(LOOKUPSWITCH, 0, KIND_LOOKUPSWITCH);
+        for (int op = 0xb2; op <= 0xb8; op++) set(op, 3, KIND_CP2);     // 字段访问与方法调用
+        set(0xb9, 5, KIND_CP2);                 // invokeinterface
+        set(0xba, 5, KIND_CP2);                 // invokedynamic
+        set(0xbb, 3, KIND_CP2);                 // new
+        set(0xbc, 2, KIND_PLAIN);               // newarray
+        set(0xbd, 3, KIND_CP2);                 // anewarray
+        set(0xc0, 3, KIND_CP2);                 // checkcast
+        set(0xc1, 3, KIND_CP2);                 // instanceof
+        set(WIDE, 0, KIND_WIDE);
+        set(0xc5, 4, KIND_CP2);                 // multianewarray
+        set(0xc6, 3, KIND_BRANCH2);             // ifnull
+        set(0xc7, 3, KIND_BRANCH2);             // ifnonnull
+        set(GOTO_W, 5, KIND_BRANCH4);
+        set(JSR_W, 5, KIND_BRANCH4);
+    }
+
+    private Opcodes() {
+    }
+
+    private static void set(int opcode, int length, int kind) {
+        LENGTHS[opcode] = length;
+        KINDS[opcode] = kind;
+    }
+
+    static String name(int opcode) {
+        return opcode < NAMES.length ? NAMES[opcode] : "opcode_" + opcode;
+    }
+
+    static int kind(int opcode) {
+        return KINDS[opcode];
+    }
+
+    /**
+     * 计算位于offset处的指令长度。
+     * @param code   方法的字节码（偏移从0开始，switch指令的对齐依赖于此）
+     * @param offset 指令起始位置
+     */
+    static int length(byte[] code, int offset) {
+        int opcode = code[offset] & 0xFF;
+        switch (KINDS[opcode]) {
+            case KIND_TABLESWITCH: {
+                int base = switchBase(offset);
+                int low = readInt(code, base + 4);
+                int high = readInt(code, base + 8);
+                return base + 12 + (high - low + 1) * 4 - offset;
+            }
+            case KIND_LOOKUPSWITCH: {
+                int base = switchBase(offset);
+                int pairs = readInt(code, base + 4);
+                return base + 8 + pairs * 8 - offset;
+            }
+            case KIND_WIDE:
+                return (code[offset + 1] & 0xFF) == IINC ? 6 : 4;
+            default:
+                if (LENGTHS[opcode] < 0) {
+                    throw new IllegalArgumentException("未知的指令 0x" + Integer.toHexString(opcode) + "，位置 " + offset);
+                }
+                return LENGTHS[opcode];
+        }
+    }
+
+    /**
+     * @return switch指令在填充对齐之后，default偏移所在的位置
+     */
+    static int switchBase(int offset) {
+        return (offset + 4) & ~3;
+    }
+
+    static int readInt(byte[] code, int position) {
+        return ((code[position] & 0xFF) << 24) | ((code[position + 1] & 0xFF) << 16)
+                | ((code[position + 2] & 0xFF) << 8) | (code[position + 3] & 0xFF);
+    }
+
+    static int readShort(byte[] code, int position) {
+        return (short) (((code[position] & 0xFF) << 8) | (code[position + 1] & 0xFF));
+    }
+
+    static int readUnsignedShort(byte[] code, int position) {
+        return ((code[position] & 0xFF) << 8) | (code[position + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,342 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内的阶段性能统计。每个阶段的一次执行用 {@link #start} 返回的 {@link Scope} 包围，
+ * 结束时同时提交一个JFR {@link PhaseEvent} 并计入本统计：按阶段的耗时直方图、最慢的若干次操作、吞吐量和峰值堆。
+ * <p>
+ * 统计覆盖从首次使用起的整个进程，守护进程中并发的作业会计入同一份统计。
+ * 直方图按2的幂划分微秒区间，百分位数取所在区间的上界，因此最多偏高一倍。
+ */
+public final class PerformanceProfiler {
+
+    public enum Phase {
+        HASH("hash"),
+        EXTRACT("extract"),
+        NORMALIZE("normalize"),
+        DECOMPILE("decompile"),
+        DECOMPILE_ISOLATED("decompile_isolated"),
+        DIFF("diff"),
+        REPORT("report");
+
+        private final String id;
+
+        Phase(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    /** 保留的最慢操作数量 */
+    private static final int SLOWEST_LIMIT = 20;
+
+    private static final PerformanceProfiler INSTANCE = new PerformanceProfiler();
+
+    /** 当前线程正在处理的JAR，未显式给出JAR名的阶段使用它 */
+    private static final ThreadLocal<String> CURRENT_JAR = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+    /** 按耗时升序的小顶堆，堆顶是已保留的操作中最快的一个 */
+    private final PriorityQueue<Operation> slowest = new PriorityQueue<>(Comparator.comparingLong(o -> o.nanos));
+
+    private PerformanceProfiler() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new Histogram());
+        }
+    }
+
+    public static PerformanceProfiler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始一个阶段的一次执行，应在try-with-resources中使用。
+     *
+     * @param jarName   所属的JAR，为null时使用当前线程正在处理的JAR
+     * @param className 类级阶段为类名，批量阶段为批次中的首个类，JAR级阶段为null
+     * @param classes   涉及的类数量
+     * @param bytes     输入大小，字节码阶段为字节数，源码阶段为字符数
+     */
+    public static Scope start(Phase phase, String jarName, String className, int classes, long bytes) {
+        return new Scope(phase, jarName != null ? jarName : CURRENT_JAR.get(), className, classes, bytes);
+    }
+
+    /**
+     * 在当前线程上以指定的JAR为上下文执行一段处理，其中未显式给出JAR名的阶段都归入该JAR。
+     */
+    static void runInJar(String jarName, Runnable action) {
+        String previous = CURRENT_JAR.get();
+        CURRENT_JAR.set(jarName);
+        try {
+            action.run();
+        } finally {
+            CURRENT_JAR.set(previous);
+        }
+    }
+
+    private void record(Scope scope, long nanos) {
+        histograms.get(scope.phase).record(nanos, scope.classes, scope.bytes);
+        if (scope.className == null) {
+            return;
+        }
+        synchronized (slowest) {
+            if (slowest.size() < SLOWEST_LIMIT) {
+                slowest.add(new Operation(scope, nanos));
+            } else if (slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new Operation(scope, nanos));
+            }
+        }
+    }
+
+    /**
+     * @return 一行概要：总耗时、吞吐量、峰值堆和合计耗时最长的阶段
+     */
+    public String describeStatistics() {
+        double wallSeconds = wallNanos() / 1e9;
+        long classes = histograms.get(Phase.EXTRACT).classes.sum();
+        Phase busiest = Phase.HASH;
+        for (Phase phase : Phase.values()) {
+            if (histograms.get(phase).totalNanos.sum() > histograms.get(busiest).totalNanos.sum()) {
+                busiest = phase;
+            }
+        }
+        return String.format(Locale.ROOT, "性能统计: 耗时 %.1f s, 深度比较 %d 个类 (%.1f 个类/秒), 峰值堆 %d MB, 合计耗时最长的阶段: %s (%.1f s)",
+                wallSeconds, classes, classes / Math.max(wallSeconds, 1e-3), peakHeapBytes() >> 20,
+                busiest.getId(), histograms.get(busiest).totalNanos.sum() / 1e9);
+    }
+
+    /**
+     * 把统计写成一个JSON文件。
+     */
+    public void write(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeJson(out);
+        }
+    }
+
+    void writeJson(Writer out) throws IOException {
+        double wallSeconds = wallNanos() / 1e9;
+        long classes = histograms.get(Phase.EXTRACT).classes.sum();
+        out.write("{\"wallMillis\":" + millis(wallNanos()));
+        out.write(",\"classes\":" + classes);
+        out.write(",\"classesPerSecond\":" + decimal(classes / Math.max(wallSeconds, 1e-3)));
+        out.write(",\"heap\":{\"peakBytes\":" + peakHeapBytes() + ",\"maxBytes\":" + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() + "}");
+        out.write(",\"phases\":[");
+        boolean first = true;
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = histograms.get(phase);
+            if (histogram.count.sum() == 0) {
+                continue;
+            }
+            if (!first) out.write(',');
+            first = false;
+            histogram.writeJson(out, phase);
+        }
+        out.write("],\"slowest\":[");
+        List<Operation> operations;
+        synchronized (slowest) {
+            operations = new ArrayList<>(slowest);
+        }
+        operations.sort(Comparator.comparingLong((Operation o) -> o.nanos).reversed());
+        for (int i = 0; i < operations.size(); i++) {
+            if (i > 0) out.write(',');
+            operations.get(i).writeJson(out);
+        }
+        out.write("]}\n");
+    }
+
+    private long wallNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 各堆内存池峰值之和。各池的峰值不一定出现在同一时刻，因此这是实际峰值的上限估计。
+     */
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static String millis(long nanos) {
+        return decimal(nanos / 1e6);
+    }
+
+    private static String decimal(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * 一个阶段的一次执行。关闭时提交JFR事件并计入统计，不会抛出异常。
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Phase phase;
+        private final String jarName;
+        private final String className;
+        private int classes;
+        private final long bytes;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long startNanos;
+
+        private Scope(Phase phase, String jarName, String className, int classes, long bytes) {
+            this.phase = phase;
+            this.jarName = jarName;
+            this.className = className;
+            this.classes = classes;
+            this.bytes = bytes;
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * 更新涉及的类数量，用于开始时还不知道类数量的阶段（如解压）。
+         */
+        public void setClasses(int classes) {
+            this.classes = classes;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - startNanos;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.getId();
+                event.jarName = jarName;
+                event.className = className;
+                event.classes = classes;
+                event.bytes = bytes;
+                event.commit();
+            }
+            INSTANCE.record(this, nanos);
+        }
+    }
+
+    /**
+     * 单个阶段的耗时直方图，第i个区间统计耗时在 [2^(i-1), 2^i) 微秒内的次数，第0个区间统计不足1微秒的次数。
+     */
+    private static final class Histogram {
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder classes = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, int classCount, long byteCount) {
+            long micros = nanos / 1000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            classes.add(classCount);
+            bytes.add(byteCount);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * @return 百分位数所在区间的上界，不超过最大值
+         */
+        long percentileNanos(double quantile, long total) {
+            long target = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min((1L << i) * 1000, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        void writeJson(Writer out, Phase phase) throws IOException {
+            long total = count.sum();
+            long nanos = totalNanos.sum();
+            out.write("{\"phase\":\"" + phase.getId() + "\"");
+            out.write(",\"count\":" + total);
+            out.write(",\"classes\":" + classes.sum());
+            out.write(",\"bytes\":" + bytes.sum());
+            out.write(",\"totalMillis\":" + millis(nanos));
+            out.write(",\"meanMillis\":" + millis(nanos / total));
+            out.write(",\"p50Millis\":" + millis(percentileNanos(0.50, total)));
+            out.write(",\"p90Millis\":" + millis(percentileNanos(0.90, total)));
+            out.write(",\"p99Millis\":" + millis(percentileNanos(0.99, total)));
+            out.write(",\"maxMillis\":" + millis(maxNanos.get()));
+            // 阶段内的吞吐量按累计耗时计算，并行执行时高于整体吞吐量
+            out.write(",\"classesPerSecond\":" + decimal(classes.sum() / Math.max(nanos / 1e9, 1e-6)));
+            out.write(",\"histogram\":[");
+            boolean first = true;
+            for (int i = 0; i < BUCKETS; i++) {
+                long bucketCount = buckets.get(i);
+                if (bucketCount == 0) {
+                    continue;
+                }
+                if (!first) out.write(',');
+                first = false;
+                out.write("{\"upToMillis\":" + millis((1L << i) * 1000) + ",\"count\":" + bucketCount + "}");
+            }
+            out.write("]}");
+        }
+    }
+
+    /**
+     * 一次被保留的慢操作。
+     */
+    private static final class Operation {
+        private final Phase phase;
+        private final String jarName;
+        private final String className;
+        private final int classes;
+        private final long bytes;
+        private final long nanos;
+
+        Operation(Scope scope, long nanos) {
+            this.phase = scope.phase;
+            this.jarName = scope.jarName;
+            this.className = scope.className;
+            this.classes = scope.classes;
+            this.bytes = scope.bytes;
+            this.nanos = nanos;
+        }
+
+        void writeJson(Writer out) throws IOException {
+            out.write("{\"phase\":\"" + phase.getId() + "\",\"jar\":");
+            if (jarName != null) {
+                JsonlWriter.writeJsonString(out, jarName);
+            } else {
+                out.write("null");
+            }
+            out.write(",\"class\":");
+            JsonlWriter.writeJsonString(out, className);
+            out.write(",\"classes\":" + classes + ",\"bytes\":" + bytes + ",\"millis\":" + millis(nanos) + "}");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 比较过程中一个阶段的一次执行，由 {@link PerformanceProfiler} 提交。
+ * 只有在JFR录制开启时才会真正记录，例如 {@code -XX:StartFlightRecording=filename=run.jfr}，
+ * 之后可以用 {@code jfr print --events org.example.Phase run.jfr} 查看。
+ */
+@Name("org.example.Phase")
+@Label("比较阶段")
+@Category({"BatchComparisonJar"})
+@Description("哈希、解压、规范化、反编译、比对或报告渲染的一次执行")
+@StackTrace(false)
+class PhaseEvent extends Event {
+
+    @Label("阶段")
+    String phase;
+
+    @Label("JAR")
+    String jarName;
+
+    @Label("类")
+    @Description("类级阶段为顶层类名，批量阶段为批次中的首个类")
+    String className;
+
+    @Label("类数量")
+    int classes;
+
+    @Label("输入大小")
+    @Description("字节码阶段为字节数，源码阶段为字符数")
+    @DataAmount
+    long bytes;
+}
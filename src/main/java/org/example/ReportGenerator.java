@@ -1,188 +1,804 @@
 package org.example;
 
-import org.apache.commons.io.IOUtils;
-import org.bitbucket.cowwoc.diffmatchpatch.DiffMatchPatch;
 import org.example.ComparisonResult;
 import org.example.DiffDetail;
 import org.example.SourceCodeDiff;
 
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 生成带有行内高亮、交互友好的HTML报告。
+ * <p>
+ * 报告按JAR逐个渲染并通过带缓冲的UTF-8 Writer直接写入文件，内存占用与报告大小无关。
+ * {@link #openReport} 和 {@link #openShardedReport} 返回的报告是 {@link ComparisonListener}，
+ * 每个JAR比较完成时立即渲染并释放其结果，不需要先收集全部结果。
  */
 public class ReportGenerator {
 
-    private final SourceCodeDiff diffEngine = new SourceCodeDiff();
-    private final DiffMatchPatch dmp = new DiffMatchPatch();
+    /** 默认在每个差异区间前后保留的上下文行数 */
+    public static final int DEFAULT_CONTEXT_LINES = 3;
 
+    /** 分片报告的数据分片所在子目录的后缀 */
+    private static final String SHARD_DIR_SUFFIX = "_shards";
 
-    public Map<String, String> generate(List<ComparisonResult> results, String oldDirName, String newDirName) throws IOException {
-        Map<String, String> reports = new HashMap<>();
-        String template = loadTemplate("difftemplate.html");
+    private static final List<DiffDetail.DiffType> MAIN_TYPES = List.of(DiffDetail.DiffType.LOGICAL_CHANGE, DiffDetail.DiffType.ERROR);
+    private static final List<DiffDetail.DiffType> NON_LOGICAL_TYPES = List.of(DiffDetail.DiffType.NON_LOGICAL_CHANGE);
 
-        // 生成主报告
-        String mainReportHtml = fillTemplate(template, "详细差异报告 (主报告)", results, oldDirName, newDirName, true, List.of(DiffDetail.DiffType.LOGICAL_CHANGE, DiffDetail.DiffType.ERROR));
+    private final int contextLines;
+    private final boolean expandableContext;
+    private final int renderThreads;
+    private ReportTemplate template;
 
-        // 生成非逻辑性差异报告
-        String nonLogicalReportHtml = fillTemplate(template, "非逻辑性差异报告 (编译器生成)", results, oldDirName, newDirName, false, List.of(DiffDetail.DiffType.NON_LOGICAL_CHANGE));
+    public ReportGenerator() {
+        this(DEFAULT_CONTEXT_LINES, false);
+    }
 
-        reports.put("main_report", mainReportHtml);
-        reports.put("non_logical_report", nonLogicalReportHtml);
-        return reports;
+    public ReportGenerator(int contextLines, boolean expandableContext) {
+        this(contextLines, expandableContext, Runtime.getRuntime().availableProcessors());
     }
 
-    private String generateDetailedHtmlContent(List<ComparisonResult> allResults, List<DiffDetail.DiffType> typesToInclude) {
-        StringBuilder sb = new StringBuilder();
-        boolean hasContent = false;
+    /**
+     * @param contextLines      每个差异区间前后保留的未变更行数，更远的未变更行折叠为一行提示
+     * @param expandableContext 是否把折叠的行以 &lt;template&gt; 形式嵌入报告，点击提示即可展开；
+     *                          关闭时报告体积最小，但折叠的行无法查看
+     * @param renderThreads     分片报告中并行渲染数据分片的线程数
+     */
+    public ReportGenerator(int contextLines, boolean expandableContext, int renderThreads) {
+        if (contextLines < 0) {
+            throw new IllegalArgumentException("contextLines 不能为负数，当前值: " + contextLines);
+        }
+        if (renderThreads < 1) {
+            throw new IllegalArgumentException("renderThreads 必须大于0，当前值: " + renderThreads);
+        }
+        this.contextLines = contextLines;
+        this.expandableContext = expandableContext;
+        this.renderThreads = renderThreads;
+    }
 
-        List<ComparisonResult> relevantResults = allResults.stream()
-                .filter(r -> r.getDiffDetails().stream().anyMatch(d -> typesToInclude.contains(d.getType())))
-                .collect(Collectors.toList());
+    /**
+     * 生成主报告和非逻辑性差异报告，文件名带有时间戳。
+     *
+     * @param outputDir 报告文件所在的目录
+     * @return 报告类型（"main_report"、"non_logical_report"）到生成的文件路径的映射
+     * @see #openReport
+     */
+    public Map<String, Path> generate(List<ComparisonResult> results, String oldDirName, String newDirName, Path outputDir) throws IOException {
+        try (HtmlReport report = openReport(oldDirName, newDirName, outputDir)) {
+            results.forEach(report::onJarCompleted);
+            report.onRunCompleted();
+            return report.getReports();
+        }
+    }
+
+    /**
+     * 开始流式生成主报告和非逻辑性差异报告。每个JAR完成时，它的差异立即渲染到输出目录中的两个临时文件，
+     * 比较结束（{@link ComparisonListener#onRunCompleted()}）时再套用模板、加上摘要写出最终的报告。
+     * 使用完毕后必须关闭，以删除临时文件。
+     *
+     * @param outputDir 报告文件所在的目录
+     */
+    public HtmlReport openReport(String oldDirName, String newDirName, Path outputDir) throws IOException {
+        return new HtmlReport(oldDirName, newDirName, outputDir);
+    }
+
+    /**
+     * 生成分片报告：一个只包含摘要和每个JAR统计信息的轻量索引页，以及每个JAR一个压缩的数据分片。
+     * 数据分片是gzip压缩后再base64编码的JS文件，浏览器在展开某个JAR时才通过&lt;script&gt;标签加载并解压，
+     * 因此直接打开本地文件即可，不需要服务器。各分片互相独立，并行渲染。
+     *
+     * @param outputDir 报告文件所在的目录，数据分片写入其中与索引页同名的 *_shards 子目录
+     * @return 索引页的路径
+     * @see #openShardedReport
+     */
+    public Path generateSharded(List<ComparisonResult> results, String oldDirName, String newDirName, Path outputDir) throws IOException {
+        try (ShardedReport report = openShardedReport(oldDirName, newDirName, outputDir)) {
+            results.forEach(report::onJarCompleted);
+            report.onRunCompleted();
+            return report.getIndex();
+        }
+    }
+
+    /**
+     * 开始流式生成分片报告。每个有差异的JAR完成时立即交给渲染线程写出数据分片，同时渲染中的JAR不超过渲染线程数的两倍，
+     * 渲染跟不上时回调阻塞，对比较形成背压。比较结束时等待所有分片写完并写出索引页。使用完毕后必须关闭。
+     *
+     * @param outputDir 报告文件所在的目录，数据分片写入其中与索引页同名的 *_shards 子目录
+     */
+    public ShardedReport openShardedReport(String oldDirName, String newDirName, Path outputDir) throws IOException {
+        return new ShardedReport(oldDirName, newDirName, outputDir);
+    }
+
+    /**
+     * 以监听器形式流式生成的报告的公共部分：统计各状态的JAR数量，保存回调中发生的第一个I/O错误。
+     * 回调不能抛出受检异常，出错之后不再写出，错误在读取报告路径时抛出。
+     */
+    abstract class StreamingReport implements ComparisonListener, Closeable {
+        private final Map<ComparisonResult.Status, Integer> statusCounts = new EnumMap<>(ComparisonResult.Status.class);
+        private IOException failure;
+        private boolean completed;
+
+        @Override
+        public synchronized void onJarCompleted(ComparisonResult result) {
+            statusCounts.merge(result.getStatus(), 1, Integer::sum);
+            // 未变更的JAR只计入摘要
+            if (failure != null || completed || result.getStatus() == ComparisonResult.Status.UNCHANGED) {
+                return;
+            }
+            try {
+                writeJar(result);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        @Override
+        public synchronized void onRunCompleted() {
+            if (failure != null || completed) {
+                return;
+            }
+            completed = true;
+            try {
+                writeReport();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        abstract void writeJar(ComparisonResult result) throws IOException;
+
+        abstract void writeReport() throws IOException;
+
+        /**
+         * @throws IOException           生成报告时发生的第一个I/O错误
+         * @throws IllegalStateException 还没有收到比较结束的通知
+         */
+        synchronized void checkCompleted() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            if (!completed) {
+                throw new IllegalStateException("比较尚未结束，报告还没有生成");
+            }
+        }
+
+        String summaryHtml() {
+            return generateHtmlSummary(statusCounts);
+        }
+    }
 
-        for (ComparisonResult result : relevantResults) {
-            List<DiffDetail> filteredDetails = result.getDiffDetails().stream()
-                    .filter(d -> typesToInclude.contains(d.getType()))
-                    .collect(Collectors.toList());
-
-            if (!filteredDetails.isEmpty()) {
-                hasContent = true;
-                sb.append("<div class='jar-details'>");
-                sb.append(String.format("<div class='jar-header'>JAR: %s | 状态: %s</div>", escapeHtml(result.getJarName()), result.getStatus()));
-
-                for (DiffDetail detail : filteredDetails) {
-                    sb.append(String.format("<h3 class='class-header'>类: %s (%s)</h3>", escapeHtml(detail.getClassName()), detail.getType()));
-                    if (detail.getType() == DiffDetail.DiffType.ERROR) {
-                        sb.append("<pre class='diff-delete'>");
-                        detail.getDiffContent().forEach(line -> sb.append(escapeHtml(line)).append("\n"));
-                        sb.append("</pre>");
-                    } else {
-                        sb.append(generateVisualInlineDiff(detail.getOldSource(), detail.getNewSource()));
-                    }
+    /**
+     * 流式生成的主报告和非逻辑性差异报告，见 {@link #openReport}。
+     */
+    public final class HtmlReport extends StreamingReport {
+        private final String oldDirName;
+        private final String newDirName;
+        private final Path mainReportPath;
+        private final Path nonLogicalReportPath;
+        private final Path mainPart;
+        private final Path nonLogicalPart;
+        private Writer mainOut;
+        private Writer nonLogicalOut;
+        private boolean mainContent;
+        private boolean nonLogicalContent;
+
+        private HtmlReport(String oldDirName, String newDirName, Path outputDir) throws IOException {
+            this.oldDirName = oldDirName;
+            this.newDirName = newDirName;
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            this.mainReportPath = outputDir.resolve("jar_comparison_main_report_" + timestamp + ".html");
+            this.nonLogicalReportPath = outputDir.resolve("jar_comparison_non_logical_report_" + timestamp + ".html");
+            this.mainPart = Files.createTempFile(outputDir, ".jar_comparison_main_report_", ".part");
+            this.nonLogicalPart = Files.createTempFile(outputDir, ".jar_comparison_non_logical_report_", ".part");
+            try {
+                this.mainOut = Files.newBufferedWriter(mainPart, StandardCharsets.UTF_8);
+                this.nonLogicalOut = Files.newBufferedWriter(nonLogicalPart, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        void writeJar(ComparisonResult result) throws IOException {
+            mainContent |= writeJarDetails(mainOut, result, MAIN_TYPES);
+            nonLogicalContent |= writeJarDetails(nonLogicalOut, result, NON_LOGICAL_TYPES);
+        }
+
+        @Override
+        void writeReport() throws IOException {
+            mainOut.close();
+            nonLogicalOut.close();
+            String summary = summaryHtml();
+            writeAssembled(mainReportPath, "详细差异报告 (主报告)", summary, mainPart, mainContent);
+            writeAssembled(nonLogicalReportPath, "非逻辑性差异报告 (编译器生成)", null, nonLogicalPart, nonLogicalContent);
+        }
+
+        private void writeAssembled(Path file, String reportTitle, String summary, Path part, boolean hasContent) throws IOException {
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                renderReport(out, reportTitle, oldDirName, newDirName,
+                        w -> {
+                            if (summary != null) w.write(summary);
+                        },
+                        w -> {
+                            if (!hasContent) {
+                                w.write("<p>未发现此类别的差异。</p>");
+                                return;
+                            }
+                            try (Reader in = Files.newBufferedReader(part, StandardCharsets.UTF_8)) {
+                                in.transferTo(w);
+                            }
+                        });
+            }
+        }
+
+        /**
+         * @return 报告类型（"main_report"、"non_logical_report"）到生成的文件路径的映射
+         * @throws IOException 生成报告时发生的I/O错误
+         */
+        public Map<String, Path> getReports() throws IOException {
+            checkCompleted();
+            Map<String, Path> reports = new LinkedHashMap<>();
+            reports.put("main_report", mainReportPath);
+            reports.put("non_logical_report", nonLogicalReportPath);
+            return reports;
+        }
+
+        /**
+         * 删除临时文件。比较没有正常结束时不会生成报告。
+         */
+        @Override
+        public synchronized void close() {
+            closeQuietly(mainOut);
+            closeQuietly(nonLogicalOut);
+            FileUtils.deleteQuietly(mainPart.toFile());
+            FileUtils.deleteQuietly(nonLogicalPart.toFile());
+        }
+    }
+
+    /**
+     * 流式生成的分片报告，见 {@link #openShardedReport}。
+     */
+    public final class ShardedReport extends StreamingReport {
+        private final String oldDirName;
+        private final String newDirName;
+        private final Path shardDir;
+        private final Path indexPath;
+        private final ExecutorService executor;
+        /** 已交给渲染线程、还没有写完的分片数量上限 */
+        private final Semaphore rendering;
+        private final List<Future<?>> shards = new ArrayList<>();
+        private final List<ShardRow> rows = new ArrayList<>();
+
+        private ShardedReport(String oldDirName, String newDirName, Path outputDir) throws IOException {
+            this.oldDirName = oldDirName;
+            this.newDirName = newDirName;
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            String baseName = "jar_comparison_report_" + timestamp;
+            this.shardDir = outputDir.resolve(baseName + SHARD_DIR_SUFFIX);
+            this.indexPath = outputDir.resolve(baseName + ".html");
+            Files.createDirectories(shardDir);
+            this.executor = Executors.newFixedThreadPool(renderThreads);
+            this.rendering = new Semaphore(renderThreads * 2);
+        }
+
+        @Override
+        void writeJar(ComparisonResult result) throws IOException {
+            if (!result.hasDifferences()) {
+                return;
+            }
+            int shardId = rows.size() + 1;
+            rows.add(new ShardRow(result));
+            try {
+                rendering.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待渲染数据分片时被中断");
+            }
+            shards.add(executor.submit(() -> {
+                try {
+                    writeShard(shardDir.resolve(shardFileName(shardId)), shardId, result);
+                } finally {
+                    rendering.release();
                 }
-                sb.append("</div>");
+                return null;
+            }));
+        }
+
+        @Override
+        void writeReport() throws IOException {
+            awaitShards();
+            String loaderScript = ReportTemplate.loadResource("report-shards.js");
+            String summary = summaryHtml();
+            try (Writer out = Files.newBufferedWriter(indexPath, StandardCharsets.UTF_8)) {
+                renderReport(out, "差异报告 (分片)", oldDirName, newDirName, w -> w.write(summary), w -> {
+                    w.write("<script>");
+                    w.write(loaderScript);
+                    w.write("</script>");
+                    writeShardIndex(w, rows, shardDir.getFileName().toString());
+                });
             }
         }
-        if (!hasContent) return "<p>未发现此类别的差异。</p>";
-        return sb.toString();
+
+        private void awaitShards() throws IOException {
+            try {
+                for (Future<?> shard : shards) {
+                    shard.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("渲染数据分片时被中断", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("渲染数据分片失败: " + e.getCause(), e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * @return 索引页的路径
+         * @throws IOException 生成报告时发生的I/O错误
+         */
+        public Path getIndex() throws IOException {
+            checkCompleted();
+            return indexPath;
+        }
+
+        /**
+         * 停止渲染线程。比较没有正常结束时已写出的分片保留在分片目录中，但不会生成索引页。
+         */
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
     }
 
-    private String generateVisualInlineDiff(String oldText, String newText) {
-        String safeOldText = (oldText != null) ? oldText : "";
-        String safeNewText = (newText != null) ? newText : "";
-        LinkedList<DiffMatchPatch.Diff> diffs = dmp.diffMain(safeOldText, safeNewText);
-        dmp.diffCleanupSemantic(diffs);
-
-        StringBuilder html = new StringBuilder("<pre>");
-        int oldLineNum = 1;
-        int newLineNum = 1;
-
-        for (int i = 0; i < diffs.size(); i++) {
-            DiffMatchPatch.Diff currentDiff = diffs.get(i);
-
-            if (currentDiff.operation == DiffMatchPatch.Operation.DELETE
-                    && i + 1 < diffs.size()
-                    && diffs.get(i + 1).operation == DiffMatchPatch.Operation.INSERT) {
-
-                DiffMatchPatch.Diff nextDiff = diffs.get(i + 1);
-                LinkedList<DiffMatchPatch.Diff> wordDiffs = dmp.diffMain(currentDiff.text, nextDiff.text);
-                dmp.diffCleanupSemantic(wordDiffs);
-
-                String deletedLineContent = buildHighlightedLine(wordDiffs, DiffMatchPatch.Operation.DELETE);
-                String insertedLineContent = buildHighlightedLine(wordDiffs, DiffMatchPatch.Operation.INSERT);
-
-                html.append("<div class='diff-line diff-delete'><span class='line-num'>").append(oldLineNum++).append("</span><span class='diff-op'>-</span><span class='diff-content'>").append(deletedLineContent).append("</span></div>");
-                html.append("<div class='diff-line diff-insert'><span class='line-num'>").append(newLineNum++).append("</span><span class='diff-op'>+</span><span class='diff-content'>").append(insertedLineContent).append("</span></div>");
-
-                i++;
-            } else {
-                String[] lines = currentDiff.text.split("\n", -1);
-                for (int j = 0; j < lines.length; j++) {
-                    String line = lines[j];
-                    if (j == lines.length - 1 && line.isEmpty()) continue;
-
-                    switch (currentDiff.operation) {
-                        case INSERT:
-                            html.append("<div class='diff-line diff-insert'><span class='line-num'>").append(newLineNum++).append("</span><span class='diff-op'>+</span><span class='diff-content'>").append(escapeHtml(line)).append("</span></div>");
-                            break;
-                        case DELETE:
-                            html.append("<div class='diff-line diff-delete'><span class='line-num'>").append(oldLineNum++).append("</span><span class='diff-op'>-</span><span class='diff-content'>").append(escapeHtml(line)).append("</span></div>");
-                            break;
-                        case EQUAL:
-                            html.append("<div class='diff-line'><span class='line-num'>").append(oldLineNum++).append("</span><span class='diff-op'> </span><span class='diff-content'>").append(escapeHtml(line)).append("</span></div>");
-                            newLineNum++;
-                            break;
-                    }
+    /**
+     * 分片索引页中的一行：只保留JAR的统计信息，JAR的结果在分片写完后即可释放。
+     */
+    private static final class ShardRow {
+        private final String jarName;
+        private final ComparisonResult.Status status;
+        private final int logical;
+        private final int nonLogical;
+        private final int errors;
+
+        ShardRow(ComparisonResult result) {
+            this.jarName = result.getJarName();
+            this.status = result.getStatus();
+            this.logical = result.countDiffDetails(DiffDetail.DiffType.LOGICAL_CHANGE);
+            this.nonLogical = result.countDiffDetails(DiffDetail.DiffType.NON_LOGICAL_CHANGE);
+            this.errors = result.countDiffDetails(DiffDetail.DiffType.ERROR);
+        }
+    }
+
+    private static void closeQuietly(Writer writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+            // 只用于清理临时文件
+        }
+    }
+
+    /**
+     * 把一个JAR的差异渲染为数据分片：loadShard(id, "&lt;gzip + base64&gt;");，压缩和编码都是流式进行的。
+     */
+    private void writeShard(Path file, int shardId, ComparisonResult result) throws IOException {
+        try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(file))) {
+            fileOut.write(("loadShard(" + shardId + ", \"").getBytes(StandardCharsets.US_ASCII));
+            // 关闭编码流会刷新base64的尾部，但不能关闭底层文件流，结尾还要写入脚本的剩余部分
+            OutputStream base64 = Base64.getEncoder().wrap(new FilterOutputStream(fileOut) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+            try (Writer out = new OutputStreamWriter(new GZIPOutputStream(base64, 8192), StandardCharsets.UTF_8)) {
+                writeJarDetails(out, result, MAIN_TYPES);
+                int nonLogical = result.countDiffDetails(DiffDetail.DiffType.NON_LOGICAL_CHANGE);
+                if (nonLogical > 0) {
+                    out.write("<details><summary>非逻辑性差异 (" + nonLogical + ")</summary>");
+                    writeJarDetails(out, result, NON_LOGICAL_TYPES);
+                    out.write("</details>");
                 }
             }
+            fileOut.write("\");\n".getBytes(StandardCharsets.US_ASCII));
         }
-        html.append("</pre>");
-        return html.toString();
     }
+
+    private void writeShardIndex(Writer out, List<ShardRow> rows, String shardDirName) throws IOException {
+        if (rows.isEmpty()) {
+            out.write("<p>未发现差异。</p>");
+            return;
+        }
+        out.write("<table class='shard-index'><tr><th>JAR</th><th>状态</th><th>逻辑差异</th><th>非逻辑差异</th><th>错误</th><th></th></tr>");
+        for (int i = 0; i < rows.size(); i++) {
+            int shardId = i + 1;
+            ShardRow row = rows.get(i);
+            out.write("<tr><td>" + escapeHtml(row.jarName) + "</td><td>" + row.status + "</td><td>"
+                    + row.logical + "</td><td>"
+                    + row.nonLogical + "</td><td>"
+                    + row.errors + "</td><td>"
+                    + "<button onclick=\"toggleShard(" + shardId + ", '" + escapeHtml(shardDirName) + "/" + shardFileName(shardId) + "')\">查看</button></td></tr>");
+            out.write("<tr><td colspan='6'><div class='jar-details' id='shard-" + shardId + "' hidden></div></td></tr>");
+        }
+        out.write("</table>");
+    }
+
     /**
-     * 根据二次比对的结果，构建带有完整上下文和行内高亮标记的单行HTML内容。
+     * 生成时间线的变更历史页：摘要中列出各版本对及其报告链接，正文是一张 JAR | 类 | 各版本对 的表格，
+     * 每个单元格标明该类在这一对版本之间的变化并链接到对应的报告。
+     *
+     * @param outputDir 历史页所在的目录，各版本对的报告路径相对于它
+     * @return 历史页的路径
      */
-    private String buildHighlightedLine(LinkedList<DiffMatchPatch.Diff> wordDiffs, DiffMatchPatch.Operation targetOperation) {
-        StringBuilder sb = new StringBuilder();
-        for (DiffMatchPatch.Diff wordDiff : wordDiffs) {
-            // 对于目标行，我们拼接EQUAL和目标操作(DELETE或INSERT)的部分
-            if (wordDiff.operation == DiffMatchPatch.Operation.EQUAL) {
-                sb.append(escapeHtml(wordDiff.text));
-            } else if (wordDiff.operation == targetOperation) {
-                String highlightClass = (targetOperation == DiffMatchPatch.Operation.INSERT) ? "highlight-insert" : "highlight-delete";
-                sb.append("<span class='").append(highlightClass).append("'>").append(escapeHtml(wordDiff.text)).append("</span>");
+    public Path generateTimeline(List<String> versionNames, List<TimelineComparator.Pair> pairs,
+                                 TimelineComparator.History history, Path outputDir) throws IOException {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        Path historyPath = outputDir.resolve("jar_comparison_timeline_" + timestamp + ".html");
+        String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        Map<String, ReportTemplate.Section> sections = Map.of(
+                "reportTitle", w -> w.write(escapeHtml("变更历史 (时间线)")),
+                "reportTime", w -> w.write(now),
+                "oldDir", w -> w.write(escapeHtml(versionNames.get(0))),
+                "newDir", w -> w.write(escapeHtml(versionNames.get(versionNames.size() - 1))),
+                "summaryContent", w -> writeTimelineSummary(w, versionNames, pairs),
+                "detailedContent", w -> writeTimelineTable(w, pairs, history)
+        );
+        try (Writer out = Files.newBufferedWriter(historyPath, StandardCharsets.UTF_8)) {
+            loadTemplate().render(out, sections);
+        }
+        return historyPath;
+    }
+
+    private void writeTimelineSummary(Writer out, List<String> versionNames, List<TimelineComparator.Pair> pairs) throws IOException {
+        out.write("<p><strong>版本:</strong> " + escapeHtml(String.join(" → ", versionNames)) + "</p>");
+        for (int i = 0; i < pairs.size(); i++) {
+            TimelineComparator.Pair pair = pairs.get(i);
+            out.write("<p><strong>P" + (i + 1) + "</strong> " + escapeHtml(pair.getOldName()) + " → " + escapeHtml(pair.getNewName())
+                    + "：有变化的JAR " + pair.getChangedJars()
+                    + "，<a href=\"" + href(pair.getMainReport()) + "\">主报告</a>"
+                    + "，<a href=\"" + href(pair.getNonLogicalReport()) + "\">非逻辑性差异报告</a></p>");
+        }
+    }
+
+    private void writeTimelineTable(Writer out, List<TimelineComparator.Pair> pairs, TimelineComparator.History history) throws IOException {
+        if (history.getRows().isEmpty()) {
+            out.write("<p>所有版本之间均未发现差异。</p>");
+            return;
+        }
+        out.write("<table class='timeline'><tr><th>JAR</th><th>类</th>");
+        for (int i = 0; i < pairs.size(); i++) {
+            TimelineComparator.Pair pair = pairs.get(i);
+            out.write("<th title=\"" + escapeAttribute(pair.getOldName() + " → " + pair.getNewName()) + "\">P" + (i + 1) + "</th>");
+        }
+        out.write("</tr>");
+        for (Map.Entry<String, Map<String, TimelineComparator.History.Change[]>> jar : history.getRows().entrySet()) {
+            for (Map.Entry<String, TimelineComparator.History.Change[]> row : jar.getValue().entrySet()) {
+                out.write("<tr><td>" + escapeHtml(jar.getKey()) + "</td><td>"
+                        + (row.getKey().isEmpty() ? "<em>(整个JAR)</em>" : escapeHtml(row.getKey())) + "</td>");
+                TimelineComparator.History.Change[] changes = row.getValue();
+                for (int i = 0; i < changes.length; i++) {
+                    writeTimelineCell(out, changes[i], pairs.get(i));
+                }
+                out.write("</tr>");
             }
         }
-        return sb.toString();
+        out.write("</table>");
+    }
+
+    private void writeTimelineCell(Writer out, TimelineComparator.History.Change change, TimelineComparator.Pair pair) throws IOException {
+        if (change == null) {
+            out.write("<td class='timeline-none'></td>");
+            return;
+        }
+        String label;
+        Path report = pair.getMainReport();
+        switch (change) {
+            case ADDED:
+                label = "新增";
+                break;
+            case REMOVED:
+                label = "删除";
+                break;
+            case LOGICAL_CHANGE:
+                label = "逻辑变更";
+                break;
+            case NON_LOGICAL_CHANGE:
+                label = "非逻辑变更";
+                report = pair.getNonLogicalReport();
+                break;
+            default:
+                label = "错误";
+                break;
+        }
+        out.write("<td class='timeline-" + change.name().toLowerCase().replace('_', '-') + "'><a href=\"" + href(report) + "\">" + label + "</a></td>");
+    }
+
+    private String href(Path relativePath) {
+        return escapeAttribute(relativePath.toString().replace('\\', '/'));
+    }
+
+    private String escapeAttribute(String text) {
+        return escapeHtml(text).replace("\"", "&quot;");
+    }
+
+    private static String shardFileName(int shardId) {
+        return String.format("jar-%05d.js", shardId);
+    }
+
+    /**
+     * 把一份报告流式写入文件。
+     */
+    public void writeReport(Path file, String reportTitle, List<ComparisonResult> results, String oldDirName, String newDirName,
+                            boolean includeSummary, List<DiffDetail.DiffType> typesToInclude) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeReport(out, reportTitle, results, oldDirName, newDirName, includeSummary, typesToInclude);
+        }
     }
+
     /**
-     * 填充HTML模板的通用辅助方法，逻辑更清晰。
+     * 填充HTML模板的通用辅助方法：模板只拆分一次，各占位符的内容直接写入输出。
      */
-    private String fillTemplate(String baseTemplate, String reportTitle, List<ComparisonResult> results, String oldDirName, String newDirName, boolean includeSummary, List<DiffDetail.DiffType> typesToInclude) {
+    public void writeReport(Writer out, String reportTitle, List<ComparisonResult> results, String oldDirName, String newDirName,
+                            boolean includeSummary, List<DiffDetail.DiffType> typesToInclude) throws IOException {
+        renderReport(out, reportTitle, oldDirName, newDirName,
+                // 根据需要决定是否填充摘要信息
+                w -> {
+                    if (includeSummary) w.write(generateHtmlSummary(results));
+                },
+                w -> writeDetailedHtmlContent(w, results, typesToInclude));
+    }
 
+    private void renderReport(Writer out, String reportTitle, String oldDirName, String newDirName,
+                              ReportTemplate.Section summaryContent, ReportTemplate.Section detailedContent) throws IOException {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         String now = LocalDateTime.now().format(formatter);
 
-        // 替换通用元数据
-        String report = baseTemplate.replace("${reportTitle}", escapeHtml(reportTitle))
-                .replace("${reportTime}", now)
-                .replace("${oldDir}", escapeHtml(oldDirName))
-                .replace("${newDir}", escapeHtml(newDirName));
+        Map<String, ReportTemplate.Section> sections = Map.of(
+                "reportTitle", w -> w.write(escapeHtml(reportTitle)),
+                "reportTime", w -> w.write(now),
+                "oldDir", w -> w.write(escapeHtml(oldDirName)),
+                "newDir", w -> w.write(escapeHtml(newDirName)),
+                "summaryContent", summaryContent,
+                "detailedContent", detailedContent
+        );
+        loadTemplate().render(out, sections);
+    }
 
-        // 根据需要决定是否填充摘要信息
-        String summaryContent = includeSummary ? generateHtmlSummary(results) : "";
-        report = report.replace("${summaryContent}", summaryContent);
+    private synchronized ReportTemplate loadTemplate() throws IOException {
+        if (template == null) {
+            template = ReportTemplate.load("difftemplate.html");
+        }
+        return template;
+    }
 
-        // 生成并填充核心的详细差异内容
-        String detailedContent = generateDetailedHtmlContent(results, typesToInclude);
-        report = report.replace("${detailedContent}", detailedContent);
+    private void writeDetailedHtmlContent(Writer out, List<ComparisonResult> allResults, List<DiffDetail.DiffType> typesToInclude) throws IOException {
+        boolean hasContent = false;
 
-        return report;
+        for (ComparisonResult result : allResults) {
+            hasContent |= writeJarDetails(out, result, typesToInclude);
+        }
+        if (!hasContent) out.write("<p>未发现此类别的差异。</p>");
     }
 
-    private String loadTemplate(String resourceName) throws IOException {
-        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourceName)) {
-            if (inputStream == null) {
-                throw new IOException("无法找到资源文件: " + resourceName);
+    /**
+     * 渲染一个JAR中指定类型的差异。
+     * @return 是否有内容被写出
+     */
+    private boolean writeJarDetails(Writer out, ComparisonResult result, List<DiffDetail.DiffType> typesToInclude) throws IOException {
+        List<DiffDetail> filteredDetails = result.getDiffDetails().stream()
+                .filter(d -> typesToInclude.contains(d.getType()))
+                .collect(Collectors.toList());
+        if (filteredDetails.isEmpty()) {
+            return false;
+        }
+        out.write("<div class='jar-details'>");
+        out.write(String.format("<div class='jar-header'>JAR: %s | 状态: %s</div>", escapeHtml(result.getJarName()), result.getStatus()));
+
+        for (DiffDetail detail : filteredDetails) {
+            try (PerformanceProfiler.Scope ignored = PerformanceProfiler.start(PerformanceProfiler.Phase.REPORT,
+                    result.getJarName(), detail.getClassName(), 1, 0)) {
+                writeClassDetail(out, detail);
             }
-            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
         }
+        out.write("</div>");
+        return true;
+    }
+
+    private void writeClassDetail(Writer out, DiffDetail detail) throws IOException {
+        out.write(String.format("<h3 class='class-header'>类: %s (%s)</h3>", escapeHtml(detail.getClassName()), detail.getType()));
+        if (detail.getType() == DiffDetail.DiffType.ERROR) {
+            out.write("<pre class='diff-delete'>");
+            writeLines(out, detail.getDiffContent());
+            out.write("</pre>");
+            if (!detail.getHunks().isEmpty()) {
+                // 反编译失败后退化为字节码骨架比对的类
+                writeVisualInlineDiff(out, detail);
+            }
+        } else if (!detail.hasSources()) {
+            // 未经反编译即可判定的差异（如字节码规范化），只展示原因说明
+            out.write("<pre>");
+            writeLines(out, detail.getDiffContent());
+            out.write("</pre>");
+        } else {
+            writeMemberSummary(out, detail);
+            writeVisualInlineDiff(out, detail);
+        }
+    }
+
+    private void writeLines(Writer out, List<String> lines) throws IOException {
+        for (String line : lines) {
+            out.write(escapeHtml(line));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * 列出字节码分析识别出的变化成员以及比对过程中的说明（方法裁剪、粗粒度差异、成员重排）。
+     */
+    private void writeMemberSummary(Writer out, DiffDetail detail) throws IOException {
+        List<String> notes = detail.getDiffContent().stream()
+                .map(String::trim)
+                .filter(line -> line.startsWith("[已裁剪]") || line.startsWith(SourceCodeDiff.COARSE_NOTE) || line.startsWith("[成员重排]"))
+                .collect(Collectors.toList());
+        if (detail.getChangedMembers().isEmpty() && notes.isEmpty()) return;
+        out.write("<pre class='member-changes'>");
+        for (MemberChange change : detail.getChangedMembers()) {
+            out.write(escapeHtml(change.toString()));
+            out.write('\n');
+        }
+        writeLines(out, notes);
+        out.write("</pre>");
+    }
+
+    /**
+     * 根据比对阶段计算好的差异区间渲染行内差异视图，这里不再进行任何比对计算。
+     * 每个差异区间前后只保留若干行上下文，其余未变更的行折叠为一行提示。
+     */
+    private void writeVisualInlineDiff(Writer out, DiffDetail detail) throws IOException {
+        List<String> oldLines = SourceCodeDiff.splitLines(detail.getOldSource());
+        List<String> newLines = SourceCodeDiff.splitLines(detail.getNewSource());
+
+        out.write("<pre>");
+        int oldLine = 0;
+        int newLine = 0;
+        boolean first = true;
+        for (DiffHunk hunk : detail.getHunks()) {
+            writeUnchangedLines(out, oldLines, oldLine, hunk.getOldStart(), first ? 0 : contextLines, contextLines);
+            first = false;
+            oldLine = hunk.getOldStart();
+            newLine = hunk.getNewStart();
+            // 细化过的行对按高亮区间成对渲染，其余的行整行删除/新增
+            Map<Integer, List<DiffHunk.Span>> oldSpans = hunk.getOldSpans().stream().collect(Collectors.groupingBy(DiffHunk.Span::getLine));
+            Map<Integer, List<DiffHunk.Span>> newSpans = hunk.getNewSpans().stream().collect(Collectors.groupingBy(DiffHunk.Span::getLine));
+            for (int pair = 0; pair < hunk.getRefinedPairs(); pair++, oldLine++, newLine++) {
+                writeLine(out, "diff-line diff-delete", oldLine + 1, '-',
+                        highlight(oldLines.get(oldLine), oldSpans.getOrDefault(oldLine, List.of()), "highlight-delete"));
+                writeLine(out, "diff-line diff-insert", newLine + 1, '+',
+                        highlight(newLines.get(newLine), newSpans.getOrDefault(newLine, List.of()), "highlight-insert"));
+            }
+            for (; oldLine < hunk.getOldEnd(); oldLine++) {
+                writeLine(out, "diff-line diff-delete", oldLine + 1, '-', escapeHtml(oldLines.get(oldLine)));
+            }
+            for (; newLine < hunk.getNewEnd(); newLine++) {
+                writeLine(out, "diff-line diff-insert", newLine + 1, '+', escapeHtml(newLines.get(newLine)));
+            }
+        }
+        writeUnchangedLines(out, oldLines, oldLine, oldLines.size(), first ? 0 : contextLines, 0);
+        out.write("</pre>");
+    }
+
+    /**
+     * 渲染一段未变更的行 [from, to)：开头保留head行、结尾保留tail行，中间部分折叠。
+     */
+    private void writeUnchangedLines(Writer out, List<String> oldLines, int from, int to, int head, int tail) throws IOException {
+        if (to - from <= head + tail) {
+            writeContextLines(out, oldLines, from, to);
+            return;
+        }
+        writeContextLines(out, oldLines, from, from + head);
+        int collapsedFrom = from + head;
+        int collapsedTo = to - tail;
+        if (expandableContext) {
+            out.write("<div class='diff-collapsed expandable' onclick='expandCollapsed(this)'>… ");
+            out.write(Integer.toString(collapsedTo - collapsedFrom));
+            out.write(" 行未变更（点击展开） …</div><template>");
+            writeContextLines(out, oldLines, collapsedFrom, collapsedTo);
+            out.write("</template>");
+        } else {
+            out.write("<div class='diff-collapsed'>… ");
+            out.write(Integer.toString(collapsedTo - collapsedFrom));
+            out.write(" 行未变更 …</div>");
+        }
+        writeContextLines(out, oldLines, collapsedTo, to);
+    }
+
+    private void writeContextLines(Writer out, List<String> oldLines, int from, int to) throws IOException {
+        for (int line = from; line < to; line++) {
+            writeLine(out, "diff-line", line + 1, ' ', escapeHtml(oldLines.get(line)));
+        }
+    }
+
+    private void writeLine(Writer out, String cssClass, int lineNumber, char op, String content) throws IOException {
+        out.write("<div class='");
+        out.write(cssClass);
+        out.write("'><span class='line-num'>");
+        out.write(Integer.toString(lineNumber));
+        out.write("</span><span class='diff-op'>");
+        out.write(op);
+        out.write("</span><span class='diff-content'>");
+        out.write(content);
+        out.write("</span></div>");
+    }
+
+    /**
+     * 构建带有行内高亮标记的单行HTML内容。
+     */
+    private String highlight(String text, List<DiffHunk.Span> spans, String highlightClass) {
+        StringBuilder sb = new StringBuilder();
+        int position = 0;
+        for (DiffHunk.Span span : spans) {
+            sb.append(escapeHtml(text.substring(position, span.getStart())));
+            sb.append("<span class='").append(highlightClass).append("'>")
+                    .append(escapeHtml(text.substring(span.getStart(), span.getEnd()))).append("</span>");
+            position = span.getEnd();
+        }
+        sb.append(escapeHtml(text.substring(position)));
+        return sb.toString();
     }
 
     private String generateHtmlSummary(List<ComparisonResult> results) {
-        long added = results.stream().filter(r -> r.getStatus() == ComparisonResult.Status.ADDED).count();
-        long deleted = results.stream().filter(r -> r.getStatus() == ComparisonResult.Status.DELETED).count();
-        long modified = results.stream().filter(r -> r.getStatus() == ComparisonResult.Status.MODIFIED).count();
-        long unchanged = results.stream().filter(r -> r.getStatus() == ComparisonResult.Status.UNCHANGED).count();
+        Map<ComparisonResult.Status, Integer> statusCounts = new EnumMap<>(ComparisonResult.Status.class);
+        for (ComparisonResult result : results) {
+            statusCounts.merge(result.getStatus(), 1, Integer::sum);
+        }
+        return generateHtmlSummary(statusCounts);
+    }
+
+    private String generateHtmlSummary(Map<ComparisonResult.Status, Integer> statusCounts) {
+        int added = statusCounts.getOrDefault(ComparisonResult.Status.ADDED, 0);
+        int deleted = statusCounts.getOrDefault(ComparisonResult.Status.DELETED, 0);
+        int modified = statusCounts.getOrDefault(ComparisonResult.Status.MODIFIED, 0);
+        int unchanged = statusCounts.getOrDefault(ComparisonResult.Status.UNCHANGED, 0);
 
         return String.format(
                 "<p><strong>新增 (ADDED):</strong> %d</p>" +
@@ -194,59 +810,7 @@ public class ReportGenerator {
     }
 
 
-    /**
-     * 生成带有行内高亮的HTML差异视图。
-     */
-    private String generateVisualHtmlDiff(String oldText, String newText) {
-        String safeOldText = (oldText != null) ? oldText : "";
-        String safeNewText = (newText != null) ? newText : "";
-
-        LinkedList<DiffMatchPatch.Diff> diffs = dmp.diffMain(safeOldText, safeNewText);
-        dmp.diffCleanupSemantic(diffs);
-
-        StringBuilder html = new StringBuilder("<pre>");
-        int oldLineNum = 1;
-        int newLineNum = 1;
-
-        for (DiffMatchPatch.Diff aDiff : diffs) {
-            String text = aDiff.text;
-            String[] lines = text.split("\n", -1);
-
-            for (int i = 0; i < lines.length; i++) {
-                String line = lines[i];
-                if (i < lines.length - 1 || text.endsWith("\n")) { // 是一个完整的行
-                    switch (aDiff.operation) {
-                        case INSERT:
-                            html.append("<div class='diff-line diff-insert'><span class='line-num'>").append(newLineNum++).append("</span><span class='diff-op'>+</span><span class='diff-content'>")
-                                    .append(highlightWords(line, true)).append("</span></div>");
-                            break;
-                        case DELETE:
-                            html.append("<div class='diff-line diff-delete'><span class='line-num'>").append(oldLineNum++).append("</span><span class='diff-op'>-</span><span class='diff-content'>")
-                                    .append(highlightWords(line, false)).append("</span></div>");
-                            break;
-                        case EQUAL:
-                            html.append("<div class='diff-line'><span class='line-num'>").append(oldLineNum++).append("</span><span class='diff-op'> </span><span class='diff-content'>")
-                                    .append(escapeHtml(line)).append("</span></div>");
-                            newLineNum++; // 相同行，两边行号都增加
-                            break;
-                    }
-                } else { // 文本片段，不是完整的一行
-                    html.append(highlightWords(line, aDiff.operation == DiffMatchPatch.Operation.INSERT));
-                }
-            }
-        }
-        html.append("</pre>");
-        return html.toString();
-    }
-
-    // 一个简化的单词高亮逻辑
-    private String highlightWords(String text, boolean isInsert) {
-        String tag = isInsert ? "highlight-insert" : "highlight-delete";
-        // 简单的实现，直接高亮整个片段
-        return "<span class='" + tag + "'>" + escapeHtml(text) + "</span>";
-    }
-
     private String escapeHtml(String text) {
         return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
     }
-}
\ No newline at end of file
+}
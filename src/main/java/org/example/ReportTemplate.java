@@ -0,0 +1,85 @@
+package org.example;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预先按 ${name} 占位符拆分好的HTML模板。渲染时依次写出文本片段，遇到占位符时调用对应的内容写出器，
+ * 模板本身只解析一次，报告内容直接流式写入输出，不会在内存中拼出完整的报告。
+ */
+class ReportTemplate {
+
+    /**
+     * 向输出中写入一个占位符的内容。
+     */
+    interface Section {
+        void write(Writer out) throws IOException;
+    }
+
+    private final List<String> literals;
+    private final List<String> placeholders;
+
+    private ReportTemplate(List<String> literals, List<String> placeholders) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * 从类路径加载并拆分模板。
+     */
+    static ReportTemplate load(String resourceName) throws IOException {
+        return parse(loadResource(resourceName));
+    }
+
+    /**
+     * 以UTF-8读取类路径中的文本资源。
+     */
+    static String loadResource(String resourceName) throws IOException {
+        try (InputStream inputStream = ReportTemplate.class.getClassLoader().getResourceAsStream(resourceName)) {
+            if (inputStream == null) {
+                throw new IOException("无法找到资源文件: " + resourceName);
+            }
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    static ReportTemplate parse(String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int position = 0;
+        int start;
+        while ((start = template.indexOf("${", position)) >= 0) {
+            int end = template.indexOf('}', start);
+            if (end < 0) {
+                break;
+            }
+            literals.add(template.substring(position, start));
+            placeholders.add(template.substring(start + 2, end));
+            position = end + 1;
+        }
+        literals.add(template.substring(position));
+        return new ReportTemplate(Collections.unmodifiableList(literals), Collections.unmodifiableList(placeholders));
+    }
+
+    /**
+     * 把模板写入输出，占位符由sections中同名的内容写出器填充，未提供的占位符输出为空。
+     */
+    void render(Writer out, Map<String, Section> sections) throws IOException {
+        for (int i = 0; i < placeholders.size(); i++) {
+            out.write(literals.get(i));
+            Section section = sections.get(placeholders.get(i));
+            if (section != null) {
+                section.write(out);
+            }
+        }
+        out.write(literals.get(literals.size() - 1));
+    }
+}
@@ -0,0 +1,386 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按JAR对持久化的比较结果缓存，用于增量地重新比较：只有哈希对发生变化的JAR才需要重新处理。
+ * <p>
+ * 键由新旧JAR文件的SHA-256、影响比较结果的参数、反编译器版本和编码格式版本共同决定，
+ * 值为GZIP压缩的二进制编码的完整 {@link ComparisonResult}（包括源码、成员变更和差异块），每个JAR对一个文件。
+ * 写入时先写临时文件再原子重命名；总大小超过上限时按文件修改时间淘汰最久未使用的条目。
+ * 包含 {@link DiffDetail.DiffType#ERROR} 的结果不会被缓存，下次运行会重新尝试。
+ */
+public class ResultCache {
+
+    /** 编码格式变化时递增，旧格式的条目自然失效 */
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_SUFFIX = ".result.gz";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final String fingerprint;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    /**
+     * @param directory   缓存目录，不存在时会被创建
+     * @param maxBytes    缓存文件总大小上限（字节）
+     * @param fingerprint 影响比较结果的参数与版本信息，不同取值的结果互不复用
+     * @throws IOException 无法创建或扫描缓存目录
+     */
+    public ResultCache(Path directory, long maxBytes, String fingerprint) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.fingerprint = fingerprint;
+        Files.createDirectories(directory);
+        evictIfNeeded(scan());
+    }
+
+    /**
+     * 查询缓存的比较结果。
+     * @param jarName 本次运行中JAR的文件名，缓存的结果可能来自同内容、不同名称的JAR
+     * @param sources 读出的源码交给它保存，与新比较的结果遵守同样的内存预算
+     * @return 缓存的结果，状态可能是UNCHANGED；未命中或条目已损坏时返回null
+     */
+    public ComparisonResult get(byte[] oldJarHash, byte[] newJarHash, String jarName, File oldJar, File newJar, SourceStore sources) {
+        Path file = fileFor(key(oldJarHash, newJarHash));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            ComparisonResult result = read(in, jarName, oldJar, newJar, sources);
+            result.setJarHashes(oldJarHash, newJarHash);
+            touch(file);
+            hits.incrementAndGet();
+            return result;
+        } catch (NoSuchFileException e) {
+            // 未命中
+        } catch (IOException | RuntimeException e) {
+            Log.warn("警告: 比较结果缓存条目无法读取，将被删除: " + file + " (" + e + ")");
+            delete(file);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入一个JAR对的比较结果。写入失败只打印警告，不影响比较流程。
+     * 含有错误（包括JAR无法读取）或粗粒度差异的结果不写入：它们取决于当次运行的环境和耗时，下次运行可能得到完整的结果。
+     */
+    public void put(byte[] oldJarHash, byte[] newJarHash, ComparisonResult result) {
+        if (!isCacheable(result)) {
+            return;
+        }
+        Path file = fileFor(key(oldJarHash, newJarHash));
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, "result", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                write(out, result);
+            }
+            long size = Files.size(temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            stores.incrementAndGet();
+            if (totalBytes.addAndGet(size) > maxBytes) {
+                evictIfNeeded(scan());
+            }
+        } catch (IOException e) {
+            Log.warn("警告: 无法写入比较结果缓存 " + file + ": " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                delete(temp);
+            }
+        }
+    }
+
+    /**
+     * 生成一行用于在运行结束时打印的统计信息。
+     */
+    public String describeStatistics() {
+        return String.format("比较结果缓存: 复用 %d 个JAR, 重新比较 %d 个, 新写入 %d 个, 占用 %.1f MB / %.1f MB (%s)",
+                hits.get(), misses.get(), stores.get(),
+                totalBytes.get() / 1048576.0, maxBytes / 1048576.0, directory.toAbsolutePath());
+    }
+
+    private String key(byte[] oldJarHash, byte[] newJarHash) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(oldJarHash);
+            digest.update((byte) 0);
+            digest.update(newJarHash);
+            digest.update((byte) 0);
+            digest.update((FORMAT_VERSION + "\0" + fingerprint).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JRE不支持SHA-256", e);
+        }
+    }
+
+    private static boolean isCacheable(ComparisonResult result) {
+        for (DiffDetail detail : result.getDiffDetails()) {
+            if (detail.getType() == DiffDetail.DiffType.ERROR) {
+                return false;
+            }
+            // 粗粒度差异的标记总在差异说明的第一行
+            List<String> content = detail.getDiffContent();
+            if (!content.isEmpty() && content.get(0).startsWith(SourceCodeDiff.COARSE_NOTE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    // ---------------------------------------------------------------- 编码
+
+    private static void write(DataOutputStream out, ComparisonResult result) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        ComparisonResult.Status status = result.hasDifferences() ? result.getStatus() : ComparisonResult.Status.UNCHANGED;
+        out.writeUTF(status.name());
+        List<DiffDetail> details = status == ComparisonResult.Status.UNCHANGED ? Collections.emptyList() : result.getDiffDetails();
+        out.writeInt(details.size());
+        for (DiffDetail detail : details) {
+            writeString(out, detail.getClassName());
+            out.writeUTF(detail.getType().name());
+            writeStrings(out, detail.getDiffContent());
+            writeString(out, detail.getOldSource());
+            writeString(out, detail.getNewSource());
+            writeBytes(out, detail.getOldHash());
+            writeBytes(out, detail.getNewHash());
+
+            out.writeInt(detail.getChangedMembers().size());
+            for (MemberChange change : detail.getChangedMembers()) {
+                writeString(out, change.getOwner());
+                out.writeUTF(change.getKind().name());
+                writeString(out, change.getName());
+                writeString(out, change.getDescriptor());
+                out.writeUTF(change.getChangeType().name());
+            }
+
+            out.writeInt(detail.getHunks().size());
+            for (DiffHunk hunk : detail.getHunks()) {
+                out.writeUTF(hunk.getType().name());
+                out.writeInt(hunk.getOldStart());
+                out.writeInt(hunk.getOldEnd());
+                out.writeInt(hunk.getNewStart());
+                out.writeInt(hunk.getNewEnd());
+                out.writeInt(hunk.getRefinedPairs());
+                writeSpans(out, hunk.getOldSpans());
+                writeSpans(out, hunk.getNewSpans());
+            }
+        }
+    }
+
+    private static ComparisonResult read(DataInputStream in, String jarName, File oldJar, File newJar, SourceStore sources) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的格式版本 " + version);
+        }
+        ComparisonResult result = new ComparisonResult(jarName, oldJar, newJar, ComparisonResult.Status.valueOf(in.readUTF()));
+        int detailCount = in.readInt();
+        for (int i = 0; i < detailCount; i++) {
+            String className = readString(in);
+            DiffDetail.DiffType type = DiffDetail.DiffType.valueOf(in.readUTF());
+            List<String> diffContent = readStrings(in);
+            SourceRef oldSource = sources.store(readString(in));
+            SourceRef newSource = sources.store(readString(in));
+            byte[] oldHash = readBytes(in);
+            byte[] newHash = readBytes(in);
+
+            int memberCount = in.readInt();
+            List<MemberChange> members = new ArrayList<>(memberCount);
+            for (int m = 0; m < memberCount; m++) {
+                String owner = readString(in);
+                MemberChange.Kind kind = MemberChange.Kind.valueOf(in.readUTF());
+                String name = readString(in);
+                String descriptor = readString(in);
+                members.add(new MemberChange(owner, kind, name, descriptor, MemberChange.ChangeType.valueOf(in.readUTF())));
+            }
+
+            int hunkCount = in.readInt();
+            List<DiffHunk> hunks = new ArrayList<>(hunkCount);
+            for (int h = 0; h < hunkCount; h++) {
+                LineEdit.Type hunkType = LineEdit.Type.valueOf(in.readUTF());
+                int oldStart = in.readInt();
+                int oldEnd = in.readInt();
+                int newStart = in.readInt();
+                int newEnd = in.readInt();
+                int refinedPairs = in.readInt();
+                hunks.add(new DiffHunk(hunkType, oldStart, oldEnd, newStart, newEnd, refinedPairs, readSpans(in), readSpans(in)));
+            }
+            result.addDiffDetail(new DiffDetail(className, type, diffContent, oldSource, newSource, members, hunks, oldHash, newHash));
+        }
+        return result;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static void writeSpans(DataOutputStream out, List<DiffHunk.Span> spans) throws IOException {
+        out.writeInt(spans.size());
+        for (DiffHunk.Span span : spans) {
+            out.writeInt(span.getLine());
+            out.writeInt(span.getStart());
+            out.writeInt(span.getEnd());
+        }
+    }
+
+    private static List<DiffHunk.Span> readSpans(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<DiffHunk.Span> spans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            spans.add(new DiffHunk.Span(in.readInt(), in.readInt(), in.readInt()));
+        }
+        return spans;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * 写出可为null的字符串。writeUTF限制在64KB以内，源码可能远超这个长度，因此使用长度前缀加UTF-8字节。
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------------------------------------------------------------- 淘汰
+
+    /**
+     * 扫描缓存目录，按修改时间由旧到新返回所有条目，同时重新统计总大小。
+     */
+    private List<Path> scan() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            entries.forEach(files::add);
+        }
+        Map<Path, Long> modifiedTimes = new HashMap<>();
+        long total = 0;
+        for (Path file : files) {
+            try {
+                modifiedTimes.put(file, Files.getLastModifiedTime(file).toMillis());
+                total += Files.size(file);
+            } catch (IOException ignored) {
+                // 扫描期间被其它进程删除
+            }
+        }
+        totalBytes.set(total);
+        List<Path> sorted = new ArrayList<>(modifiedTimes.keySet());
+        sorted.sort(Comparator.comparing(modifiedTimes::get));
+        return sorted;
+    }
+
+    private synchronized void evictIfNeeded(List<Path> oldestFirst) {
+        for (Path file : oldestFirst) {
+            if (totalBytes.get() <= maxBytes) {
+                break;
+            }
+            try {
+                long size = Files.size(file);
+                Files.deleteIfExists(file);
+                totalBytes.addAndGet(-size);
+            } catch (IOException ignored) {
+                // 可能正被其它进程读取，下次运行时会再次尝试
+            }
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // 只影响淘汰顺序
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // 下次运行时会再次尝试
+        }
+    }
+}
@@ -3,75 +3,406 @@ package org.example;
 import org.bitbucket.cowwoc.diffmatchpatch.DiffMatchPatch;
 import org.example.DiffDetail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * 源码比对器。实例是线程安全的，可以被多个比对线程共享。
+ * <p>
+ * 先用可替换的 {@link DiffEngine} 做行级比对，字符级细化只在被替换的行对内部进行，
+ * 避免对整个文件做字符级比对。每个类的比对都受 {@link DiffBudget} 约束，超出预算时退化为粗粒度的行差异。
+ * 差异类型由 {@link SourceNormalizer} 规范化后的源码是否相同决定，与差异计算无关。
+ * <p>
+ * 两侧源码按顶层成员切分并由 {@link MemberAlignment} 按签名配对：只有成员顺序不同的源码判定为非逻辑差异，
+ * 行级比对也只在内容不同的成员之间进行，反编译器调整成员顺序不会产生覆盖整个文件的差异。
+ */
 public class SourceCodeDiff {
 
-    // 过滤规则保持不变
-    private static final Pattern ACCESS_METHOD_PATTERN = Pattern.compile("access\\$\\d+");
-    private static final String NORMALIZED_ACCESS_METHOD = "access$normalized";
-    private static final Pattern SYNTHETIC_COMMENT_PATTERN = Pattern.compile("^\\s*//\\s*\\$FF: synthetic method\\s*$\\n?", Pattern.MULTILINE);
+    /** 默认预算：合计5万行、2秒，单行超过1000个字符时不做字符级细化 */
+    public static final DiffBudget DEFAULT_BUDGET = new DiffBudget(50_000, 2_000, 1_000);
 
-    private final DiffMatchPatch dmp = new DiffMatchPatch();
+    /** 超出预算、退化为粗粒度差异时写在差异说明开头的标记；这样的结果取决于当次运行的耗时 */
+    static final String COARSE_NOTE = "[粗粒度差异]";
+
+    private final ThreadLocal<DiffMatchPatch> dmp = ThreadLocal.withInitial(DiffMatchPatch::new);
+    private final DiffEngine engine;
+    private final DiffEngine fallback = new CoarseDiffEngine();
+    private final DiffBudget budget;
+    private final SourceNormalizer normalizer;
+
+    public SourceCodeDiff() {
+        this(new MyersDiffEngine(), DEFAULT_BUDGET);
+    }
 
     /**
-     * 计算两个源码字符串的差异。
+     * @param engine 行级差异算法，必须是线程安全的
+     * @param budget 每个类的比对预算，超出后退化为粗粒度的行差异
      */
-    public LinkedList<DiffMatchPatch.Diff> diff(String oldSource, String newSource) {
+    public SourceCodeDiff(DiffEngine engine, DiffBudget budget) {
+        this(engine, budget, new SourceNormalizer());
+    }
+
+    /**
+     * @param normalizer 判断差异是否只由编译器造成的规范化规则，必须是线程安全的
+     */
+    public SourceCodeDiff(DiffEngine engine, DiffBudget budget, SourceNormalizer normalizer) {
+        this.engine = engine;
+        this.budget = budget;
+        this.normalizer = normalizer;
+    }
+
+    public SourceNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * @return 影响比较结果的规则：规范化规则以及成员顺序的处理方式，用作比较结果缓存键的一部分
+     */
+    public String describe() {
+        return normalizer.describe() + ";memberOrder=ignoredExceptInitializers";
+    }
+
+    /**
+     * 计算两个源码字符串的行级差异。
+     */
+    public LineDiff diff(String oldSource, String newSource) {
         // 输入为null，也不会导致后续操作失败
-        String safeOldSource = (oldSource != null) ? oldSource : "";
-        String safeNewSource = (newSource != null) ? newSource : "";
+        List<String> oldLines = splitLines(oldSource);
+        List<String> newLines = splitLines(newSource);
+        try {
+            return new LineDiff(oldLines, newLines, engine.diff(oldLines, newLines, budget), null);
+        } catch (DiffBudgetExceededException e) {
+            return new LineDiff(oldLines, newLines, fallback.diff(oldLines, newLines, budget), e.getMessage());
+        }
+    }
 
-        LinkedList<DiffMatchPatch.Diff> diffs = dmp.diffMain(safeOldSource, safeNewSource);
-        dmp.diffCleanupSemantic(diffs);
-        return diffs;
+    /**
+     * 把行级差异整理为差异区间，并在截止时间之前对被替换的行逐对做字符级细化。
+     * 粗粒度差异不做细化，超过细化长度上限的行对整行渲染。
+     */
+    List<DiffHunk> toHunks(LineDiff lineDiff, long deadline) {
+        List<DiffHunk> hunks = new ArrayList<>();
+        for (LineEdit edit : lineDiff.getEdits()) {
+            if (edit.getType() == LineEdit.Type.EQUAL) {
+                continue;
+            }
+            if (edit.getType() != LineEdit.Type.CHANGE || lineDiff.isCoarse()) {
+                hunks.add(DiffHunk.of(edit));
+                continue;
+            }
+            List<DiffHunk.Span> oldSpans = new ArrayList<>();
+            List<DiffHunk.Span> newSpans = new ArrayList<>();
+            int pairs = Math.min(edit.getOldEnd() - edit.getOldStart(), edit.getNewEnd() - edit.getNewStart());
+            int refined = 0;
+            while (refined < pairs && System.nanoTime() < deadline) {
+                int oldLine = edit.getOldStart() + refined;
+                int newLine = edit.getNewStart() + refined;
+                if (!refineLine(lineDiff.getOldLines().get(oldLine), lineDiff.getNewLines().get(newLine),
+                        oldLine, newLine, oldSpans, newSpans)) {
+                    break;
+                }
+                refined++;
+            }
+            hunks.add(new DiffHunk(edit.getType(), edit.getOldStart(), edit.getOldEnd(), edit.getNewStart(), edit.getNewEnd(),
+                    refined, oldSpans, newSpans));
+        }
+        return hunks;
     }
 
     /**
-     * 应用预定义的过滤规则来“净化”源代码字符串。
+     * 对一对发生替换的行做字符级细化，把删除和插入的片段记录为两侧的高亮区间。
+     *
+     * @return 任一行超过细化长度上限时返回false，调用方应整行渲染
      */
-    public String applyAllFilters(String source) {
-        if (source == null) {
-            return "";
+    private boolean refineLine(String oldText, String newText, int oldLine, int newLine,
+                               List<DiffHunk.Span> oldSpans, List<DiffHunk.Span> newSpans) {
+        if (oldText.length() > budget.getMaxRefineLineLength() || newText.length() > budget.getMaxRefineLineLength()) {
+            return false;
+        }
+        DiffMatchPatch patch = dmp.get();
+        LinkedList<DiffMatchPatch.Diff> diffs = patch.diffMain(oldText, newText, false);
+        patch.diffCleanupSemantic(diffs);
+        int oldPosition = 0;
+        int newPosition = 0;
+        for (DiffMatchPatch.Diff diff : diffs) {
+            int length = diff.text.length();
+            switch (diff.operation) {
+                case DELETE:
+                    oldSpans.add(new DiffHunk.Span(oldLine, oldPosition, oldPosition + length));
+                    oldPosition += length;
+                    break;
+                case INSERT:
+                    newSpans.add(new DiffHunk.Span(newLine, newPosition, newPosition + length));
+                    newPosition += length;
+                    break;
+                default:
+                    oldPosition += length;
+                    newPosition += length;
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按换行符拆分源码，忽略末尾换行之后的空行以及Windows换行中的\r。
+     */
+    static List<String> splitLines(String source) {
+        if (source == null || source.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>(Arrays.asList(source.split("\\r?\\n", -1)));
+        if (lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1);
         }
+        return lines;
+    }
 
-        String result = SYNTHETIC_COMMENT_PATTERN.matcher(source).replaceAll("");
-        result = safeReplaceAll(result, ACCESS_METHOD_PATTERN, NORMALIZED_ACCESS_METHOD);
-        return result;
+    /**
+     * 按成员计算行级差异：保持相对顺序的配对成员作为锚点，只比对内容不同的配对成员，
+     * 以及相邻锚点之间新增、删除或签名发生变化的成员；只是位置不同的成员不产生差异。
+     *
+     * @return 成员无法对应到各自的行区间（如多个成员写在同一行）时返回null，调用方应比对整份源码
+     */
+    private LineDiff diffMembers(String oldSource, String newSource, MemberAlignment alignment, long deadline) {
+        List<String> oldLines = splitLines(oldSource);
+        List<String> newLines = splitLines(newSource);
+        int[][] oldRanges = memberLines(oldSource, oldLines, alignment.getOldMembers());
+        int[][] newRanges = memberLines(newSource, newLines, alignment.getNewMembers());
+        if (oldRanges == null || newRanges == null) {
+            return null;
+        }
+        MemberEdits edits = new MemberEdits(oldLines, newLines, deadline);
+        int previousOld = -1;
+        int previousNew = -1;
+        for (int n = 0; n <= newRanges.length; n++) {
+            if (n < newRanges.length && !alignment.isAnchor(n)) {
+                continue;
+            }
+            int o = n < newRanges.length ? alignment.oldIndexOf(n) : oldRanges.length;
+            diffGap(alignment, oldRanges, newRanges, previousOld, o, previousNew, n, edits);
+            if (n < newRanges.length) {
+                edits.diff(oldRanges[o], newRanges[n]);
+            }
+            previousOld = o;
+            previousNew = n;
+        }
+        for (int n = 0; n < newRanges.length; n++) {
+            int o = alignment.oldIndexOf(n);
+            if (o >= 0 && !alignment.isAnchor(n)) {
+                edits.diff(oldRanges[o], newRanges[n]);
+            }
+        }
+        return edits.toLineDiff();
     }
+
+    /**
+     * 比对两个相邻锚点之间未配对的成员。间隔内没有被移动的成员时整段比对，
+     * 否则按位置两两比对，多出的成员整体删除或新增。
+     */
+    private void diffGap(MemberAlignment alignment, int[][] oldRanges, int[][] newRanges,
+                         int fromOld, int toOld, int fromNew, int toNew, MemberEdits edits) {
+        List<Integer> oldGap = new ArrayList<>();
+        List<Integer> newGap = new ArrayList<>();
+        boolean moved = false;
+        for (int o = fromOld + 1; o < toOld; o++) {
+            if (alignment.newIndexOf(o) >= 0) {
+                moved = true;
+            } else {
+                oldGap.add(o);
+            }
+        }
+        for (int n = fromNew + 1; n < toNew; n++) {
+            if (alignment.oldIndexOf(n) >= 0) {
+                moved = true;
+            } else {
+                newGap.add(n);
+            }
+        }
+        if (oldGap.isEmpty() && newGap.isEmpty()) {
+            return;
+        }
+        // 一侧为空时，差异定位在前一个锚点之后
+        int oldAt = fromOld >= 0 ? oldRanges[fromOld][1] : toOld < oldRanges.length ? oldRanges[toOld][0] : 0;
+        int newAt = fromNew >= 0 ? newRanges[fromNew][1] : toNew < newRanges.length ? newRanges[toNew][0] : 0;
+        int[] oldEmpty = {oldAt, oldAt};
+        int[] newEmpty = {newAt, newAt};
+        if (!moved) {
+            edits.diff(oldGap.isEmpty() ? oldEmpty : new int[]{oldRanges[oldGap.get(0)][0], oldRanges[oldGap.get(oldGap.size() - 1)][1]},
+                    newGap.isEmpty() ? newEmpty : new int[]{newRanges[newGap.get(0)][0], newRanges[newGap.get(newGap.size() - 1)][1]});
+            return;
+        }
+        for (int i = 0; i < Math.max(oldGap.size(), newGap.size()); i++) {
+            edits.diff(i < oldGap.size() ? oldRanges[oldGap.get(i)] : oldEmpty,
+                    i < newGap.size() ? newRanges[newGap.get(i)] : newEmpty);
+        }
+    }
+
+    /**
+     * @return 每个成员占用的行区间 [起始行, 结束行)，不含成员之后的空行；少于两个成员或成员的起始行不严格递增时返回null
+     */
+    private static int[][] memberLines(String source, List<String> lines, List<SourceNormalizer.Member> members) {
+        if (source == null || members.size() < 2) {
+            return null;
+        }
+        int[] starts = new int[members.size()];
+        int line = 0;
+        int offset = 0;
+        for (int i = 0; i < members.size(); i++) {
+            int target = members.get(i).getSourceOffset();
+            for (; offset < target; offset++) {
+                if (source.charAt(offset) == '\n') {
+                    line++;
+                }
+            }
+            if (i > 0 && line <= starts[i - 1]) {
+                return null;
+            }
+            starts[i] = line;
+        }
+        int[][] ranges = new int[members.size()][];
+        for (int i = 0; i < members.size(); i++) {
+            int end = i + 1 < members.size() ? starts[i + 1] : lines.size();
+            while (end > starts[i] && lines.get(end - 1).isBlank()) {
+                end--;
+            }
+            ranges[i] = new int[]{starts[i], end};
+        }
+        return ranges;
+    }
+
+    /**
+     * 逐个成员累积的行级差异。各成员共享同一个截止时间，超出预算的成员退化为粗粒度的行差异。
+     */
+    private final class MemberEdits {
+        private final List<String> oldLines;
+        private final List<String> newLines;
+        private final long deadline;
+        private final List<LineEdit> edits = new ArrayList<>();
+        private String fallbackReason;
+
+        MemberEdits(List<String> oldLines, List<String> newLines, long deadline) {
+            this.oldLines = oldLines;
+            this.newLines = newLines;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 比对旧源码的行区间 oldRange 与新源码的行区间 newRange，把差异按所在位置记录下来。
+         */
+        void diff(int[] oldRange, int[] newRange) {
+            int oldStart = oldRange[0];
+            int newStart = newRange[0];
+            if (oldStart == oldRange[1] && newStart == newRange[1]) {
+                return;
+            }
+            if (oldStart == oldRange[1] || newStart == newRange[1]) {
+                edits.add(new LineEdit(oldStart == oldRange[1] ? LineEdit.Type.INSERT : LineEdit.Type.DELETE,
+                        oldStart, oldRange[1], newStart, newRange[1]));
+                return;
+            }
+            List<String> oldPart = oldLines.subList(oldStart, oldRange[1]);
+            List<String> newPart = newLines.subList(newStart, newRange[1]);
+            if (oldPart.equals(newPart)) {
+                return;
+            }
+            List<LineEdit> partEdits;
+            try {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remainingMillis <= 0) {
+                    throw new DiffBudgetExceededException("行级比对超过 " + budget.getTimeoutMillis() + " 毫秒");
+                }
+                partEdits = engine.diff(oldPart, newPart,
+                        new DiffBudget(budget.getMaxLines(), remainingMillis, budget.getMaxRefineLineLength()));
+            } catch (DiffBudgetExceededException e) {
+                if (fallbackReason == null) {
+                    fallbackReason = e.getMessage();
+                }
+                partEdits = fallback.diff(oldPart, newPart, budget);
+            }
+            for (LineEdit edit : partEdits) {
+                if (edit.getType() != LineEdit.Type.EQUAL) {
+                    edits.add(new LineEdit(edit.getType(), oldStart + edit.getOldStart(), oldStart + edit.getOldEnd(),
+                            newStart + edit.getNewStart(), newStart + edit.getNewEnd()));
+                }
+            }
+        }
+
+        /**
+         * @return 按旧源码位置排列的差异，报告按此顺序渲染；被移动的成员在新源码中的位置不一定递增
+         */
+        LineDiff toLineDiff() {
+            edits.sort(Comparator.comparingInt(LineEdit::getOldStart));
+            return new LineDiff(oldLines, newLines, edits, fallbackReason);
+        }
+    }
+
+    /**
+     * 应用规范化规则来“净化”源代码字符串，见 {@link SourceNormalizer}。
+     */
+    public String applyAllFilters(String source) {
+        return normalizer.normalize(source).getText();
+    }
+
     /**
      * 比较两个源代码字符串，并返回一个DiffDetail对象，包含差异类型和详细信息。
+     * 差异类型由规范化后的源码是否相同决定，先比较哈希，不需要差异计算；
+     * 差异区间只在这里计算一次，报告直接使用其结果渲染，两侧源码完全相同时不做差异计算。
      *
      * @param oldSource 旧版本的源代码
      * @param newSource 新版本的源代码
      * @param className 类名，用于报告中标识
-     * @return DiffDetail对象，包含差异类型和详细信息
+     * @return DiffDetail对象，包含差异类型、差异区间和详细信息
      */
     public DiffDetail compare(String oldSource, String newSource, String className) {
-        String normalizedOldSource = applyAllFilters(oldSource);
-        String normalizedNewSource = applyAllFilters(newSource);
-
-        LinkedList<DiffMatchPatch.Diff> diffs = diff(normalizedOldSource, normalizedNewSource);
-
-        if (diffs.size() == 1 && diffs.getFirst().operation == DiffMatchPatch.Operation.EQUAL) {
-            return new DiffDetail(className, DiffDetail.DiffType.NON_LOGICAL_CHANGE, List.of("非逻辑性差异，细节将在报告中渲染。"), oldSource, newSource);
-        } else {
-            return new DiffDetail(className, DiffDetail.DiffType.LOGICAL_CHANGE, List.of("逻辑性差异，细节将在报告中渲染。"), oldSource, newSource);
+        try (PerformanceProfiler.Scope ignored = PerformanceProfiler.start(PerformanceProfiler.Phase.DIFF, null, className, 1,
+                (oldSource != null ? oldSource.length() : 0) + (newSource != null ? newSource.length() : 0))) {
+            return compareSources(oldSource, newSource, className);
         }
     }
 
+    private DiffDetail compareSources(String oldSource, String newSource, String className) {
+        if (nullToEmpty(oldSource).equals(nullToEmpty(newSource))) {
+            return new DiffDetail(className, DiffDetail.DiffType.NON_LOGICAL_CHANGE, List.of("反编译源码完全相同，差异仅存在于字节码中。"),
+                    oldSource, newSource, Collections.emptyList(), Collections.emptyList());
+        }
+        SourceNormalizer.Result oldResult = normalizer.normalize(oldSource);
+        SourceNormalizer.Result newResult = normalizer.normalize(newSource);
+        MemberAlignment alignment = new MemberAlignment(oldResult.getMembers(), newResult.getMembers());
+        DiffDetail.DiffType type = oldResult.sameAs(newResult) || alignment.isEquivalent()
+                ? DiffDetail.DiffType.NON_LOGICAL_CHANGE
+                : DiffDetail.DiffType.LOGICAL_CHANGE;
 
-    private String safeReplaceAll(String input, Pattern pattern, String replacement) {
-        String safeReplacement = Matcher.quoteReplacement(replacement);
-        Matcher matcher = pattern.matcher(input);
-        StringBuilder sb = new StringBuilder();
-        while (matcher.find()) {
-            matcher.appendReplacement(sb, safeReplacement);
+        long deadline = budget.deadline();
+        LineDiff lineDiff = diffMembers(oldSource, newSource, alignment, deadline);
+        int moved = lineDiff != null ? alignment.getMoved() : 0;
+        if (lineDiff == null) {
+            lineDiff = diff(oldSource, newSource);
+        }
+        List<DiffHunk> hunks = toHunks(lineDiff, deadline);
+
+        List<String> diffContent = new ArrayList<>(hunks.size() + 2);
+        if (lineDiff.isCoarse()) {
+            diffContent.add(COARSE_NOTE + " " + lineDiff.getFallbackReason());
+        }
+        if (moved > 0) {
+            diffContent.add("[成员重排] " + moved + " 个成员的位置发生变化，只比对内容不同的成员");
         }
-        matcher.appendTail(sb);
-        return sb.toString();
+        if (hunks.isEmpty()) {
+            diffContent.add(moved > 0 ? "反编译源码只有成员顺序不同。" : "反编译源码完全相同，差异仅存在于字节码中。");
+        }
+        for (DiffHunk hunk : hunks) {
+            diffContent.add(hunk.header());
+        }
+
+        return new DiffDetail(className, type, diffContent, oldSource, newSource, Collections.emptyList(), hunks);
+    }
+
+    private static String nullToEmpty(String source) {
+        return source != null ? source : "";
     }
 }
\ No newline at end of file
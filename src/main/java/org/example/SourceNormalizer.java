@@ -0,0 +1,778 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 反编译源码的规范化器：对源码做一次词法扫描，在同一趟中按可扩展的规则改写编译器生成的名字、丢弃合成注释，
+ * 并在写出的同时计算规范化文本的滚动哈希。两份源码的规范化结果相同，说明它们之间只有编译器造成的差异。
+ * <p>
+ * 扫描是线性的：每个字符只被访问常数次，标识符只在包含 {@code $} 或形如 {@code var<数字>} 时才交给规则，
+ * 其余记号直接从原文复制到输出，不为每个记号创建对象。空白被折叠：含换行的空白写为一个换行，其余写为一个空格，
+ * 因此规范化文本只用于比较，不用于展示。
+ * <p>
+ * 扫描的同时按顶层类体把源码切分为成员（类声明、字段、构造器、方法、内部类、初始化块），见 {@link Result#getMembers()}，
+ * 用于与成员顺序无关的比较。
+ * <p>
+ * 实例不持有可变状态，可以被多个线程共享；每次调用使用独立的 {@link Context}。
+ */
+public class SourceNormalizer {
+
+    /** 合成访问方法的编号，如 access$000，JDK 11之后的嵌套类访问不再生成 */
+    public static final Rule ACCESS_METHODS = new Rule() {
+        @Override
+        public boolean rewriteName(CharSequence source, int start, int end, Context context) {
+            return rewriteNumberSuffix(source, start, end, "access$", context);
+        }
+
+        @Override
+        public String toString() {
+            return "access-methods";
+        }
+    };
+
+    /** lambda实现方法的编号，如 lambda$main$0，编号随同一个类中lambda的数量和顺序变化 */
+    public static final Rule LAMBDA_NUMBERING = new Rule() {
+        @Override
+        public boolean rewriteName(CharSequence source, int start, int end, Context context) {
+            return rewriteNumberSuffix(source, start, end, "lambda$", context);
+        }
+
+        @Override
+        public String toString() {
+            return "lambda-numbering";
+        }
+    };
+
+    /** 保存枚举switch映射表的匿名类编号，如 Outer$1.$SwitchMap$pkg$Color 中的 Outer$1 */
+    public static final Rule SWITCH_MAP_HOLDERS = new Rule() {
+        @Override
+        public boolean rewriteName(CharSequence source, int start, int end, Context context) {
+            return regionMatches(source, end, ".$SwitchMap$") && rewriteNumberSuffix(source, start, end, "", context);
+        }
+
+        @Override
+        public String toString() {
+            return "switch-map-holders";
+        }
+    };
+
+    /** 枚举的值数组：javac生成 $VALUES，ECJ生成 ENUM$VALUES */
+    public static final Rule ENUM_VALUES = new Rule() {
+        @Override
+        public boolean rewriteName(CharSequence source, int start, int end, Context context) {
+            if (!regionEquals(source, start, end, "ENUM$VALUES")) {
+                return false;
+            }
+            context.append("$VALUES");
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "enum-values";
+        }
+    };
+
+    /** 内部类持有的外部实例字段，如 this$0，编号随内部类的嵌套深度变化 */
+    public static final Rule OUTER_THIS = new Rule() {
+        @Override
+        public boolean rewriteName(CharSequence source, int start, int end, Context context) {
+            return rewriteNumberSuffix(source, start, end, "this$", context);
+        }
+
+        @Override
+        public String toString() {
+            return "outer-this";
+        }
+    };
+
+    /**
+     * 反编译器为没有调试信息的局部变量生成的名字，如 var1、var2。
+     * 在每个成员内按首次出现的顺序重新编号，新增或删除一个局部变量不会让后面所有变量的名字都发生变化。
+     */
+    public static final Rule SYNTHETIC_VARIABLES = new Rule() {
+        @Override
+        public boolean rewriteName(CharSequence source, int start, int end, Context context) {
+            if (end - start < 4 || !regionMatches(source, start, "var") || !isDigits(source, start + 3, end)) {
+                return false;
+            }
+            context.append("var");
+            context.append(Integer.toString(context.localIndex(source, start, end)));
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "synthetic-variables";
+        }
+    };
+
+    /** Fernflower标注合成成员的注释，如 // $FF: synthetic method */
+    public static final Rule SYNTHETIC_COMMENTS = new Rule() {
+        @Override
+        public boolean dropComment(CharSequence source, int start, int end) {
+            int i = start + 2;
+            while (i < end && source.charAt(i) == ' ') {
+                i++;
+            }
+            return regionMatches(source, i, "$FF: synthetic ");
+        }
+
+        @Override
+        public String toString() {
+            return "synthetic-comments";
+        }
+    };
+
+    public static final List<Rule> DEFAULT_RULES = List.of(
+            ACCESS_METHODS, LAMBDA_NUMBERING, SWITCH_MAP_HOLDERS, ENUM_VALUES, OUTER_THIS, SYNTHETIC_VARIABLES, SYNTHETIC_COMMENTS);
+
+    /** 多项式滚动哈希的乘数 */
+    private static final long HASH_MULTIPLIER = 0x100000001B3L;
+
+    private final List<Rule> rules;
+
+    public SourceNormalizer() {
+        this(DEFAULT_RULES);
+    }
+
+    /**
+     * @param rules 按顺序尝试的规则，一个名字由第一条改写它的规则处理；规则必须是无状态的
+     */
+    public SourceNormalizer(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return 规则名称的列表，用作比较结果缓存键的一部分
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Rule rule : rules) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(rule);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 规范化一份源码，null按空源码处理。
+     */
+    public Result normalize(String source) {
+        if (source == null) {
+            source = "";
+        }
+        Context context = new Context(source.length());
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (!isWhitespace(c)) {
+                context.startToken(i, c);
+            }
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f') {
+                int end = i;
+                boolean newline = false;
+                while (end < length && isWhitespace(source.charAt(end))) {
+                    newline |= source.charAt(end) == '\n';
+                    end++;
+                }
+                context.separate(newline);
+                i = end;
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                int end = source.indexOf('\n', i);
+                i = comment(source, i, end < 0 ? length : end, context);
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+                int close = source.indexOf("*/", i + 2);
+                i = comment(source, i, close < 0 ? length : close + 2, context);
+            } else if (c == '"' || c == '\'') {
+                int end = skipLiteral(source, i);
+                context.copy(source, i, end);
+                i = end;
+            } else if (isIdentifierStart(c)) {
+                int end = i + 1;
+                boolean candidate = c == '$' || c == 'v';
+                while (end < length && isIdentifierPart(source.charAt(end))) {
+                    candidate |= source.charAt(end) == '$';
+                    end++;
+                }
+                name(source, i, end, candidate, context);
+                i = end;
+            } else if (c >= '0' && c <= '9') {
+                int end = i + 1;
+                while (end < length && (isIdentifierPart(source.charAt(end)) || source.charAt(end) == '.')) {
+                    end++;
+                }
+                context.copy(source, i, end);
+                i = end;
+            } else {
+                context.punctuation(c);
+                i++;
+            }
+        }
+        context.finish();
+        return new Result(context.out.toString(), context.hash, context.units, context.unitCount);
+    }
+
+    private int comment(String source, int start, int end, Context context) {
+        for (Rule rule : rules) {
+            if (rule.dropComment(source, start, end)) {
+                return end;
+            }
+        }
+        context.copy(source, start, end);
+        return end;
+    }
+
+    private void name(String source, int start, int end, boolean candidate, Context context) {
+        if (candidate) {
+            context.beforeToken();
+            for (Rule rule : rules) {
+                if (rule.rewriteName(source, start, end, context)) {
+                    return;
+                }
+            }
+        }
+        context.copy(source, start, end);
+    }
+
+    /**
+     * @return 字符串、文本块或字符字面量之后的位置；未闭合的字面量延伸到源码末尾
+     */
+    private static int skipLiteral(String source, int start) {
+        char quote = source.charAt(start);
+        if (quote == '"' && source.startsWith("\"\"\"", start)) {
+            int close = source.indexOf("\"\"\"", start + 3);
+            while (close > 0 && source.charAt(close - 1) == '\\') {
+                close = source.indexOf("\"\"\"", close + 1);
+            }
+            return close < 0 ? source.length() : close + 3;
+        }
+        int i = start + 1;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote || c == '\n') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return source.length();
+    }
+
+    /**
+     * ASCII字符直接判断，避免对占绝大多数的ASCII源码逐字符查询Unicode属性。
+     */
+    private static boolean isIdentifierStart(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+        }
+        return Character.isJavaIdentifierStart(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$';
+        }
+        return Character.isJavaIdentifierPart(c);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f';
+    }
+
+    /**
+     * 名字以给定前缀开头并以 {@code $<数字>} 结尾时，把结尾的数字改写为N。
+     */
+    private static boolean rewriteNumberSuffix(CharSequence source, int start, int end, String prefix, Context context) {
+        if (!regionMatches(source, start, prefix)) {
+            return false;
+        }
+        int digits = end;
+        while (digits > start && Character.isDigit(source.charAt(digits - 1))) {
+            digits--;
+        }
+        if (digits == end || digits - 1 < start + prefix.length() - 1 || source.charAt(digits - 1) != '$') {
+            return false;
+        }
+        context.append(source, start, digits);
+        context.append("N");
+        return true;
+    }
+
+    private static boolean regionMatches(CharSequence source, int start, String text) {
+        if (start + text.length() > source.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (source.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEquals(CharSequence source, int start, int end, String text) {
+        return end - start == text.length() && regionMatches(source, start, text);
+    }
+
+    private static boolean isDigits(CharSequence source, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(source.charAt(i))) {
+                return false;
+            }
+        }
+        return start < end;
+    }
+
+    /**
+     * 一条规范化规则。规则必须是无状态的，需要在一次扫描内保存的状态放在 {@link Context} 中。
+     */
+    public interface Rule {
+
+        /**
+         * 尝试改写一个包含 {@code $} 或以 {@code v} 开头的标识符。
+         *
+         * @param source 整份源码，规则可以查看名字前后的内容
+         * @param start  名字的起始位置
+         * @param end    名字的结束位置（不含）
+         * @return 已经把改写后的名字写入context时返回true；返回false时交给下一条规则，都不处理则原样写出
+         */
+        default boolean rewriteName(CharSequence source, int start, int end, Context context) {
+            return false;
+        }
+
+        /**
+         * @param start 注释的起始位置，指向 // 或 /*
+         * @param end   注释的结束位置（不含），不包括行注释之后的换行
+         * @return 是否丢弃该注释
+         */
+        default boolean dropComment(CharSequence source, int start, int end) {
+            return false;
+        }
+    }
+
+    /**
+     * 一次扫描的输出和状态：规范化文本、滚动哈希、花括号深度、成员边界和当前成员内的局部变量编号。
+     */
+    public static final class Context {
+        /** 每个成员在units中占用的int数：源码中的起始位置、规范化文本中的起止位置、是否为类声明 */
+        private static final int UNIT_FIELDS = 4;
+
+        private final StringBuilder out;
+        private long hash;
+        private int depth;
+        private int parens;
+        private boolean pendingSpace;
+        private boolean pendingNewline;
+        private final Map<String, Integer> locals = new HashMap<>();
+        private int[] units = new int[UNIT_FIELDS * 16];
+        private int unitCount;
+        private boolean unitOpen;
+        private int unitSourceStart;
+        private int unitStart;
+        /** 类体内的 '}' 之后还不能确定成员是否结束，由下一个记号决定 */
+        private boolean pendingClose;
+        private int pendingCloseEnd;
+        /** 类体内的 '}' 之后紧跟 ',' 时（带类体的枚举常量），成员在 ',' 之后结束 */
+        private boolean closeAfterComma;
+
+        private Context(int capacity) {
+            this.out = new StringBuilder(capacity);
+        }
+
+        public void append(String text) {
+            append(text, 0, text.length());
+        }
+
+        public void append(CharSequence text, int start, int end) {
+            out.append(text, start, end);
+            long h = hash;
+            for (int i = start; i < end; i++) {
+                h = h * HASH_MULTIPLIER + text.charAt(i);
+            }
+            hash = h;
+        }
+
+        /**
+         * @return 当前花括号的嵌套深度，类体内为1
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * 按首次出现的顺序为当前成员内的局部名字编号，从1开始。进入顶层类的下一个成员时重新编号，
+         * 因此编号与成员的排列顺序无关。
+         */
+        public int localIndex(CharSequence source, int start, int end) {
+            String name = source.subSequence(start, end).toString();
+            Integer index = locals.get(name);
+            if (index == null) {
+                index = locals.size() + 1;
+                locals.put(name, index);
+            }
+            return index;
+        }
+
+        /**
+         * 在每个非空白记号（包括被丢弃的注释）开始时调用：确定上一个 '}' 之后待定的成员边界，需要时开始一个新成员。
+         */
+        private void startToken(int position, char c) {
+            if (pendingClose) {
+                pendingClose = false;
+                if (c == ',') {
+                    closeAfterComma = true;
+                } else if (c != ';' && (isIdentifierStart(c) || c == '@' || c == '<' || c == '/' || c == '{' || c == '}')) {
+                    endUnit(pendingCloseEnd, false);
+                }
+                // 其余记号说明 '}' 属于字段初始化表达式，如 new Object() {...}.toString()；';' 由punctuation结束成员
+            }
+            if (!unitOpen) {
+                unitOpen = true;
+                unitSourceStart = position;
+                unitStart = out.length();
+                locals.clear();
+            }
+        }
+
+        private void endUnit(int end, boolean declaration) {
+            if (!unitOpen) {
+                return;
+            }
+            if (unitCount * UNIT_FIELDS == units.length) {
+                units = Arrays.copyOf(units, units.length * 2);
+            }
+            int base = unitCount * UNIT_FIELDS;
+            units[base] = unitSourceStart;
+            units[base + 1] = unitStart;
+            units[base + 2] = end;
+            units[base + 3] = declaration ? 1 : 0;
+            unitCount++;
+            unitOpen = false;
+        }
+
+        private void finish() {
+            endUnit(out.length(), false);
+        }
+
+        private void separate(boolean newline) {
+            if (newline) {
+                pendingNewline = true;
+            } else {
+                pendingSpace = true;
+            }
+        }
+
+        /**
+         * 写出一个记号之前先写出折叠后的空白；输出开头的空白直接丢弃。
+         */
+        private void beforeToken() {
+            if (out.length() > 0) {
+                if (pendingNewline) {
+                    append("\n");
+                } else if (pendingSpace) {
+                    append(" ");
+                }
+            }
+            pendingNewline = false;
+            pendingSpace = false;
+        }
+
+        private void copy(CharSequence source, int start, int end) {
+            beforeToken();
+            append(source, start, end);
+        }
+
+        private void punctuation(char c) {
+            beforeToken();
+            out.append(c);
+            hash = hash * HASH_MULTIPLIER + c;
+            boolean comma = closeAfterComma;
+            closeAfterComma = false;
+            switch (c) {
+                case '(':
+                    parens++;
+                    break;
+                case ')':
+                    if (parens > 0) parens--;
+                    break;
+                case '{':
+                    depth++;
+                    if (depth == 1) {
+                        // 类声明到类体的 '{' 为止
+                        parens = 0;
+                        endUnit(out.length(), true);
+                    }
+                    break;
+                case '}':
+                    if (depth > 0) depth--;
+                    if (depth == 1 && parens == 0) {
+                        pendingClose = true;
+                        pendingCloseEnd = out.length();
+                    }
+                    break;
+                case ';':
+                    if (depth == 1 && parens == 0) {
+                        endUnit(out.length(), false);
+                    }
+                    break;
+                case ',':
+                    if (comma) {
+                        endUnit(out.length(), false);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 规范化的结果。
+     */
+    public static final class Result {
+        private final String text;
+        private final long hash;
+        private final int[] units;
+        private final int unitCount;
+        private List<Member> members;
+
+        Result(String text, long hash, int[] units, int unitCount) {
+            this.text = text;
+            this.hash = hash;
+            this.units = units;
+            this.unitCount = unitCount;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return 规范化文本的64位多项式滚动哈希
+         */
+        public long getHash() {
+            return hash;
+        }
+
+        /**
+         * 先比较哈希，哈希相同时再比较文本，排除哈希碰撞。
+         */
+        public boolean sameAs(Result other) {
+            return hash == other.hash && text.equals(other.text);
+        }
+
+        /**
+         * 按源码顺序排列的顶层成员：第一个是到类体 '{' 为止的类声明（包括package和import），最后一个通常是类体的 '}'。
+         * 成员在首次调用时根据扫描时记录的边界创建，只在整份源码不相同时才需要。
+         */
+        public List<Member> getMembers() {
+            if (members == null) {
+                List<Member> list = new ArrayList<>(unitCount);
+                // 枚举类体开头直到第一个以 ';' 结束的成员都是枚举常量
+                boolean enumConstants = false;
+                for (int u = 0; u < unitCount; u++) {
+                    int base = u * Context.UNIT_FIELDS;
+                    int start = units[base + 1];
+                    int end = units[base + 2];
+                    if (start < end && (text.charAt(start) == ' ' || text.charAt(start) == '\n')) {
+                        // 成员之前折叠的空白
+                        start++;
+                    }
+                    String memberText = text.substring(start, end);
+                    boolean declaration = units[base + 3] == 1;
+                    String key = declaration ? "" : memberKey(memberText);
+                    boolean orderSensitive;
+                    if (declaration) {
+                        enumConstants = isEnumDeclaration(memberText);
+                        orderSensitive = false;
+                    } else if (enumConstants) {
+                        enumConstants = !memberText.endsWith(";");
+                        orderSensitive = true;
+                    } else {
+                        orderSensitive = isOrderSensitive(memberText);
+                    }
+                    list.add(new Member(key, memberText, units[base], orderSensitive));
+                }
+                members = Collections.unmodifiableList(list);
+            }
+            return members;
+        }
+    }
+
+    /**
+     * 成员的签名：跳过开头的注释和注解，取到参数列表的 ')' 为止（方法和构造器），
+     * 或到 '='、'{'、';' 之前为止（字段、内部类、初始化块）。类声明的签名为空字符串。
+     */
+    static String memberKey(String text) {
+        int length = text.length();
+        int i = skipMemberPrefix(text);
+        int start = i;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                return text.substring(start, skipParens(text, i));
+            }
+            if (c == '=' || c == '{' || c == ';') {
+                break;
+            }
+            i++;
+        }
+        return text.substring(start, i).trim();
+    }
+
+    /**
+     * 成员的相对顺序是否影响程序行为：带初始值的字段和初始化块按声明顺序执行。
+     * 方法、构造器、内部类和不带初始值的字段可以任意重排；枚举常量由 {@link Result#getMembers()} 单独识别。
+     */
+    static boolean isOrderSensitive(String text) {
+        int start = skipMemberPrefix(text);
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '=') {
+                return true;
+            }
+            if (c == '{') {
+                String modifiers = text.substring(start, i).trim();
+                return modifiers.isEmpty() || modifiers.equals("static");
+            }
+            if (c == '(' || c == ';') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 类声明是否声明了一个枚举，只检查类体 '{' 之前最后一行的记号
+     */
+    private static boolean isEnumDeclaration(String declaration) {
+        int end = declaration.lastIndexOf('{');
+        int lineStart = declaration.lastIndexOf('\n', end < 0 ? declaration.length() - 1 : end) + 1;
+        for (String token : declaration.substring(lineStart, end < 0 ? declaration.length() : end).split(" ")) {
+            if (token.equals("enum")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 跳过成员开头的空白、注释和注解之后的位置
+     */
+    private static int skipMemberPrefix(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\n') {
+                i++;
+            } else if (text.startsWith("//", i)) {
+                int end = text.indexOf('\n', i);
+                i = end < 0 ? length : end;
+            } else if (text.startsWith("/*", i)) {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == '@' && !text.startsWith("@interface", i)) {
+                i++;
+                while (i < length && (isIdentifierPart(text.charAt(i)) || text.charAt(i) == '.')) {
+                    i++;
+                }
+                if (i < length && text.charAt(i) == ' ' && i + 1 < length && text.charAt(i + 1) == '(') {
+                    i++;
+                }
+                if (i < length && text.charAt(i) == '(') {
+                    i = skipParens(text, i);
+                }
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return 与 {@code start} 处的 '(' 配对的 ')' 之后的位置，不配对时为文本末尾
+     */
+    private static int skipParens(String text, int start) {
+        int parens = 0;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                parens++;
+            } else if (c == ')' && --parens == 0) {
+                return i + 1;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * 规范化源码中的一个顶层成员。
+     */
+    public static final class Member {
+        private final String key;
+        private final String text;
+        private final long hash;
+        private final int sourceOffset;
+        private final boolean orderSensitive;
+
+        Member(String key, String text, int sourceOffset, boolean orderSensitive) {
+            this.key = key;
+            this.text = text;
+            this.sourceOffset = sourceOffset;
+            this.orderSensitive = orderSensitive;
+            long h = 0;
+            for (int i = 0; i < text.length(); i++) {
+                h = h * HASH_MULTIPLIER + text.charAt(i);
+            }
+            this.hash = h;
+        }
+
+        /**
+         * @return 用于在两份源码之间配对成员的签名，同一份源码中可能重复（如多个静态初始化块）
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        /**
+         * @return 成员的第一个记号（可能是注释）在原始源码中的位置
+         */
+        public int getSourceOffset() {
+            return sourceOffset;
+        }
+
+        /**
+         * @return 成员之间的相对顺序是否影响程序行为，如带初始值的字段、初始化块和枚举常量；
+         *         这样的成员被重排时不能视为非逻辑差异
+         */
+        public boolean isOrderSensitive() {
+            return orderSensitive;
+        }
+
+        public boolean sameAs(Member other) {
+            return hash == other.hash && text.equals(other.text);
+        }
+    }
+}
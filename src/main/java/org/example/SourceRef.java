@@ -0,0 +1,32 @@
+package org.example;
+
+/**
+ * 对一份源码的引用，源码可能保存在堆中，也可能保存在 {@link SourceStore} 的段文件中。
+ */
+public abstract class SourceRef {
+
+    /**
+     * @return 源码内容；保存在段文件中的源码每次调用都会重新读取
+     */
+    public abstract String get();
+
+    /**
+     * 创建直接持有源码的引用。
+     */
+    public static SourceRef inline(String source) {
+        return source == null ? null : new Inline(source);
+    }
+
+    private static final class Inline extends SourceRef {
+        private final String source;
+
+        Inline(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public String get() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 反编译源码的存储。较小的源码在内存预算之内直接保存在堆中，其余源码压缩后追加写入临时段文件，
+ * 渲染报告时再通过内存映射按需读取和解压，因此堆占用不会随JAR数量增长。
+ * <p>
+ * 实例是线程安全的。段文件在 {@link #close()} 或JVM退出时删除。
+ */
+public class SourceStore implements Closeable {
+
+    /** 超过该长度（字符）的源码总是写入段文件 */
+    private static final int INLINE_THRESHOLD = 16 * 1024;
+    /** 单个段文件的大小上限，超过后开始写入新的段文件 */
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final long inlineBudgetBytes;
+    private long inlineBytes;
+    private final List<Segment> segments = new ArrayList<>();
+    private long spilledSources;
+    private long spilledBytes;
+
+    /**
+     * @param directory         段文件所在的目录，不存在时会被创建
+     * @param inlineBudgetBytes 直接保存在堆中的源码总大小上限（按每字符2字节估算），为0时所有源码都写入段文件
+     */
+    public SourceStore(Path directory, long inlineBudgetBytes) {
+        this.directory = directory;
+        this.inlineBudgetBytes = inlineBudgetBytes;
+    }
+
+    /**
+     * 保存一份源码。
+     * @return 源码的引用；source为null时返回null。段文件写入失败时退化为保存在堆中
+     */
+    public SourceRef store(String source) {
+        if (source == null) {
+            return null;
+        }
+        long size = source.length() * 2L;
+        synchronized (this) {
+            if (source.length() <= INLINE_THRESHOLD && inlineBytes + size <= inlineBudgetBytes) {
+                inlineBytes += size;
+                return SourceRef.inline(source);
+            }
+        }
+        try {
+            return spill(source);
+        } catch (IOException e) {
+            Log.warn("警告: 无法把源码写入临时文件，将保存在内存中: " + e.getMessage());
+            return SourceRef.inline(source);
+        }
+    }
+
+    /**
+     * @return 统计信息，用于在运行结束时输出
+     */
+    public synchronized String describeStatistics() {
+        return String.format("源码存储: 内存中 %.1f MB，写入段文件 %d 份 / %.1f MB (压缩后)",
+                inlineBytes / 1024.0 / 1024.0, spilledSources, spilledBytes / 1024.0 / 1024.0);
+    }
+
+    private SourceRef spill(String source) throws IOException {
+        byte[] compressed = deflate(source.getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || segment.size + compressed.length > SEGMENT_BYTES) {
+                segment = openSegment();
+            }
+            long offset = segment.append(compressed);
+            spilledSources++;
+            spilledBytes += compressed.length;
+            return new SpilledRef(segment, offset, compressed.length);
+        }
+    }
+
+    private Segment openSegment() throws IOException {
+        Files.createDirectories(directory);
+        Path file = Files.createTempFile(directory, "sources-", ".seg");
+        file.toFile().deleteOnExit();
+        Segment segment = new Segment(file);
+        segments.add(segment);
+        return segment;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(ByteBuffer compressed) throws DataFormatException {
+        byte[] input = new byte[compressed.remaining()];
+        compressed.get(input);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("压缩数据不完整");
+                }
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 一个只追加的段文件。读取时把已写入的部分整体映射到内存，文件增长后重新映射。
+     */
+    private static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private long size;
+        private MappedByteBuffer mapped;
+
+        Segment(Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        synchronized long append(byte[] data) throws IOException {
+            long offset = size;
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            size += data.length;
+            return offset;
+        }
+
+        synchronized ByteBuffer slice(long offset, int length) throws IOException {
+            if (mapped == null || mapped.capacity() < offset + length) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer view = mapped.duplicate();
+            view.position((int) offset);
+            view.limit((int) offset + length);
+            return view;
+        }
+
+        synchronized void close() {
+            mapped = null;
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // 删除失败时由deleteOnExit兜底
+            }
+        }
+    }
+
+    /**
+     * 写入段文件的源码，每次读取时解压，不在堆中保留副本。
+     */
+    private static final class SpilledRef extends SourceRef {
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+
+        SpilledRef(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String get() {
+            try {
+                return inflate(segment.slice(offset, length));
+            } catch (IOException e) {
+                throw new UncheckedIOException("无法读取临时源码文件", e);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("临时源码文件已损坏", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example;
+
+import javax.swing.*;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 图形界面前端：通过对话框选择新旧文件夹，比较完成后弹窗提示报告位置。
+ * 只有在命令行指定 --gui 时才会加载，无界面运行时不会触及任何 Swing/AWT 类。
+ */
+class SwingFrontEnd {
+
+    private SwingFrontEnd() {
+    }
+
+    static void run() {
+        try {
+            UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
+        } catch (Exception e) {
+            Log.warn("无法设置Nimbus外观，将使用默认外观。");
+        }
+
+        Log.info("--- JAR包深度比对工具开始初始化 ---");
+        // 弹出欢迎和说明对话框
+        JOptionPane.showMessageDialog(null,
+                "欢迎使用JAR包深度比对工具。\n\n您将需要依次选择两个文件夹：\n1. 旧版本 (V1) 的文件夹。\n2. 新版本 (V2) 的文件夹。\n\n程序将对这两个文件夹内的所有JAR包进行深度比对。",
+                "欢迎", JOptionPane.INFORMATION_MESSAGE);
+
+        // 通过图形界面获取文件夹路径
+        File oldDir = selectDirectory("请选择旧版本 (V1) 的JAR包所在文件夹");
+        if (oldDir == null) {
+            Log.info("操作已取消。程序退出。");
+            return;
+        }
+
+        File newDir = selectDirectory("请选择新版本 (V2) 的JAR包所在文件夹");
+        if (newDir == null) {
+            Log.info("操作已取消。程序退出。");
+            return;
+        }
+
+        Log.info("准备比较以下文件夹:");
+        Log.info("  旧文件夹: " + oldDir.getAbsolutePath());
+        Log.info("  新文件夹: " + newDir.getAbsolutePath());
+        Log.info("----------------------------------------");
+
+        try {
+            // 比较之前只知道JAR的总数：新旧文件夹中的JAR较多时流式生成分片报告，否则生成单页报告
+            ComparisonOptions options = new ComparisonOptions();
+            Set<String> jarNames = new HashSet<>(FolderComparator.listJars(oldDir, options).keySet());
+            jarNames.addAll(FolderComparator.listJars(newDir, options).keySet());
+
+            // 报告生成器：每个JAR比较完成后立即写入报告，报告生成在用户选择的新版本文件夹的父目录下
+            ReportGenerator reportGenerator = new ReportGenerator();
+            Path reportDir = newDir.getAbsoluteFile().getParentFile().toPath();
+            String successMessage;
+            try (FolderComparator folderComparator = new FolderComparator(oldDir, newDir, options)) {
+                if (jarNames.size() > Main.SHARDED_REPORT_THRESHOLD) {
+                    try (ReportGenerator.ShardedReport report = reportGenerator.openShardedReport(oldDir.getName(), newDir.getName(), reportDir)) {
+                        // 核心的比较逻辑
+                        folderComparator.compare(report);
+                        successMessage = "报告生成完毕！\n\n"
+                                + "JAR较多（" + jarNames.size() + " 个），已生成分片报告，请用浏览器打开索引页：\n\n"
+                                + "▶ 分片报告索引:\n" + report.getIndex().toAbsolutePath() + "\n";
+                    }
+                } else {
+                    try (ReportGenerator.HtmlReport report = reportGenerator.openReport(oldDir.getName(), newDir.getName(), reportDir)) {
+                        // 核心的比较逻辑
+                        folderComparator.compare(report);
+                        Map<String, Path> reports = report.getReports();
+                        successMessage = "报告生成完毕！\n\n"
+                                + "您现在可以用浏览器打开以下文件查看详细报告：\n\n"
+                                + "▶ 核心差异报告:\n" + reports.get("main_report").toAbsolutePath() + "\n\n"
+                                + "▶ 非逻辑性差异报告:\n" + reports.get("non_logical_report").toAbsolutePath() + "\n";
+                    }
+                }
+            }
+            Log.info("\n--- 报告生成完毕 ---");
+            Log.info(successMessage);
+            JOptionPane.showMessageDialog(null, successMessage, "操作成功", JOptionPane.INFORMATION_MESSAGE);
+
+        } catch (Exception e) {
+            Log.error("\n在程序执行过程中发生严重错误:", e);
+            JOptionPane.showMessageDialog(null, "发生严重错误，详情请查看控制台日志。\n错误: " + e.getMessage(), "程序错误", JOptionPane.ERROR_MESSAGE);
+        }
+
+        Log.info("\n--- 程序执行结束 ---");
+    }
+
+    /**
+     * 打开一个图形化的文件夹选择对话框，并返回用户选择的文件夹。
+     * @param title 对话框的标题
+     * @return 用户选择的文件夹File对象，如果取消则返回null
+     */
+    private static File selectDirectory(String title) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+        chooser.setDialogTitle(title);
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setAcceptAllFileFilterUsed(false);
+
+        if (chooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+            return chooser.getSelectedFile();
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.example;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多版本时间线比较：按顺序比较 v1→v2→…→vN 的每一对相邻版本，可选地再比较首尾两个版本，
+ * 为每一对生成报告，并汇总出每个类在各版本之间的变更历史。
+ * <p>
+ * 所有版本对共用同一个反编译器和开启了内存层的反编译缓存，版本对依次执行，
+ * 因此每个不同的类版本（按类组内容哈希区分）在整条时间线中只反编译一次，总耗时与不同类版本的数量成正比，
+ * 而不是与版本对的数量成正比。按方法裁剪时反编译的输入取决于对比的另一方，同一个类版本在不同的版本对中无法复用，
+ * 因此时间线模式会关闭按方法裁剪（见 {@link ComparisonOptions#setMethodScoping(boolean)}）。
+ */
+public class TimelineComparator {
+
+    /** 反编译缓存内存层的容量（字符数） */
+    private static final long MEMORY_CACHE_CHARS = 256L * 1024 * 1024;
+
+    private final List<File> versions;
+    private final ComparisonOptions options;
+    private final boolean firstToLast;
+
+    /**
+     * @param versions    按时间顺序排列的各版本目录，至少两个
+     * @param firstToLast 是否额外比较第一个和最后一个版本
+     */
+    public TimelineComparator(List<File> versions, ComparisonOptions options, boolean firstToLast) {
+        if (versions.size() < 2) {
+            throw new IllegalArgumentException("时间线至少需要两个版本目录，当前: " + versions.size());
+        }
+        this.versions = new ArrayList<>(versions);
+        this.options = options;
+        this.options.setMethodScoping(false);
+        this.firstToLast = firstToLast;
+    }
+
+    /**
+     * 依次比较所有版本对，每对的报告写入输出目录下按序号命名的子目录，最后生成变更历史页面。
+     * @param listener 接收每个版本对的全部比较结果，可用于门禁统计；所有版本对比较完成后调用一次
+     *                 {@link ComparisonListener#onRunCompleted()}
+     * @return 变更历史页面的路径
+     */
+    public Path compare(Path outputDir, ComparisonListener listener) throws IOException, InterruptedException {
+        List<int[]> pairIndexes = new ArrayList<>();
+        for (int i = 0; i + 1 < versions.size(); i++) {
+            pairIndexes.add(new int[]{i, i + 1});
+        }
+        if (firstToLast && versions.size() > 2) {
+            pairIndexes.add(new int[]{0, versions.size() - 1});
+        }
+
+        Path temporaryCacheDir = null;
+        Path cacheDir = options.getDecompileCacheDir();
+        if (cacheDir == null) {
+            // 没有持久化缓存时使用临时目录，保证时间线内部的复用
+            temporaryCacheDir = Files.createTempDirectory("jar-comparator-timeline");
+            cacheDir = temporaryCacheDir;
+        }
+        DecompilationCache cache = new DecompilationCache(cacheDir, options.getDecompileCacheMaxBytes());
+        cache.setMemoryCapacity(MEMORY_CACHE_CHARS);
+        JarDecompiler decompiler = new JarDecompiler(cache, new DecompileWatchdog(options));
+        SourceCodeDiff diff = new SourceCodeDiff(new MyersDiffEngine(), options.toDiffBudget());
+
+        List<Pair> pairs = new ArrayList<>();
+        History history = new History(pairIndexes.size());
+        Files.createDirectories(outputDir);
+        try {
+            for (int p = 0; p < pairIndexes.size(); p++) {
+                File oldDir = versions.get(pairIndexes.get(p)[0]);
+                File newDir = versions.get(pairIndexes.get(p)[1]);
+                Log.info("\n===== 版本对 " + (p + 1) + "/" + pairIndexes.size() + ": " + oldDir.getName() + " -> " + newDir.getName() + " =====");
+
+                Path pairDir = outputDir.resolve(String.format("%02d_%s__%s", p + 1, oldDir.getName(), newDir.getName()));
+                Files.createDirectories(pairDir);
+                // 每个版本对使用独立的JAR比较器，报告生成后即释放其源码段文件，共享的反编译器不受影响
+                try (JarComparator jarComparator = new JarComparator(decompiler, diff, options);
+                     ReportGenerator.HtmlReport report = new ReportGenerator().openReport(oldDir.getName(), newDir.getName(), pairDir)) {
+                    int pair = p;
+                    int[] changedJars = {0};
+                    ComparisonListener pairListener = new ComparisonListener() {
+                        @Override
+                        public void onJarStarted(String jarName, File oldJar, File newJar) {
+                            listener.onJarStarted(jarName, oldJar, newJar);
+                        }
+
+                        @Override
+                        public void onClassDiff(ComparisonResult result, DiffDetail detail) {
+                            listener.onClassDiff(result, detail);
+                        }
+
+                        @Override
+                        public void onJarCompleted(ComparisonResult result) {
+                            listener.onJarCompleted(result);
+                            if (result.getStatus() != ComparisonResult.Status.UNCHANGED) {
+                                history.record(pair, result);
+                                changedJars[0]++;
+                            }
+                        }
+                    };
+                    new FolderComparator(oldDir, newDir, options, jarComparator).compare(ComparisonListener.of(pairListener, report));
+                    Map<String, Path> reports = report.getReports();
+                    pairs.add(new Pair(oldDir.getName(), newDir.getName(),
+                            outputDir.relativize(reports.get("main_report")), outputDir.relativize(reports.get("non_logical_report")),
+                            changedJars[0]));
+                }
+            }
+        } finally {
+            decompiler.close();
+            Log.info("\n时间线共比较 " + pairIndexes.size() + " 个版本对，实际反编译 " + cache.getMisses() + " 个不同的类版本");
+            if (temporaryCacheDir != null) {
+                FileUtils.deleteQuietly(temporaryCacheDir.toFile());
+            }
+        }
+
+        List<String> versionNames = new ArrayList<>();
+        for (File version : versions) {
+            versionNames.add(version.getName());
+        }
+        Path historyPage = new ReportGenerator().generateTimeline(versionNames, pairs, history, outputDir);
+        listener.onRunCompleted();
+        return historyPage;
+    }
+
+    /**
+     * 一个已比较的版本对及其报告位置（相对于输出目录）。
+     */
+    public static final class Pair {
+        private final String oldName;
+        private final String newName;
+        private final Path mainReport;
+        private final Path nonLogicalReport;
+        private final int changedJars;
+
+        Pair(String oldName, String newName, Path mainReport, Path nonLogicalReport, int changedJars) {
+            this.oldName = oldName;
+            this.newName = newName;
+            this.mainReport = mainReport;
+            this.nonLogicalReport = nonLogicalReport;
+            this.changedJars = changedJars;
+        }
+
+        public String getOldName() {
+            return oldName;
+        }
+
+        public String getNewName() {
+            return newName;
+        }
+
+        public Path getMainReport() {
+            return mainReport;
+        }
+
+        public Path getNonLogicalReport() {
+            return nonLogicalReport;
+        }
+
+        public int getChangedJars() {
+            return changedJars;
+        }
+    }
+
+    /**
+     * 每个类在各版本对中的变更，按JAR名和类名排序。JAR本身的新增/删除记在类名为空字符串的行上。
+     */
+    public static final class History {
+
+        /** 一个类在一个版本对中的变更 */
+        public enum Change {
+            ADDED, REMOVED, LOGICAL_CHANGE, NON_LOGICAL_CHANGE, ERROR
+        }
+
+        private final int pairCount;
+        private final Map<String, Map<String, Change[]>> rows = new TreeMap<>();
+
+        History(int pairCount) {
+            this.pairCount = pairCount;
+        }
+
+        void record(int pair, ComparisonResult result) {
+            if (result.getStatus() == ComparisonResult.Status.ADDED) {
+                cells(result.getJarName(), "")[pair] = Change.ADDED;
+            } else if (result.getStatus() == ComparisonResult.Status.DELETED) {
+                cells(result.getJarName(), "")[pair] = Change.REMOVED;
+            }
+            for (DiffDetail detail : result.getDiffDetails()) {
+                if (!DiffDetail.GENERAL_INFO.equals(detail.getClassName())) {
+                    cells(result.getJarName(), detail.getClassName())[pair] = Change.valueOf(detail.getType().name());
+                    continue;
+                }
+                for (String message : detail.getDiffContent()) {
+                    if (message.startsWith(JarComparator.ADDED_CLASS_PREFIX)) {
+                        cells(result.getJarName(), message.substring(JarComparator.ADDED_CLASS_PREFIX.length()))[pair] = Change.ADDED;
+                    } else if (message.startsWith(JarComparator.REMOVED_CLASS_PREFIX)) {
+                        cells(result.getJarName(), message.substring(JarComparator.REMOVED_CLASS_PREFIX.length()))[pair] = Change.REMOVED;
+                    }
+                }
+            }
+        }
+
+        private Change[] cells(String jarName, String className) {
+            return rows.computeIfAbsent(jarName, k -> new TreeMap<>()).computeIfAbsent(className, k -> new Change[pairCount]);
+        }
+
+        public int getPairCount() {
+            return pairCount;
+        }
+
+        /**
+         * @return JAR名 -> 类名 -> 各版本对中的变更（未变化为null）
+         */
+        public Map<String, Map<String, Change[]>> getRows() {
+            return Collections.unmodifiableMap(rows);
+        }
+    }
+}
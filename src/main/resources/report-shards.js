@@ -0,0 +1,34 @@
+// 分片报告：每个JAR的差异数据保存在独立的分片文件中（gzip + base64），点击时才通过<script>标签加载，
+// 因此直接用浏览器打开本地文件即可使用，不需要服务器。
+function loadShard(id, data) {
+    var target = document.getElementById('shard-' + id);
+    var binary = atob(data);
+    var bytes = new Uint8Array(binary.length);
+    for (var i = 0; i < binary.length; i++) {
+        bytes[i] = binary.charCodeAt(i);
+    }
+    var stream = new Blob([bytes]).stream().pipeThrough(new DecompressionStream('gzip'));
+    new Response(stream).text().then(function (html) {
+        target.innerHTML = html;
+    }, function (error) {
+        target.textContent = '无法解压数据分片: ' + error;
+    });
+}
+
+function toggleShard(id, file) {
+    var target = document.getElementById('shard-' + id);
+    if (target.dataset.loaded) {
+        target.hidden = !target.hidden;
+        return;
+    }
+    target.dataset.loaded = 'true';
+    target.hidden = false;
+    target.textContent = '正在加载...';
+    var script = document.createElement('script');
+    script.src = file;
+    script.onerror = function () {
+        target.textContent = '无法加载数据分片: ' + file;
+        delete target.dataset.loaded;
+    };
+    document.head.appendChild(script);
+}